@@ -0,0 +1,17 @@
+package hello.itemservice.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 컴파일 시점에 [클래스명]RowMapper (JdbcTemplate 의 RowMapper) 소스를 생성한다. (RowMapperProcessor)
+ *
+ * 필드 선언 순서대로 컬럼을 인덱스로 읽어서 setter 로 넣는다.
+ * 생성된 클래스의 COLUMNS 상수 ("id, item_name, ...") 를 select 절에 사용하면 컬럼 순서가 항상 맞는다.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateRowMapper {
+}
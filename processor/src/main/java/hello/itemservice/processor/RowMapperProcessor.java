@@ -0,0 +1,223 @@
+package hello.itemservice.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @GenerateRowMapper 가 붙은 클래스마다 [클래스명]RowMapper 소스를 생성한다.
+ *
+ * 생성 결과 (Item 의 경우)
+ * public final class ItemRowMapper implements RowMapper<Item> {
+ *     public static final String COLUMNS = "id, item_name, price, quantity, version";
+ *     public static final ItemRowMapper INSTANCE = new ItemRowMapper();
+ *     public Item mapRow(ResultSet rs, int rowNum) throws SQLException {
+ *         Item item = new Item();
+ *         item.setId(rs.getObject(1, Long.class));
+ *         item.setItemName(rs.getString(2));
+ *         ...
+ *     }
+ * }
+ *
+ * - 대상 필드 : static, transient, @Transient 를 제외한 필드 (선언 순서)
+ * - 컬럼명 : @Column(name = "...") 이 있으면 그 값, 없으면 필드명을 snake_case 로 변환
+ * - setter : JavaBean 규약 (setXxx), Lombok 으로 생성한 setter 도 사용할 수 있다.
+ */
+@SupportedAnnotationTypes("hello.itemservice.processor.GenerateRowMapper")
+public class RowMapperProcessor extends AbstractProcessor {
+
+    private static final String COLUMN_ANNOTATION = "javax.persistence.Column";
+    private static final String TRANSIENT_ANNOTATION = "javax.persistence.Transient";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GenerateRowMapper 는 클래스에만 사용할 수 있습니다.");
+                    continue;
+                }
+                generate((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        List<VariableElement> fields = fields(type);
+        if (fields.isEmpty()) {
+            error(type, "매핑할 필드가 없습니다.");
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String typeName = type.getSimpleName().toString();
+        String mapperName = typeName + "RowMapper";
+        String variable = Character.toLowerCase(typeName.charAt(0)) + typeName.substring(1);
+
+        List<String> columns = new ArrayList<>();
+        for (VariableElement field : fields) {
+            columns.add(column(field));
+        }
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(packageName + "." + mapperName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("import org.springframework.jdbc.core.RowMapper;");
+                out.println();
+                out.println("import java.sql.ResultSet;");
+                out.println("import java.sql.SQLException;");
+                out.println();
+                out.println("/**");
+                out.println(" * " + typeName + " RowMapper (@GenerateRowMapper 로 생성된 소스, 직접 수정하지 않는다)");
+                out.println(" * select 절의 컬럼 순서는 COLUMNS 와 같아야 한다.");
+                out.println(" */");
+                out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+                out.println("public final class " + mapperName + " implements RowMapper<" + typeName + "> {");
+                out.println();
+                out.println("    public static final String COLUMNS = \"" + String.join(", ", columns) + "\";");
+                out.println();
+                out.println("    public static final " + mapperName + " INSTANCE = new " + mapperName + "();");
+                out.println();
+                out.println("    private " + mapperName + "() {");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public " + typeName + " mapRow(ResultSet rs, int rowNum) throws SQLException {");
+                out.println("        " + typeName + " " + variable + " = new " + typeName + "();");
+                for (int i = 0; i < fields.size(); i++) {
+                    VariableElement field = fields.get(i);
+                    out.println("        " + variable + "." + setter(field) + "(" + getter(field.asType(), i + 1) + ");");
+                }
+                out.println("        return " + variable + ";");
+                out.println("    }");
+                out.println("}");
+            }
+        } catch (IOException e) {
+            error(type, "RowMapper 생성 실패 : " + e.getMessage());
+        }
+    }
+
+    private List<VariableElement> fields(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            Set<Modifier> modifiers = member.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                    || annotation(member, TRANSIENT_ANNOTATION) != null) {
+                continue;
+            }
+            fields.add((VariableElement) member);
+        }
+        return fields;
+    }
+
+    private String column(VariableElement field) {
+        AnnotationMirror column = annotation(field, COLUMN_ANNOTATION);
+        if (column != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : column.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("name")) {
+                    String name = entry.getValue().getValue().toString();
+                    if (!name.isEmpty()) {
+                        return name;
+                    }
+                }
+            }
+        }
+        return snakeCase(field.getSimpleName().toString());
+    }
+
+    private static String snakeCase(String name) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                sb.append('_').append(Character.toLowerCase(c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String setter(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        return "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * 컬럼 타입별 ResultSet 읽기
+     * 기본형은 getInt() 등을 그대로 사용하고, 래퍼 타입은 null 을 유지하도록 getObject(index, 타입) 을 사용한다.
+     */
+    private static String getter(TypeMirror type, int index) {
+        TypeKind kind = type.getKind();
+        switch (kind) {
+            case BOOLEAN:
+                return "rs.getBoolean(" + index + ")";
+            case BYTE:
+                return "rs.getByte(" + index + ")";
+            case SHORT:
+                return "rs.getShort(" + index + ")";
+            case INT:
+                return "rs.getInt(" + index + ")";
+            case LONG:
+                return "rs.getLong(" + index + ")";
+            case FLOAT:
+                return "rs.getFloat(" + index + ")";
+            case DOUBLE:
+                return "rs.getDouble(" + index + ")";
+            default:
+                String typeName = type.toString();
+                if (typeName.equals("java.lang.String")) {
+                    return "rs.getString(" + index + ")";
+                }
+                return "rs.getObject(" + index + ", " + typeName + ".class)";
+        }
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
+/* 애노테이션 프로세서 */
+// javac 가 컴파일 중에 호출하고, 새로 생성한 소스도 같은 컴파일에 포함된다. (Querydsl 의 QItem 과 같은 방식)
+// 런타임에 리플렉션으로 프로퍼티를 찾는 BeanPropertyRowMapper 와 달리, 생성된 코드는 컬럼 인덱스로 바로 읽고 setter 를 직접 호출한다.
+// 생성된 소스 위치 : build/generated/sources/annotationProcessor/java/main
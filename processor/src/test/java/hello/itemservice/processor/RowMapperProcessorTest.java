@@ -0,0 +1,189 @@
+package hello.itemservice.processor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RowMapperProcessor 테스트
+ * JDK 의 JavaCompiler 로 프로세서만 실행 (-proc:only) 하고, 생성된 소스를 문자열로 확인한다.
+ * 생성된 RowMapper 의 실행 결과는 루트 프로젝트의 ItemRowMapperTest 에서 실제 Item, H2 로 확인한다.
+ */
+class RowMapperProcessorTest {
+
+    // javax.persistence 의존 없이 같은 이름의 애노테이션을 함께 컴파일한다. (프로세서는 이름으로만 비교)
+    private static final String COLUMN = "package javax.persistence;\n"
+            + "public @interface Column { String name() default \"\"; int length() default 255; boolean nullable() default true; }";
+    private static final String TRANSIENT = "package javax.persistence;\n"
+            + "public @interface Transient {}";
+    // 생성된 소스도 다음 라운드에서 컴파일 대상이 되므로 스프링의 RowMapper 도 같은 이름으로 둔다.
+    private static final String ROW_MAPPER = "package org.springframework.jdbc.core;\n"
+            + "public interface RowMapper<T> { T mapRow(java.sql.ResultSet rs, int rowNum) throws java.sql.SQLException; }";
+
+    // hello.itemservice.domain.Item 과 같은 필드 선언 (JPA, Lombok 애노테이션과 setter 는 생략)
+    private static final String ITEM = "package hello.itemservice.domain;\n"
+            + "import hello.itemservice.processor.GenerateRowMapper;\n"
+            + "import javax.persistence.Column;\n"
+            + "@GenerateRowMapper\n"
+            + "public class Item {\n"
+            + "    private Long id;\n"
+            + "    @Column(name = \"item_name\", length = 10)\n"
+            + "    private String itemName;\n"
+            + "    private Integer price;\n"
+            + "    private Integer quantity;\n"
+            + "    @Column(nullable = false)\n"
+            + "    private Long version;\n"
+            + "}";
+
+    @Test
+    void generateItemRowMapper() {
+        Result result = process(Map.of("hello/itemservice/domain/Item.java", ITEM));
+
+        assertThat(result.errors).isEmpty();
+        String source = result.generated.get("hello.itemservice.domain.ItemRowMapper");
+        assertThat(source).isNotNull();
+        assertThat(source).contains("package hello.itemservice.domain;");
+        assertThat(source).contains("public final class ItemRowMapper implements RowMapper<Item> {");
+        // 필드 선언 순서, @Column(name) 이 있으면 그 값, name 이 없으면 snake_case
+        assertThat(source).contains("public static final String COLUMNS = \"id, item_name, price, quantity, version\";");
+        // COLUMNS 와 같은 순서의 인덱스, 래퍼 타입은 null 을 유지하는 getObject
+        assertThat(source).contains(
+                "        item.setId(rs.getObject(1, java.lang.Long.class));\n"
+                        + "        item.setItemName(rs.getString(2));\n"
+                        + "        item.setPrice(rs.getObject(3, java.lang.Integer.class));\n"
+                        + "        item.setQuantity(rs.getObject(4, java.lang.Integer.class));\n"
+                        + "        item.setVersion(rs.getObject(5, java.lang.Long.class));\n"
+                        + "        return item;");
+    }
+
+    @Test
+    void skipStaticAndTransientFields() {
+        String sample = "package sample;\n"
+                + "import hello.itemservice.processor.GenerateRowMapper;\n"
+                + "import javax.persistence.Transient;\n"
+                + "@GenerateRowMapper\n"
+                + "public class OrderLine {\n"
+                + "    private static final int MAX = 10;\n"
+                + "    private long orderId;\n"
+                + "    private transient String cached;\n"
+                + "    @Transient\n"
+                + "    private String display;\n"
+                + "    private int lineCount;\n"
+                + "}";
+
+        Result result = process(Map.of("sample/OrderLine.java", sample));
+
+        assertThat(result.errors).isEmpty();
+        String source = result.generated.get("sample.OrderLineRowMapper");
+        assertThat(source).contains("public static final String COLUMNS = \"order_id, line_count\";");
+        // 기본형은 getLong, getInt
+        assertThat(source).contains("orderLine.setOrderId(rs.getLong(1));");
+        assertThat(source).contains("orderLine.setLineCount(rs.getInt(2));");
+    }
+
+    @Test
+    void rejectNonClass() {
+        String sample = "package sample;\n"
+                + "@hello.itemservice.processor.GenerateRowMapper\n"
+                + "public interface Named {}";
+
+        Result result = process(Map.of("sample/Named.java", sample));
+
+        assertThat(result.errors).containsExactly("@GenerateRowMapper 는 클래스에만 사용할 수 있습니다.");
+        assertThat(result.generated).isEmpty();
+    }
+
+    private static Result process(Map<String, String> sources) {
+        Map<String, String> all = new LinkedHashMap<>(sources);
+        all.put("javax/persistence/Column.java", COLUMN);
+        all.put("javax/persistence/Transient.java", TRANSIENT);
+        all.put("org/springframework/jdbc/core/RowMapper.java", ROW_MAPPER);
+        List<JavaFileObject> units = new ArrayList<>();
+        all.forEach((path, code) -> units.add(new Source(path, code)));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> generated = new LinkedHashMap<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                generated.put(className, out);
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return out;
+                    }
+
+                    @Override
+                    public Writer openWriter() {
+                        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    }
+
+                    // 생성된 소스는 다음 라운드에서 다시 읽는다.
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return out.toString(StandardCharsets.UTF_8);
+                    }
+                };
+            }
+        };
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                List.of("-proc:only"), null, units);
+        task.setProcessors(List.of(new RowMapperProcessor()));
+        task.call();
+
+        Result result = new Result();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                result.errors.add(diagnostic.getMessage(null));
+            }
+        }
+        generated.forEach((className, out) -> result.generated.put(className, out.toString(StandardCharsets.UTF_8)));
+        return result;
+    }
+
+    private static class Result {
+        private final List<String> errors = new ArrayList<>();
+        private final Map<String, String> generated = new LinkedHashMap<>();
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+
+        private final String code;
+
+        Source(String path, String code) {
+            super(URI.create("mem:///" + path), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
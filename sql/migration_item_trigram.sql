@@ -0,0 +1,29 @@
+-- item_trigram 색인이 없던 DB 에 한 번 실행한다. (H2)
+-- 테이블을 만들고, 그 전에 저장된 item 의 trigram 을 채운다. 채우기 전에는 해당 item 이 이름으로 검색되지 않는다.
+-- merge ... key 는 이미 있는 (trigram, item_id) 를 건너뛰므로 여러 번 실행해도 결과는 같다.
+create table if not exists item_trigram
+(
+    trigram varchar(3) not null,
+    item_id bigint     not null,
+    primary key (trigram, item_id)
+);
+
+create index if not exists idx_item_trigram_item_id on item_trigram (item_id);
+
+-- item_name 은 최대 10 글자이므로 trigram 시작 위치는 1 ~ 8 (ItemTrigrams.of 와 같은 trigram)
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 1, 3), id from item where length(item_name) >= 3;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 2, 3), id from item where length(item_name) >= 4;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 3, 3), id from item where length(item_name) >= 5;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 4, 3), id from item where length(item_name) >= 6;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 5, 3), id from item where length(item_name) >= 7;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 6, 3), id from item where length(item_name) >= 8;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 7, 3), id from item where length(item_name) >= 9;
+merge into item_trigram (trigram, item_id) key (trigram, item_id)
+    select substring(item_name, 8, 3), id from item where length(item_name) >= 10;
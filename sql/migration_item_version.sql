@@ -0,0 +1,3 @@
+-- item.version (낙관적 락, Item 의 @Version) 이 없던 DB 에 한 번 실행한다. (H2)
+-- 이미 저장된 item 은 version 0 으로 시작한다. if not exists 이므로 여러 번 실행해도 결과는 같다.
+alter table item add column if not exists version bigint default 0 not null;
@@ -1,9 +1,29 @@
+drop table if exists item_trigram CASCADE;
 drop table if exists item CASCADE;
+drop sequence if exists item_seq;
 create table item
 (
     id        bigint generated by default as identity,
     item_name varchar(10),
     price     integer,
     quantity  integer,
+    version   bigint default 0 not null, -- 낙관적 락 (Item.version), 기존 DB 는 migration_item_version.sql 로 추가
     primary key (id)
 );
+
+-- 가격 조건 (price <= ?) 검색용 인덱스
+create index idx_item_price on item (price);
+
+-- sequence 프로필 (JPA pooled-lo) 에서 사용, orm-sequence.xml 의 allocation-size 와 같은 값
+create sequence item_seq start with 1 increment by 50;
+
+-- item_name 검색용 trigram 색인 (ItemTrigrams), PK 인덱스로 trigram -> item_id 를 찾는다.
+create table item_trigram
+(
+    trigram varchar(3) not null,
+    item_id bigint     not null,
+    primary key (trigram, item_id)
+);
+
+-- item_id 로 trigram 을 교체(삭제) 할 때 사용 (PK 는 trigram 이 앞이므로 item_id 만으로는 찾을 수 없다)
+create index idx_item_trigram_item_id on item_trigram (item_id);
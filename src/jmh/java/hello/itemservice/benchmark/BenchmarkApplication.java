@@ -0,0 +1,22 @@
+package hello.itemservice.benchmark;
+
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 벤치마크용 스프링 부트 설정
+ * ItemServiceApplication 은 @Import 로 하나의 설정만 사용하므로,
+ * 벤치마크에서는 이 클래스와 RepositoryStack 의 설정 클래스를 함께 실행한다.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableAutoConfiguration
+@AutoConfigurationPackage(basePackages = "hello.itemservice")
+public class BenchmarkApplication {
+}
+// @AutoConfigurationPackage(basePackages = "hello.itemservice")
+// Entity 스캔, 스프링 데이터 JPA 리포지토리, MyBatis @Mapper 스캔은 자동 구성 패키지를 기준으로 동작한다.
+// 이 클래스는 hello.itemservice.benchmark 에 있으므로 기준 패키지를 hello.itemservice 로 지정한다.
+
+// @SpringBootConfiguration 을 사용하지 않는 이유
+// 테스트의 @SpringBootTest 가 찾는 설정 클래스와 겹치지 않도록 일반 @Configuration 을 사용한다.
@@ -0,0 +1,34 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.repository.ItemSearchCondition;
+
+/**
+ * findAll 의 4가지 검색 조건
+ * ItemStackState.newItem() 의 데이터 분포 기준으로 이름, 가격 조건은 각각 약 10% 의 데이터와 일치한다.
+ */
+public enum ConditionShape {
+
+    NONE(null, null),
+    NAME("item-7", null),
+    PRICE(null, 1900),
+    BOTH("item-7", 1900);
+
+    private final String itemName;
+    private final Integer maxPrice;
+
+    ConditionShape(String itemName, Integer maxPrice) {
+        this.itemName = itemName;
+        this.maxPrice = maxPrice;
+    }
+
+    public ItemSearchCondition condition() {
+        return new ItemSearchCondition(itemName, maxPrice);
+    }
+
+    /**
+     * afterId 다음부터 pageSize 건 (keyset 페이징)
+     */
+    public ItemSearchCondition page(long afterId, int pageSize) {
+        return new ItemSearchCondition(itemName, maxPrice, afterId, pageSize);
+    }
+}
@@ -0,0 +1,138 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.service.ItemService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 인기 상품 하나에 주문이 몰릴 때의 재고 차감 처리량 (스레드 수별)
+ * 실행 : gradle jmh -PjmhIncludes=HotItemReservationBenchmark
+ *
+ * - reserve : ItemService.reserve() 한 번 (SQL 은 update ... where id = ? and quantity >= ?, 메모리는 CAS)
+ * - readModifyWrite : findById() 로 읽고 수량을 뺀 ItemUpdateDto 로 update() (version 이 다르거나 deadlock 으로 롤백되면 다시 읽는다)
+ * 두 방식 모두 재고가 바닥나면 STOCK 만큼 다시 채운다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotItemReservationBenchmark {
+
+    private static final int STOCK = 1_000_000;
+
+    @Param
+    public RepositoryStack stack;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    Long hotItemId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = stack.start();
+        itemService = context.getBean(ItemService.class);
+        hotItemId = itemService.save(new Item("hot", 1000, STOCK)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        if (itemRepository instanceof MemoryItemRepository) {
+            ((MemoryItemRepository) itemRepository).clearStore();
+        }
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean reserve1Thread() {
+        return reserve();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean reserve4Threads() {
+        return reserve();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean reserveMaxThreads() {
+        return reserve();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int readModifyWrite1Thread() {
+        return readModifyWrite();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int readModifyWrite4Threads() {
+        return readModifyWrite();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int readModifyWriteMaxThreads() {
+        return readModifyWrite();
+    }
+
+    private boolean reserve() {
+        if (itemService.reserve(hotItemId, 1)) {
+            return true;
+        }
+        itemService.release(hotItemId, STOCK);
+        return false;
+    }
+
+    /**
+     * @return 다시 시도한 횟수
+     */
+    private int readModifyWrite() {
+        int retries = 0;
+        while (true) {
+            Item item = itemService.findById(hotItemId).orElseThrow();
+            int quantity = item.getQuantity() > 0 ? item.getQuantity() - 1 : STOCK;
+            try {
+                itemService.update(hotItemId,
+                        new ItemUpdateDto(item.getItemName(), item.getPrice(), quantity, item.getVersion()));
+                return retries;
+            } catch (ConcurrencyFailureException e) {
+                // OptimisticLockingFailureException (version 불일치), CannotAcquireLockException (H2 deadlock)
+                retries++;
+            }
+        }
+    }
+}
+/* 측정 결과 */
+// gradle jmh -PjmhIncludes=HotItemReservationBenchmark
+// ops/ms, 평균 ± 99.9% 오차, JDK 11, H2 메모리 DB, CPU 1개 (Threads.MAX = 1)
+//                      reserve 1        reserve 4        reserve MAX      readModifyWrite 1  readModifyWrite 4  readModifyWrite MAX
+// MEMORY            13747 ± 4567      6202 ± 2730      6647 ±  486       253 ± 193          105 ± 165          196 ± 233
+// MEMORY_COLUMNAR    8858 ± 2348      8086 ±  742      7235 ± 3680       221 ± 241           76 ±  98          201 ± 119
+// MEMORY_MAPPED     15004 ± 2591     12574 ± 1002     13880 ± 3000       242 ± 330          149 ±  54          256 ± 221
+// JDBC_TEMPLATE_V1     76 ±  127        34 ±   45        83 ±  141      20.5 ± 39.7         9.8 ± 4.6          5.3 ± 4.5
+// JDBC_TEMPLATE_V2     71 ±  141        43 ±   33        58 ±  135       7.6 ±  1.9         8.9 ± 4.7          6.5 ± 7.1
+// JDBC_TEMPLATE_V3     54 ±  119        38 ±   10        65 ±  134      11.0 ± 17.0         7.6 ± 8.1         10.3 ± 6.4
+// MYBATIS             3.7 ± 3.3        5.7 ± 1.0        4.7 ± 1.9       0.6 ±  1.2         1.1 ± 0.8          0.7 ± 0.6
+// JPA_V1             12.7 ± 15.6      19.1 ± 11.7      19.6 ± 26.6       6.8 ± 10.1         6.6 ± 4.2          3.2 ± 4.2
+// JPA_V2             17.3 ± 29.3      16.7 ±  8.0      34.3 ± 99.9       4.8 ± 11.5         5.0 ± 4.2          6.3 ± 7.7
+// JPA_V3             19.2 ± 30.2      17.0 ±  7.3      20.1 ± 23.6       4.7 ±  5.0         7.3 ± 8.1          8.1 ± 12.6
+// V2                 23.0 ± 23.9      14.5 ± 10.3      23.3 ± 26.1       6.1 ±  7.0         2.9 ± 3.9          8.8 ± 12.8
+// reserve 는 모든 저장소, 모든 스레드 수에서 readModifyWrite 보다 빠르다. (SQL 저장소 2~16배, 메모리 저장소 34~106배)
+// 메모리 저장소는 4 스레드에서 처리량이 줄었다. (CPU 1개라 스레드 전환과 CAS 재시도 / lock 대기 비용만 늘어난다)
+// SQL 저장소는 스레드 수에 따른 차이가 오차 범위 안이다. CPU 1개에서는 스레드를 늘려도 동시에 실행되지 않으므로 경합 자체가 적다.
+// readModifyWrite 4 스레드의 V2 는 처음 실행에서 H2 가 deadlock 으로 트랜잭션을 롤백해서(CannotAcquireLockException) 중단됐다.
+// version 불일치뿐 아니라 ConcurrencyFailureException 전체를 다시 시도하도록 고친 후 다시 측정한 값이다.
+// JPA 저장소의 reserve 는 JpaItemUpdates 로 수정한 id 의 2차 캐시만 제거한다. (l2cache 프로필이 아니므로 이 결과에는 캐시 영향이 없다)
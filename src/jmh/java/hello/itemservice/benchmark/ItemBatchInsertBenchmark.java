@@ -0,0 +1,82 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * save() 반복 vs saveAll() 비교
+ * 실행 : gradle jmh -PjmhIncludes=ItemBatchInsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemBatchInsertBenchmark {
+
+    @Param({"JDBC_TEMPLATE_V1", "JDBC_TEMPLATE_V2", "JDBC_TEMPLATE_V3", "MYBATIS", "JPA_V1", "JPA_V2", "JPA_V3"})
+    public RepositoryStack stack;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = stack.start();
+        itemRepository = context.getBean(ItemRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (itemRepository instanceof MemoryItemRepository) {
+            ((MemoryItemRepository) itemRepository).clearStore();
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> saveOneByOne() {
+        List<Item> items = newItems();
+        for (Item item : items) {
+            itemRepository.save(item);
+        }
+        return items;
+    }
+
+    @Benchmark
+    public List<Item> saveAll() {
+        return itemRepository.saveAll(newItems());
+    }
+
+    private List<Item> newItems() {
+        List<Item> items = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            items.add(ItemStackState.newItem(i));
+        }
+        return items;
+    }
+}
+/* 측정 결과 (ms/op, 평균 ± 99.9% 오차, JDK 11, H2 메모리 DB, CPU 1개) */
+// batchSize 1000       saveOneByOne            saveAll
+// JDBC_TEMPLATE_V1     180.3 ± 284.0           128.8 ± 113.6
+// JDBC_TEMPLATE_V2     202.6 ± 266.7           123.4 ±  86.3
+// JDBC_TEMPLATE_V3     229.6 ± 369.2           124.7 ± 100.7
+// MYBATIS             1002.5 ± 865.3           406.3 ± 509.5
+// JPA_V1               203.8 ± 123.6           146.0 ± 212.5
+// JPA_V2               305.3 ± 295.8           145.3 ± 203.5
+// JPA_V3               153.0 ± 215.3           123.9 ± 107.3
+// batchSize 100 도 같은 경향이다. (JDBC 11.7 ~ 21.9 -> 7.3 ~ 12.6, MYBATIS 103.3 -> 62.3, JPA 17.8 ~ 22.1 -> 10.9 ~ 13.0)
+// 평균은 모든 구현체에서 saveAll 이 빠르지만 오차 범위가 겹친다.
+// trial 동안 item 테이블이 계속 커지고 CPU 가 1개라 GC, H2 의 영향이 크므로, 차이의 크기보다 방향만 확인한 결과로 본다.
+// JPA 는 IDENTITY 전략이라 INSERT 가 한 건씩 실행되므로, 차이는 JDBC batch 가 아니라 flush, detach 를 chunk 단위로 하는 데서 온다.
@@ -0,0 +1,62 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPA id 생성 전략별 saveAll() 비교 (IDENTITY vs SEQUENCE pooled-lo)
+ * 실행 : gradle jmh -PjmhIncludes=ItemIdStrategyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemIdStrategyBenchmark {
+
+    public enum IdStrategy {
+        IDENTITY,
+        SEQUENCE // application-sequence.properties
+    }
+
+    @Param({"JPA_V1", "JPA_V2", "JPA_V3"})
+    public RepositoryStack stack;
+
+    @Param
+    public IdStrategy idStrategy;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = idStrategy == IdStrategy.SEQUENCE
+                ? stack.start("--spring.profiles.include=sequence")
+                : stack.start();
+        itemRepository = context.getBean(ItemRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> saveAll() {
+        List<Item> items = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            items.add(ItemStackState.newItem(i));
+        }
+        return itemRepository.saveAll(items);
+    }
+}
@@ -0,0 +1,101 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * item_name 포함 검색(like '%검색어%') 의 테이블 크기별 응답 시간
+ * 실행 : gradle jmh -PjmhIncludes=ItemNameSearchBenchmark
+ *
+ * - trigramSearch : 3 글자 이상 검색어 -> item_trigram 으로 후보를 줄인 뒤 like 로 확인
+ * - likeOnly : 같은 row 를 찾지만 like 특수 문자(_) 가 있어서 trigram 을 사용하지 못하는 검색어 -> 전체 스캔
+ * tableSize 가 커질 때 trigramSearch 는 거의 일정하고, likeOnly 는 비례해서 늘어나야 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemNameSearchBenchmark {
+
+    @Param({"MEMORY", "JDBC_TEMPLATE_V1", "JDBC_TEMPLATE_V2", "JDBC_TEMPLATE_V3", "MYBATIS", "JPA_V1", "JPA_V2", "JPA_V3"})
+    public RepositoryStack stack;
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+
+    ItemSearchCondition trigramCondition;
+    ItemSearchCondition likeOnlyCondition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = stack.start();
+        itemRepository = context.getBean(ItemRepository.class);
+
+        List<Item> items = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            items.add(new Item(itemName(i), 1000 + (i % 100) * 100, i % 50));
+        }
+        itemRepository.saveAll(items);
+
+        // 가운데 있는 item 1 건만 찾는다.
+        String target = itemName(tableSize / 2);
+        trigramCondition = new ItemSearchCondition(target.substring(2), null);
+        likeOnlyCondition = new ItemSearchCondition("_" + target.substring(3), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (itemRepository instanceof MemoryItemRepository) {
+            ((MemoryItemRepository) itemRepository).clearStore();
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> trigramSearch() {
+        return itemRepository.findAll(trigramCondition);
+    }
+
+    @Benchmark
+    public List<Item> likeOnly() {
+        return itemRepository.findAll(likeOnlyCondition);
+    }
+
+    /**
+     * 이름이 서로의 일부가 되지 않도록 6 자리로 맞춘다. (item_name 은 varchar(10))
+     */
+    private static String itemName(int i) {
+        return String.format("n-%06d", i);
+    }
+}
+// MemoryItemRepository 는 like 특수 문자를 글자 그대로 비교하므로 likeOnly 의 결과가 0 건이다. (비교 기준 : 전체 순회 비용)
+/* 측정 결과 (us/op, 평균 ± 99.9% 오차, JDK 11, H2 메모리 DB, CPU 1개, SQL DEBUG 로그 출력 상태) */
+//                      tableSize 1000            10000                     100000
+// JDBC_TEMPLATE_V1     likeOnly 1249 ± 1476      7136 ±  521               57426 ±  4183
+//                      trigram  3374 ± 2441      5237 ± 4132                8026 ±  9758
+// JDBC_TEMPLATE_V3     likeOnly  970 ±  893      5519 ± 2482               54532 ± 19399
+//                      trigram  2634 ± 2204      4634 ± 1306                5286 ±  4362
+// MYBATIS              likeOnly 1716 ± 2151      5997 ± 6498               53470 ± 21464
+//                      trigram  5773 ± 2532      8829 ± 6874               10173 ±  8737
+// JPA_V1               likeOnly 1398 ±  692      6500 ± 4559               57577 ± 28172
+//                      trigram  4613 ± 2164      6988 ± 6378                7546 ±  5989
+// JPA_V3               likeOnly 1017 ±  771      3270 ± 3388               15307 ±  3398
+//                      trigram  6278 ± 7224      9252 ± 9304                9042 ±  6020
+// JDBC_TEMPLATE_V2, JPA_V2 도 같은 경향이다. MEMORY 는 trigram 을 사용하지 않으므로 두 검색이 같다. (100000 : 3570, 3203)
+// 100000 건에서는 trigram 후보 조회가 전체 스캔보다 빠르다. (JDBC, MyBatis, JPA_V1 은 5 ~ 10 배)
+// 1000 건에서는 trigram 이 오히려 2 ~ 6 배 느리다. item_trigram 의 group by, having 비용이 작은 테이블의 전체 스캔보다 크다.
+// 10000 건은 오차 범위가 겹쳐서 차이를 말할 수 없다.
+// likeOnly 는 tableSize 에 비례해서 늘어나고, trigramSearch 는 천천히 늘어난다. (후보 조회도 trigram 당 item_trigram 범위를 읽는다)
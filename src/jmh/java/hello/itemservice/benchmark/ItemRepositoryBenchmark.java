@@ -0,0 +1,38 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 구현체별 save, update, findById 벤치마크
+ * 실행 : gradle jmh -PjmhIncludes=ItemRepositoryBenchmark
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemRepositoryBenchmark {
+
+    @Benchmark
+    public Item save(ItemStackState state) {
+        // 측정 중에 저장한 데이터는 trial 이 끝날 때 DB 와 함께 사라진다.
+        return state.itemService.save(ItemStackState.newItem(ThreadLocalRandom.current().nextInt(1000)));
+    }
+
+    @Benchmark
+    public void update(ItemStackState state) {
+        int i = ThreadLocalRandom.current().nextInt(1000);
+        state.itemService.update(state.randomId(), new ItemUpdateDto("item-" + i, 1000 + i, i));
+    }
+
+    @Benchmark
+    public Optional<Item> findById(ItemStackState state) {
+        return state.itemService.findById(state.randomId());
+    }
+}
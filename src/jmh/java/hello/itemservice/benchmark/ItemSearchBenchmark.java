@@ -0,0 +1,81 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSummary;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 구현체별 findAll(ItemSearchCondition) 벤치마크
+ * 실행 : gradle jmh -PjmhIncludes=ItemSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemSearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param
+    public ConditionShape condition;
+
+    @Benchmark
+    public List<Item> findAll(ItemStackState state) {
+        return state.itemService.findItems(condition.condition());
+    }
+
+    /**
+     * 엔티티 대신 DTO 프로젝션으로 조회 (영속성 컨텍스트, 스냅샷 비용 비교)
+     */
+    @Benchmark
+    public List<ItemSummary> findSummaries(ItemStackState state) {
+        return state.itemService.findItemSummaries(condition.condition());
+    }
+
+    /**
+     * 임의의 위치에서 한 페이지 조회 (keyset 페이징)
+     * datasetSize 가 커져도 시간이 일정해야 한다.
+     */
+    @Benchmark
+    public List<Item> findPage(ItemStackState state) {
+        return state.itemService.findItems(condition.page(state.randomId(), PAGE_SIZE));
+    }
+
+    /**
+     * 집계 (SQL 집계 함수 / 메모리 단일 순회)
+     */
+    @Benchmark
+    public ItemAggregate aggregate(ItemStackState state) {
+        return state.itemService.aggregate(condition.condition());
+    }
+
+    /**
+     * 결과를 List 로 모으지 않는 streamItems() 비교 (-prof gc 의 gc.alloc.rate.norm 확인)
+     */
+    @Benchmark
+    public void streamAll(ItemStackState state, Blackhole blackhole) {
+        state.itemService.streamItems(condition.condition(), blackhole::consume);
+    }
+}
+/* 측정 결과 : 검색 SQL 을 조건의 모양(ItemSearchShape) 별로 미리 만들기 전 / 후 */
+// gradle jmh -PjmhIncludes="ItemSearchBenchmark.findAll -p stack=JDBC_TEMPLATE_V1,JPA_V1 -p datasetSize=1000 -bm avgt"
+// us/op, 평균 ± 99.9% 오차, JDK 11, H2 메모리 DB, CPU 1개
+//                        전 (매번 문자열 조립, INFO 로그)   후 (미리 만든 SQL)       후 + QUERY_CACHE_SIZE=8
+// JDBC_TEMPLATE_V1 NONE       314 ±   438                   128 ±  207               134 ±  248
+//                  NAME      4914 ±  4837                  5141 ± 5252              4537 ± 2731
+//                  PRICE       40 ±    78                    24 ±   36                27 ±   54
+//                  BOTH      5904 ±  4639                  4761 ± 2499              6048 ± 6182
+// JPA_V1           NONE     41375 ± 71585                  2720 ± 2274              4307 ± 2127
+//                  NAME     12805 ± 14250                  7295 ± 8182              6416 ± 6412
+//                  PRICE     7747 ±  7154                   409 ±  501               396 ±  737
+//                  BOTH      8371 ±  8799                  7347 ± 7521              6716 ± 5570
+// JPA_V1 의 NONE, PRICE 는 미리 만든 JPQL 에서 확실히 빨라졌다. (JPQL 문자열이 매번 같으므로 Hibernate 의 쿼리 계획 캐시를 재사용한다)
+// JDBC_TEMPLATE_V1 과 이름 검색(NAME, BOTH) 은 오차 범위가 겹쳐서 차이를 말할 수 없다. (이름 검색은 trigram 조회 비용이 대부분이다)
+// QUERY_CACHE_SIZE 64 와 기본값 8 은 차이가 없었다. (이 벤치마크의 조건 모양은 4 가지뿐이다)
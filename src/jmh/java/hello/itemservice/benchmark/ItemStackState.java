@@ -0,0 +1,63 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.service.ItemService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 구현체(stack) 와 데이터 건수(datasetSize) 별로 스프링 컨텍스트를 띄우고 초기 데이터를 저장한다.
+ * 모든 호출은 ItemService 를 통한다.
+ * V1 설정은 ItemServiceV1 이 리포지토리에 단순 위임하므로 리포지토리 자체의 비용이 측정된다.
+ */
+@State(Scope.Benchmark)
+public class ItemStackState {
+
+    @Param
+    public RepositoryStack stack;
+
+    @Param({"1000", "10000"})
+    public int datasetSize;
+
+    public ItemService itemService;
+    public long[] ids;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = stack.start();
+        itemService = context.getBean(ItemService.class);
+
+        ids = new long[datasetSize];
+        for (int i = 0; i < datasetSize; i++) {
+            ids[i] = itemService.save(newItem(i)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // MemoryItemRepository 는 static 저장소를 사용하므로 직접 비워준다.
+        ItemRepository itemRepository = context.getBean(ItemRepository.class);
+        if (itemRepository instanceof MemoryItemRepository) {
+            ((MemoryItemRepository) itemRepository).clearStore();
+        }
+        context.close();
+    }
+
+    public long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    /**
+     * item_name 은 varchar(10) 이므로 "item-0" ~ "item-999" 범위의 이름을 사용한다.
+     * 가격은 1000 ~ 10900 사이 100 단위로 분포한다.
+     */
+    public static Item newItem(int i) {
+        return new Item("item-" + (i % 1000), 1000 + (i % 100) * 100, i % 50);
+    }
+}
@@ -0,0 +1,77 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryItemRepository 의 스레드 수별 처리량
+ * 조회 90%, 수정 9%, 저장 1% 의 혼합 작업을 1, 4, 최대 스레드로 실행해서 코어 수에 따라 늘어나는지 확인한다.
+ * 실행 : gradle jmh -PjmhIncludes=MemoryItemRepositoryConcurrencyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryItemRepositoryConcurrencyBenchmark {
+
+    static final int DATASET_SIZE = 10_000;
+
+    MemoryItemRepository itemRepository;
+    long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        itemRepository = new MemoryItemRepository();
+        ids = new long[DATASET_SIZE];
+        for (int i = 0; i < DATASET_SIZE; i++) {
+            ids[i] = itemRepository.save(ItemStackState.newItem(i)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        itemRepository.clearStore();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object mixed1Thread() {
+        return mixed();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object mixed4Threads() {
+        return mixed();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object mixedMaxThreads() {
+        return mixed();
+    }
+
+    private Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int op = random.nextInt(100);
+        long id = ids[random.nextInt(ids.length)];
+        if (op == 0) {
+            return itemRepository.save(ItemStackState.newItem(random.nextInt(1000)));
+        }
+        if (op < 10) {
+            int n = random.nextInt(1000);
+            itemRepository.update(id, new ItemUpdateDto("item-" + n, 1000 + n, n));
+            return null;
+        }
+        Optional<Item> item = itemRepository.findById(id);
+        return item;
+    }
+}
@@ -0,0 +1,70 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.config.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 벤치마크 대상 구현체
+ * ItemServiceApplication 의 @Import 를 바꾸는 대신, 설정 클래스 단위로 스프링 컨텍스트를 띄운다.
+ */
+public enum RepositoryStack {
+
+    MEMORY(MemoryConfig.class), // MemoryItemRepository
+    MEMORY_COLUMNAR(ColumnarMemoryConfig.class), // ColumnarItemRepository
+    MEMORY_MAPPED(MappedFileConfig.class), // MappedFileItemRepository
+    JDBC_TEMPLATE_V1(JdbcTemplateV1Config.class),
+    JDBC_TEMPLATE_V2(JdbcTemplateV2Config.class),
+    JDBC_TEMPLATE_V3(JdbcTemplateV3Config.class),
+    MYBATIS(MyBatisConfig.class),
+    JPA_V1(JpaConfig.class), // JpaItemRepositoryV1 (JPQL)
+    JPA_V2(SpringDataJpaConfig.class), // JpaItemRepositoryV2 (스프링 데이터 JPA)
+    JPA_V3(QuerydslConfig.class), // JpaItemRepositoryV3 (Querydsl)
+    V2(V2Config.class); // ItemServiceV2 + ItemQueryRepositoryV2
+
+    private final Class<?> configClass;
+
+    RepositoryStack(Class<?> configClass) {
+        this.configClass = configClass;
+    }
+
+    /**
+     * 임베디드 H2 (메모리 모드) 로 컨텍스트를 시작한다.
+     * 실행마다 새로운 DB 를 사용하고, SQL 로그는 끈다.
+     */
+    public ConfigurableApplicationContext start(String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=bench",
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--itemservice.mapped-file.path=" + tempDir() + "/bench-" + UUID.randomUUID() + ".dat",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.output.ansi.enabled=never",
+                "--logging.level.root=warn",
+                "--logging.level.org.springframework.jdbc=warn",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=warn",
+                "--logging.level.hello.itemservice=warn"));
+        args.addAll(Arrays.asList(extraArgs));
+
+        return new SpringApplicationBuilder(BenchmarkApplication.class, configClass)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run(args.toArray(new String[0]));
+    }
+
+    private static String tempDir() {
+        return System.getProperty("java.io.tmpdir");
+    }
+}
+// 명령행 인자(--key=value) 는 application.properties 보다 우선순위가 높다.
+// 따라서 main 의 application.properties (local 프로필, tcp 접속, SQL 로그) 를 벤치마크용으로 덮어쓴다.
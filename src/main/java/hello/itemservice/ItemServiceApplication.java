@@ -14,6 +14,8 @@ import javax.sql.DataSource;
 
 @Slf4j
 //@Import(MemoryConfig.class) // MemoryConfig 를 설정 파일로 사용
+//@Import(ColumnarMemoryConfig.class) // 메모리 저장소 - 컬럼 단위 저장
+//@Import(MappedFileConfig.class) // 메모리 맵 파일(off-heap) 저장소
 //@Import(JdbcTemplateV1Config.class) // JdbcTemplateV1Config 를 설정 파일로 사용
 //@Import(JdbcTemplateV2Config.class) // JdbcTemplateV2Config 를 설정 파일로 사용
 //@Import(JdbcTemplateV3Config.class) // JdbcTemplateV3Config 를 설정 파일로 사용
@@ -21,7 +23,12 @@ import javax.sql.DataSource;
 //@Import(JpaConfig.class) // JPA
 //@Import(SpringDataJpaConfig.class) // Spring Data JPA
 //@Import(QuerydslConfig.class)
-@Import(V2Config.class)
+// R2DBC 저장소 + JSON API (/api/r2dbc/items) 는 src/r2dbc 의 R2dbcItemServiceApplication 으로 실행 (gradle bootRunR2dbc)
+@Import({V2Config.class, ReplicaDataSourceConfig.class, ItemCacheConfig.class, WriteBehindConfig.class, AsyncItemServiceConfig.class})
+// ReplicaDataSourceConfig : itemservice.datasource.replica.jdbc-url 설정 시 읽기 전용 트랜잭션을 replica 로 라우팅
+// ItemCacheConfig : itemservice.cache.enabled=true 설정 시 ItemService 를 CachingItemService 로 감싼다.
+// WriteBehindConfig : itemservice.write-behind.enabled=true 설정 시 수정을 모아서 한 번에 저장한다. (WriteBehindItemService)
+// AsyncItemServiceConfig : 컨트롤러는 커넥션 풀 크기로 제한된 전용 executor 에서 ItemService 를 호출한다. (bulkhead)
 // 컨트롤러만 컴포넌트 스캔 사용, 나머지는 수동 빈 등록
 @SpringBootApplication(scanBasePackages = "hello.itemservice.web")
 public class ItemServiceApplication {
@@ -2,6 +2,7 @@ package hello.itemservice;
 
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCondition;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -21,6 +22,12 @@ public class TestDataInit {
      */
     @EventListener(ApplicationReadyEvent.class)
     public void initData() {
+        // 이미 데이터가 있으면 추가하지 않는다. (예 : 재시작 후 다시 매핑한 MappedFileItemRepository)
+        // 있는지만 확인하므로 한 건만 조회한다. (pageSize = 1)
+        if (!itemRepository.findAll(new ItemSearchCondition(null, null, null, 1)).isEmpty()) {
+            log.info("test data already exists");
+            return;
+        }
         log.info("test data init");
         itemRepository.save(new Item("itemA", 10000, 10));
         itemRepository.save(new Item("itemB", 20000, 20));
@@ -0,0 +1,55 @@
+package hello.itemservice.config;
+
+import hello.itemservice.service.AsyncItemService;
+import hello.itemservice.service.ItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * AsyncItemService 와 전용 executor (bulkhead)
+ *
+ * - 스레드 수 : 커넥션 풀 크기 (spring.datasource.hikari.maximum-pool-size, HikariCP 기본 10)
+ * - itemservice.async.queue-capacity : 스레드가 모두 사용 중일 때 기다릴 수 있는 작업 수 (기본 100)
+ * 대기열이 가득 차면 TaskRejectedException (RejectedExecutionException) 이 발생한다.
+ */
+@Slf4j
+@Configuration
+public class AsyncItemServiceConfig {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    /**
+     * ItemService 빈은 설정(MemoryConfig, JdbcTemplate, JPA, V2 ...) 마다 다르지만, 타입으로 주입받으므로 어떤 설정이든 사용할 수 있다.
+     * (itemservice.cache.enabled=true 이면 CachingItemService 가 주입된다)
+     * 종료 시 AsyncItemService.shutdown() 이 executor 를 종료한다. (@Bean 의 destroy 메소드 추론)
+     */
+    @Bean
+    public AsyncItemService asyncItemService(ItemService itemService, Environment environment) {
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, DEFAULT_POOL_SIZE);
+        int queueCapacity = environment.getProperty("itemservice.async.queue-capacity", Integer.class, DEFAULT_QUEUE_CAPACITY);
+        log.info("item service executor poolSize={}, queueCapacity={}", poolSize, queueCapacity);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("item-service-");
+        // 종료 시 대기열에 남은 작업(저장, 수정 포함) 을 마치고 종료한다.
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return new AsyncItemService(itemService, executor);
+    }
+}
+/* executor 를 빈으로 등록하지 않는 이유 */
+// 스프링 부트는 Executor 타입의 빈이 없을 때만 applicationTaskExecutor 를 자동 등록한다. (스프링 MVC 의 Callable, @Async 가 사용)
+// 이 executor 를 빈으로 등록하면 자동 등록이 꺼지고, 다른 비동기 작업이 DB 전용 스레드를 함께 사용하게 된다.
+
+/* core = max */
+// ThreadPoolExecutor 는 core 스레드가 모두 사용 중이면 먼저 대기열에 넣고, 대기열이 가득 찬 뒤에야 max 까지 스레드를 늘린다.
+// 스레드를 커넥션 수보다 늘려도 커넥션을 기다리기만 하므로 core = max 로 고정하고, 대기는 대기열에서만 한다.
+// 대기열의 크기 제한이 없으면(기본값 Integer.MAX_VALUE) 느린 DB 앞에 요청이 무한히 쌓이므로 반드시 제한한다.
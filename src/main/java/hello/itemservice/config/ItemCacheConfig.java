@@ -0,0 +1,56 @@
+package hello.itemservice.config;
+
+import hello.itemservice.service.CachingItemService;
+import hello.itemservice.service.ItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * ItemService 읽기 캐시 (CachingItemService)
+ * itemservice.cache.enabled=true 인 경우, 어떤 설정(MemoryConfig, JdbcTemplate, MyBatis, JPA, V2) 의 ItemService 빈이든 감싼다.
+ *
+ * - itemservice.cache.maximum-weight : 캐시 최대 크기 (byte 추정값, 기본 64MB)
+ * - itemservice.cache.expire-after-write : 저장 후 만료 시간 (기본 10m)
+ * - itemservice.cache.search.maximum-rows : 검색 결과 캐시 최대 크기 (결과 row 수의 합, 기본 100000)
+ * - itemservice.cache.search.expire-after-write : 검색 결과 만료 시간 (기본 5m)
+ * - itemservice.cache.search.refresh-after-write : 검색 결과를 백그라운드에서 다시 조회하는 시간 (기본 1m, 만료 시간보다 짧게)
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "itemservice.cache", name = "enabled", havingValue = "true")
+public class ItemCacheConfig {
+
+    /**
+     * static 메소드 : BeanPostProcessor 는 다른 빈보다 먼저 만들어져야 하므로 설정 클래스의 인스턴스 없이 등록한다.
+     */
+    @Bean
+    public static BeanPostProcessor cachingItemServicePostProcessor(Environment environment) {
+        long maximumWeight = environment.getProperty("itemservice.cache.maximum-weight", Long.class, 64L * 1024 * 1024);
+        Duration expireAfterWrite = environment.getProperty("itemservice.cache.expire-after-write", Duration.class, Duration.ofMinutes(10));
+        long searchMaximumRows = environment.getProperty("itemservice.cache.search.maximum-rows", Long.class, 100_000L);
+        Duration searchExpireAfterWrite = environment.getProperty("itemservice.cache.search.expire-after-write", Duration.class, Duration.ofMinutes(5));
+        Duration searchRefreshAfterWrite = environment.getProperty("itemservice.cache.search.refresh-after-write", Duration.class, Duration.ofMinutes(1));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ItemService && !(bean instanceof CachingItemService)) {
+                    log.info("item cache bean={}, maximumWeight={}, expireAfterWrite={}", beanName, maximumWeight, expireAfterWrite);
+                    return new CachingItemService((ItemService) bean, maximumWeight, expireAfterWrite,
+                            searchMaximumRows, searchExpireAfterWrite, searchRefreshAfterWrite);
+                }
+                return bean;
+            }
+        };
+    }
+}
+/* BeanPostProcessor 적용 순서 */
+// 이 후처리기는 Ordered 를 구현하지 않았으므로 트랜잭션 AOP 프록시를 만드는 후처리기(Ordered) 보다 나중에 실행된다.
+// 따라서 캐시 -> 트랜잭션 프록시 -> ItemService 구현체 순서로 호출되고, 캐시 hit 에는 트랜잭션(커넥션) 을 사용하지 않는다.
+// 반환 타입은 ItemService 이므로, ItemService 타입으로 주입받는 곳(ItemController) 은 그대로 동작한다.
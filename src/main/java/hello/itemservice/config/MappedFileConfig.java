@@ -0,0 +1,33 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.MappedFileItemRepository;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV1;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * 메모리 맵 파일(off-heap) 저장소
+ * 파일 위치 : itemservice.mapped-file.path (기본값 : 임시 디렉토리/itemservice/items.dat)
+ */
+@Configuration
+public class MappedFileConfig {
+
+    @Value("${itemservice.mapped-file.path:${java.io.tmpdir}/itemservice/items.dat}")
+    private Path path;
+
+    @Bean
+    public ItemService itemService() {
+        return new ItemServiceV1(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        // close() 가 있으므로 스프링 컨테이너 종료 시 자동으로 호출된다. (destroyMethod 추론)
+        return new MappedFileItemRepository(path);
+    }
+}
@@ -6,6 +6,7 @@ import hello.itemservice.repository.mybatis.MyBatisItemRepository;
 import hello.itemservice.service.ItemService;
 import hello.itemservice.service.ItemServiceV1;
 import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,6 +15,7 @@ import org.springframework.context.annotation.Configuration;
 public class MyBatisConfig {
 
     private final ItemMapper itemMapper;
+    private final SqlSessionFactory sqlSessionFactory; // saveAll() 의 BATCH 세션용
 
     @Bean
     public ItemService itemService() {
@@ -22,7 +24,7 @@ public class MyBatisConfig {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new MyBatisItemRepository(itemMapper);
+        return new MyBatisItemRepository(itemMapper, sqlSessionFactory);
     }
 
 }
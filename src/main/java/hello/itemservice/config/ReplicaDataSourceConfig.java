@@ -0,0 +1,83 @@
+package hello.itemservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * 읽기/쓰기 DataSource 분리
+ * - 쓰기 (readOnly = false 트랜잭션, 트랜잭션 없음) : spring.datasource (primary 커넥션 풀)
+ * - 읽기 (@Transactional(readOnly = true)) : itemservice.datasource.replica.* (replica 커넥션 풀)
+ *
+ * itemservice.datasource.replica.jdbc-url 을 설정한 경우에만 동작한다. (설정이 없으면 스프링 부트의 DataSource 자동 설정 사용)
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "itemservice.datasource.replica", name = "jdbc-url")
+public class ReplicaDataSourceConfig {
+
+    /**
+     * 쓰기용 커넥션 풀 : 스프링 부트의 spring.datasource.* 설정을 그대로 사용한다.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * 읽기용 커넥션 풀 : itemservice.datasource.replica.* 를 HikariDataSource 에 바로 바인딩한다. (jdbc-url, username, password, maximum-pool-size ...)
+     */
+    @Bean
+    @ConfigurationProperties("itemservice.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName("replica-pool");
+        return dataSource;
+    }
+
+    /**
+     * JdbcTemplate, MyBatis, JPA 가 사용하는 DataSource
+     * 커넥션은 실제 SQL 을 실행할 때 얻는다. (LazyConnectionDataSourceProxy)
+     * 트랜잭션 매니저가 트랜잭션을 시작하는 시점에는 아직 readOnly 여부가 동기화되지 않았기 때문이다.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+        ReadOnlyRoutingDataSource routingDataSource = new ReadOnlyRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                ReadOnlyRoutingDataSource.Route.PRIMARY, primaryDataSource,
+                ReadOnlyRoutingDataSource.Route.REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+
+        log.info("read/write routing datasource primary={}, replica={}",
+                primaryDataSource.getJdbcUrl(), replicaDataSource.getJdbcUrl());
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
+/* 읽기 전용 트랜잭션 라우팅 */
+// 조회 트랜잭션을 replica 로 보내면 조회 트래픽이 늘어날 때 replica 를 추가해서 처리할 수 있다.
+// 쓰기는 항상 primary 로 가므로 쓰기 경로는 바뀌지 않는다.
+
+// 동작 순서
+// 1. @Transactional(readOnly = true) 메소드 호출 -> 트랜잭션 매니저가 트랜잭션 시작
+//    이 때 LazyConnectionDataSourceProxy 는 실제 커넥션 대신 프록시를 돌려준다. (setReadOnly 등은 기록만 해둠)
+// 2. 트랜잭션 동기화 : TransactionSynchronizationManager.isCurrentTransactionReadOnly() = true
+// 3. 첫 SQL 실행 시점에 실제 커넥션이 필요 -> ReadOnlyRoutingDataSource 가 REPLICA 풀을 선택
+// LazyConnectionDataSourceProxy 가 없으면 1번 시점에 커넥션을 얻으므로 항상 PRIMARY 로 라우팅된다.
+
+// 주의
+// readOnly 트랜잭션 안에서 쓰기를 하면 replica 로 전송된다. (replica 의 read-only=true 설정으로 커넥션을 읽기 전용으로 만들 수 있다)
+// 실제 복제는 비동기이므로 쓰기 직후의 조회는 replica 에 아직 반영되지 않았을 수 있다. (복제 지연)
+// 쓰기 후 바로 다시 읽어야 하는 경우에는 readOnly 가 아닌 트랜잭션 안에서 조회한다.
@@ -9,11 +9,14 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.persistence.EntityManager;
+
 @Configuration
 @RequiredArgsConstructor
 public class SpringDataJpaConfig {
 
     private final SpringDataJpaItemRepository springDataJpaItemRepository;
+    private final EntityManager entityManager;
 
     @Bean
     public ItemService itemService() {
@@ -22,6 +25,6 @@ public class SpringDataJpaConfig {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new JpaItemRepositoryV2(springDataJpaItemRepository);
+        return new JpaItemRepositoryV2(springDataJpaItemRepository, entityManager);
     }
 }
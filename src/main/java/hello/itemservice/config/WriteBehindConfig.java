@@ -0,0 +1,87 @@
+package hello.itemservice.config;
+
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.WriteBehindItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 수정 write-behind (WriteBehindItemService)
+ * itemservice.write-behind.enabled=true 인 경우, 어떤 설정의 ItemService 빈이든 감싼다.
+ * 내구성(비정상 종료 시 잃을 수 있는 수정) 은 WriteBehindItemService 참고
+ *
+ * - itemservice.write-behind.max-batch-size : 이 건수가 모이면 바로 저장 (기본 500, 하나의 트랜잭션으로 저장하는 최대 건수)
+ * - itemservice.write-behind.flush-interval : 건수와 상관없이 저장하는 주기 (기본 1s, 비정상 종료 시 잃을 수 있는 시간)
+ * 두 값 모두 1 (1ms) 이상이어야 한다. 아니면 시작 시점에 IllegalStateException
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "itemservice.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindConfig {
+
+    /**
+     * static 메소드 : BeanPostProcessor 는 다른 빈보다 먼저 만들어져야 하므로 설정 클래스의 인스턴스 없이 등록한다.
+     */
+    @Bean
+    public static BeanPostProcessor writeBehindItemServicePostProcessor(Environment environment) {
+        int maxBatchSize = environment.getProperty("itemservice.write-behind.max-batch-size", Integer.class, 500);
+        Duration flushInterval = environment.getProperty("itemservice.write-behind.flush-interval", Duration.class, Duration.ofSeconds(1));
+        if (maxBatchSize < 1) {
+            throw new IllegalStateException("itemservice.write-behind.max-batch-size 는 1 이상이어야 합니다. maxBatchSize=" + maxBatchSize);
+        }
+        // scheduleWithFixedDelay 는 0 이하의 주기를 허용하지 않는다. (밀리초 단위로 사용하므로 1ms 미만도 0 이 된다)
+        if (flushInterval.toMillis() < 1) {
+            throw new IllegalStateException("itemservice.write-behind.flush-interval 은 1ms 이상이어야 합니다. flushInterval=" + flushInterval);
+        }
+
+        return new DestructionAwareBeanPostProcessor() {
+
+            // 빈 이름 -> 감싼 WriteBehindItemService (다른 후처리기가 다시 감싸도 종료 시 close() 를 호출하기 위해 보관)
+            private final Map<String, WriteBehindItemService> services = new ConcurrentHashMap<>();
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ItemService && !(bean instanceof WriteBehindItemService)) {
+                    log.info("item write-behind bean={}, maxBatchSize={}, flushInterval={}", beanName, maxBatchSize, flushInterval);
+                    WriteBehindItemService service = new WriteBehindItemService((ItemService) bean, maxBatchSize, flushInterval);
+                    services.put(beanName, service);
+                    return service;
+                }
+                return bean;
+            }
+
+            /**
+             * 종료 시 남은 수정을 저장한다.
+             */
+            @Override
+            public void postProcessBeforeDestruction(Object bean, String beanName) {
+                WriteBehindItemService service = services.remove(beanName);
+                if (service != null) {
+                    service.close();
+                }
+            }
+
+            @Override
+            public boolean requiresDestruction(Object bean) {
+                return bean instanceof ItemService;
+            }
+        };
+    }
+}
+/* 종료 시 flush */
+// 스프링은 빈 종료 시 최종 빈 객체(AutoCloseable) 의 close() 를 호출하는데, 캐시가 바깥이면 최종 빈은 CachingItemService 이다.
+// 그래서 DestructionAwareBeanPostProcessor 로 빈 이름에 해당하는 WriteBehindItemService 를 직접 종료한다. (close() 는 한 번만 동작)
+
+/* ItemCacheConfig 와 함께 사용 */
+// 두 후처리기 중 어느 쪽이 바깥이 되어도 findById() 는 접수한 수정을 반영한다.
+// - 캐시가 바깥 : update() 후 캐시에서 제거되므로, 다음 조회는 WriteBehindItemService 를 거쳐 버퍼의 값을 읽는다.
+// - write-behind 가 바깥 : 캐시의 값 위에 버퍼의 값을 덮어서 반환하고, flush 의 updateAll() 이 캐시를 무효화한다.
@@ -1,6 +1,10 @@
 package hello.itemservice.domain;
 
+import hello.itemservice.processor.GenerateRowMapper;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import javax.persistence.*;
 
@@ -9,6 +13,10 @@ import javax.persistence.*;
  */
 @Data
 @Entity // JPA 사용 객체
+@Table(indexes = @Index(name = "idx_item_price", columnList = "price")) // schema.sql 과 같은 인덱스 (ddl-auto 로 테이블을 만들 때 사용)
+@Cacheable // 2차 캐시 대상 (l2cache 프로필에서만 동작, 그 외에는 무시된다)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item") // 영역 이름 = application.conf 의 캐시 이름
+@GenerateRowMapper // JdbcTemplate 용 ItemRowMapper 생성 (컴파일 시점)
 public class Item {
 
     @Id // 테이블의 PK
@@ -21,6 +29,11 @@ public class Item {
     private Integer price;
     private Integer quantity;
 
+    @Version // 낙관적 락 : 수정할 때마다 1 증가, update ... where id = ? and version = ? 로 사용한다.
+    @ColumnDefault("0") // ddl-auto 로 테이블을 만들 때 사용 (schema.sql 과 같은 기본값)
+    @Column(nullable = false)
+    private Long version; // 저장 전에는 null (Spring Data JPA 는 version 이 null 이면 새 엔티티로 판단한다)
+
     // JPA 는 public 또는 protected 기본 생성자가 필수
     public Item() {
     }
@@ -0,0 +1,42 @@
+package hello.itemservice.domain;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * item_name 검색용 trigram 색인 (ItemTrigrams)
+ * JPA 에서는 조회(서브쿼리) 에만 사용한다. 저장, 삭제는 JDBC batch 로 실행한다.
+ */
+@Data
+@Entity
+@Table(name = "item_trigram", indexes = @Index(name = "idx_item_trigram_item_id", columnList = "item_id"))
+@IdClass(ItemTrigram.Key.class)
+public class ItemTrigram {
+
+    @Id
+    @Column(length = 3)
+    private String trigram;
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    public ItemTrigram() {
+    }
+
+    public ItemTrigram(String trigram, Long itemId) {
+        this.trigram = trigram;
+        this.itemId = itemId;
+    }
+
+    /**
+     * 복합 키 (trigram, item_id)
+     */
+    @Data
+    public static class Key implements Serializable {
+        private String trigram;
+        private Long itemId;
+    }
+}
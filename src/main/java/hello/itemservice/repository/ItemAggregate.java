@@ -0,0 +1,55 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import lombok.Data;
+
+/**
+ * 상품 집계 결과 (대시보드 용)
+ * - itemCount : 상품 수
+ * - totalStockValue : 재고 금액 합계 (price * quantity)
+ * - minPrice, maxPrice : 최저, 최고 가격 (대상이 없으면 null)
+ */
+@Data
+public class ItemAggregate {
+
+    private long itemCount;
+    private long totalStockValue;
+    private Integer minPrice;
+    private Integer maxPrice;
+
+    public ItemAggregate() {
+    }
+
+    // JPQL, Querydsl 생성자 프로젝션에서 사용
+    public ItemAggregate(long itemCount, long totalStockValue, Integer minPrice, Integer maxPrice) {
+        this.itemCount = itemCount;
+        this.totalStockValue = totalStockValue;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * DB 를 사용하지 않는 구현체에서 item 을 한 건씩 누적
+     * SQL 집계 함수와 같이 null 인 값은 sum, min, max 에서 제외한다.
+     */
+    public void add(Item item) {
+        itemCount++;
+        Integer price = item.getPrice();
+        if (price == null) {
+            return;
+        }
+        if (item.getQuantity() != null) {
+            totalStockValue += (long) price * item.getQuantity();
+        }
+        if (minPrice == null || price < minPrice) {
+            minPrice = price;
+        }
+        if (maxPrice == null || price > maxPrice) {
+            maxPrice = price;
+        }
+    }
+}
+/* 집계 쿼리 */
+// findAll() 결과를 받아서 자바에서 계산하면 조건에 맞는 모든 row 를 DB 에서 가져와 객체로 만들어야 한다.
+// count, sum, min, max 를 SQL 로 실행하면 DB 가 계산하고 결과 1 row 만 전송한다.
+// sum(price * quantity) 는 int 범위를 넘을 수 있으므로 bigint 로 변환해서 계산한다.
@@ -2,8 +2,13 @@ package hello.itemservice.repository;
 
 import hello.itemservice.domain.Item;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * interface
@@ -13,10 +18,90 @@ public interface ItemRepository {
 
     Item save(Item item);
 
+    /**
+     * 여러 item 을 한 번에 저장
+     * 저장 후 각 item 에 생성된 id 가 입력된다.
+     * 기본 구현은 save() 를 반복한다. (DB 왕복이 없는 메모리 구현체용)
+     */
+    default List<Item> saveAll(List<Item> items) {
+        items.forEach(this::save);
+        return items;
+    }
+
+    /**
+     * item 수정 : 조회 없이 update ... where id = ? and version = coalesce(?, version) 한 번으로 수정하고 version 을 1 증가시킨다.
+     * 수정된 행이 없으면 ItemUpdateDto.checkUpdated() 규칙으로 예외를 던진다.
+     * - updateParam.version 이 다르면 OptimisticLockingFailureException
+     * - 없는 id 이면 NoSuchElementException
+     */
     void update(Long itemId, ItemUpdateDto updateParam);
 
+    /**
+     * 여러 item 을 한 번에 수정
+     * @return itemId 별 수정 성공 여부 (해당 id 의 item 이 없으면 false)
+     * version 이 다른 item 이 있으면 OptimisticLockingFailureException 이 발생한다. (트랜잭션 롤백)
+     * 기본 구현은 update() 를 반복한다. (DB 왕복이 없는 메모리 구현체용)
+     */
+    default Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        updateParams.forEach((itemId, updateParam) -> {
+            try {
+                update(itemId, updateParam);
+                result.put(itemId, true);
+            } catch (NoSuchElementException e) {
+                result.put(itemId, false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 재고 예약 : quantity 만큼 수량을 줄인다. (조회 없이 update ... where id = ? and quantity >= ? 한 번)
+     * 동시에 여러 요청이 같은 item 을 예약해도 재고보다 많이 예약되지 않는다.
+     * @return 예약 성공 여부 (재고가 부족하거나 없는 id 이면 false, 수량은 바뀌지 않는다)
+     */
+    boolean reserve(Long itemId, int quantity);
+
+    /**
+     * 재고 반환 : 예약을 취소할 때 quantity 만큼 수량을 늘린다.
+     * 없는 id 이면 NoSuchElementException
+     */
+    void release(Long itemId, int quantity);
+
     Optional<Item> findById(Long id);
 
     List<Item> findAll(ItemSearchCondition cond);
 
+    /**
+     * 목록 화면용 조회 : 엔티티 대신 ItemSummary 로 바로 조회 (조건, 페이징은 findAll() 과 같다)
+     * 기본 구현은 findAll() 결과를 변환한다.
+     */
+    default List<ItemSummary> findSummaries(ItemSearchCondition cond) {
+        return findAll(cond).stream()
+                .map(ItemSummary::from)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 검색 결과를 List 로 모으지 않고 한 건씩 action 에 전달
+     * DB 구현체는 커서(fetch size 단위)로 읽으므로 결과 건수와 상관없이 메모리 사용량이 일정하다.
+     * 커넥션, 커서는 메소드 안에서 열고 닫는다. (Stream 을 반환하면 호출하는 쪽에서 close() 를 책임져야 한다)
+     * 기본 구현은 findAll() 결과를 순회한다. (데이터가 이미 메모리에 있는 구현체용)
+     */
+    default void streamAll(ItemSearchCondition cond, Consumer<Item> action) {
+        findAll(cond).forEach(action);
+    }
+
+    /**
+     * 검색 조건(itemName, maxPrice, afterId) 에 맞는 item 의 집계
+     * pageSize 는 적용하지 않는다.
+     * DB 구현체는 집계 SQL 로 결과 1 row 만 조회한다.
+     * 기본 구현은 streamAll() 로 한 건씩 누적한다.
+     */
+    default ItemAggregate aggregate(ItemSearchCondition cond) {
+        ItemAggregate aggregate = new ItemAggregate();
+        streamAll(new ItemSearchCondition(cond.getItemName(), cond.getMaxPrice(), cond.getAfterId(), null), aggregate::add);
+        return aggregate;
+    }
+
 }
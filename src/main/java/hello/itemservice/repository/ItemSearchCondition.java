@@ -2,6 +2,8 @@ package hello.itemservice.repository;
 
 import lombok.Data;
 
+import java.util.Set;
+
 /**
  * Item 검색 조건 Model
  */
@@ -11,6 +13,11 @@ public class ItemSearchCondition {
     private String itemName;
     private Integer maxPrice;
 
+    // keyset 페이징 : id 가 afterId 보다 큰 item 을 id 순으로 pageSize 건 조회
+    // 둘 다 null 이면 페이징 없이 전체 조회
+    private Long afterId;
+    private Integer pageSize;
+
     public ItemSearchCondition() {
     }
 
@@ -18,4 +25,24 @@ public class ItemSearchCondition {
         this.itemName = itemName;
         this.maxPrice = maxPrice;
     }
+
+    public ItemSearchCondition(String itemName, Integer maxPrice, Long afterId, Integer pageSize) {
+        this.itemName = itemName;
+        this.maxPrice = maxPrice;
+        this.afterId = afterId;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * itemName 검색어의 trigram (item_trigram 으로 후보를 줄일 때 사용, 줄일 수 없으면 빈 Set)
+     * 저장소의 파라미터 바인딩(BeanPropertySqlParameterSource, MyBatis) 에서 itemNameTrigrams 로 사용한다.
+     */
+    public Set<String> getItemNameTrigrams() {
+        return ItemTrigrams.forSearch(itemName);
+    }
 }
+/* keyset 페이징 */
+// offset 페이징 (limit ? offset ?) 은 앞의 offset 건을 모두 읽고 버리므로 뒤 페이지로 갈수록 느려진다.
+// keyset 페이징 (where id > ? order by id limit ?) 은 PK 인덱스에서 afterId 위치를 바로 찾아 pageSize 건만 읽는다.
+// 따라서 전체 데이터 건수, 페이지 위치와 상관없이 한 페이지 조회 시간이 일정하다.
+// 대신 임의의 페이지 번호로 바로 이동할 수는 없고, 이전 페이지의 마지막 id 를 알아야 다음 페이지를 조회할 수 있다.
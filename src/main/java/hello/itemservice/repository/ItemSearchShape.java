@@ -0,0 +1,66 @@
+package hello.itemservice.repository;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * 검색 조건의 모양 (어떤 조건이 있는지)
+ *
+ * 동적 쿼리의 SQL(JPQL) 문자열은 조건의 값이 아니라 모양에 따라서만 달라진다.
+ * 모양을 int 하나로 표현하고, 리포지토리는 생성 시점에 모든 모양의 SQL 을 배열로 만들어 둔 뒤 조회 시 shape 로 꺼내 쓴다.
+ * - 하위 4 bit : NAME, PRICE, AFTER_ID, PAGE
+ * - 그 위 : 검색어의 trigram 개수 (0 ~ ItemTrigrams.MAX_SEARCH_TRIGRAMS, in 목록 크기와 having count 가 달라진다)
+ */
+public final class ItemSearchShape {
+
+    public static final int NAME = 1;
+    public static final int PRICE = 1 << 1;
+    public static final int AFTER_ID = 1 << 2;
+    public static final int PAGE = 1 << 3;
+
+    private static final int TRIGRAM_SHIFT = 4;
+
+    /**
+     * shape 의 개수 (배열 크기)
+     */
+    public static final int SIZE = (ItemTrigrams.MAX_SEARCH_TRIGRAMS + 1) << TRIGRAM_SHIFT;
+
+    private ItemSearchShape() {
+    }
+
+    public static int of(ItemSearchCondition cond) {
+        int shape = 0;
+        if (StringUtils.hasText(cond.getItemName())) {
+            shape |= NAME | cond.getItemNameTrigrams().size() << TRIGRAM_SHIFT;
+        }
+        if (cond.getMaxPrice() != null) {
+            shape |= PRICE;
+        }
+        if (cond.getAfterId() != null) {
+            shape |= AFTER_ID;
+        }
+        if (cond.getPageSize() != null) {
+            shape |= PAGE;
+        }
+        return shape;
+    }
+
+    public static boolean has(int shape, int condition) {
+        return (shape & condition) != 0;
+    }
+
+    public static int trigramCount(int shape) {
+        return shape >>> TRIGRAM_SHIFT;
+    }
+
+    /**
+     * where 절이 필요한 모양인지 (NAME, PRICE, AFTER_ID 중 하나라도 있으면)
+     */
+    public static boolean hasWhere(int shape) {
+        return has(shape, NAME | PRICE | AFTER_ID);
+    }
+}
+/* 미리 만든 SQL */
+// 조회마다 sql += ... 로 문자열을 만들면 호출마다 StringBuilder, 문자열 할당이 생긴다.
+// 모양의 개수는 정해져 있으므로(SIZE) 생성 시점에 한 번만 만들고, 같은 모양은 항상 같은 String 객체를 사용한다.
+// H2 는 같은 세션에서 같은 SQL 문자열의 파싱 결과를 재사용할 수 있다. (세션별 파싱 캐시 QUERY_CACHE_SIZE, application.properties 참고)
+// trigram 이 없는 모양(NAME 이 없거나 3 글자 미만) 과 NAME 이 없는데 trigram 이 있는 모양은 사용되지 않지만, 배열 인덱스 계산을 단순하게 하기 위해 함께 만든다.
@@ -0,0 +1,30 @@
+package hello.itemservice.repository;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 재고 예약(reserve) / 반환(release) 공통 확인
+ */
+public final class ItemStock {
+
+    private ItemStock() {
+    }
+
+    /**
+     * 예약, 반환 수량은 1 이상이어야 한다. (0 이하를 허용하면 reserve 가 재고를 늘릴 수 있다)
+     */
+    public static void checkQuantity(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive: " + quantity);
+        }
+    }
+
+    /**
+     * release 의 update 결과 확인 : 수정된 행이 없으면 없는 id 이다.
+     */
+    public static void checkReleased(Long itemId, long updatedRows) {
+        if (updatedRows == 0) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+    }
+}
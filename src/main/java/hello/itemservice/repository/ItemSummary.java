@@ -0,0 +1,30 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import lombok.Value;
+
+/**
+ * 상품 목록 화면용 조회 모델 (읽기 전용)
+ * 엔티티가 아니므로 영속성 컨텍스트에 등록되지 않고, 변경 감지용 스냅샷도 만들지 않는다.
+ */
+@Value
+public class ItemSummary {
+
+    Long id;
+    String itemName;
+    Integer price;
+    Integer quantity;
+
+    public static ItemSummary from(Item item) {
+        return new ItemSummary(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+}
+/* DTO 프로젝션 */
+// 엔티티(Item) 로 조회하면 Hibernate 는 조회한 엔티티마다 영속성 컨텍스트에 등록하고, 변경 감지를 위해 스냅샷(필드 값 복사본) 을 보관한다.
+// 트랜잭션이 끝날 때(flush) 모든 엔티티를 스냅샷과 비교하므로 목록이 크면 메모리와 CPU 를 함께 사용한다.
+// 화면에 보여주기만 하는 목록은 필요한 컬럼만 DTO 로 바로 조회하면 이 비용이 없다.
+// - JPQL : select new 패키지명.ItemSummary(i.id, ...) from Item i
+// - Querydsl : Projections.constructor(ItemSummary.class, ...)
+// - JdbcTemplate : RowMapper 에서 바로 생성, MyBatis : resultMap 의 constructor
+
+// @Value : 모든 필드를 private final 로 만들고, getter, 생성자, equals/hashCode, toString 을 만든다. (불변 객체)
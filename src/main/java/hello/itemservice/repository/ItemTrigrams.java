@@ -0,0 +1,109 @@
+package hello.itemservice.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * item_name 검색용 trigram 색인 (item_trigram 테이블)
+ *
+ * item_name 의 연속된 3 글자를 (trigram, item_id) 로 저장해두고,
+ * 검색어의 trigram 을 모두 가진 item 만 후보로 골라서 마지막에 like 로 확인한다.
+ * 저장소 구현(JdbcTemplate, JPA) 이 save, update 시점에 같은 트랜잭션 안에서 갱신한다. (MyBatis 는 ItemMapper.xml)
+ */
+public final class ItemTrigrams {
+
+    public static final int GRAM = 3;
+
+    // item_name 은 varchar(10)
+    private static final int MAX_NAME_LENGTH = 10;
+
+    /**
+     * 검색에 사용하는 trigram 의 최대 개수 (item_name 최대 길이의 trigram 수)
+     */
+    public static final int MAX_SEARCH_TRIGRAMS = MAX_NAME_LENGTH - GRAM + 1;
+
+    private static final String INSERT_SQL = "insert into item_trigram (trigram, item_id) values (?, ?)";
+    private static final String DELETE_SQL = "delete from item_trigram where item_id = ?";
+
+    private ItemTrigrams() {
+    }
+
+    /**
+     * 저장할 trigram (중복 제거, 3 글자 미만이면 빈 Set)
+     */
+    public static Set<String> of(String itemName) {
+        if (itemName == null || itemName.length() < GRAM) {
+            return Collections.emptySet();
+        }
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= itemName.length(); i++) {
+            trigrams.add(itemName.substring(i, i + GRAM));
+        }
+        return trigrams;
+    }
+
+    /**
+     * 검색어의 trigram
+     * 빈 Set 이면 후보를 줄일 수 없으므로 like 조건만 사용한다.
+     * - 3 글자 미만인 검색어
+     * - like 의 특수 문자(%, _, \) 가 있는 검색어 : 와일드카드로 동작하므로 글자 그대로의 trigram 으로 줄이면 결과가 달라진다.
+     * item_name 보다 긴 검색어는 앞 10 글자의 trigram 만 사용한다. (최대 MAX_SEARCH_TRIGRAMS 개)
+     * 일부 trigram 으로 고른 후보도 검색 결과를 모두 포함하고, 마지막 like 로 확인하므로 결과는 같다.
+     */
+    public static Set<String> forSearch(String itemName) {
+        if (itemName == null || itemName.indexOf('%') >= 0 || itemName.indexOf('_') >= 0 || itemName.indexOf('\\') >= 0) {
+            return Collections.emptySet();
+        }
+        return of(itemName.length() > MAX_NAME_LENGTH ? itemName.substring(0, MAX_NAME_LENGTH) : itemName);
+    }
+
+    /**
+     * 새로 저장한 item 의 trigram 추가 (JDBC batch)
+     * @param itemNames itemId -> item_name
+     */
+    public static void insert(Connection connection, Map<Long, String> itemNames) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_SQL)) {
+            for (Map.Entry<Long, String> entry : itemNames.entrySet()) {
+                for (String trigram : of(entry.getValue())) {
+                    pstmt.setString(1, trigram);
+                    pstmt.setLong(2, entry.getKey());
+                    pstmt.addBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 수정한 item 의 trigram 을 새 이름 기준으로 교체 (삭제 후 추가, JDBC batch)
+     * @param itemNames itemId -> 수정된 item_name
+     */
+    public static void replace(Connection connection, Map<Long, String> itemNames) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(DELETE_SQL)) {
+            for (Long itemId : itemNames.keySet()) {
+                pstmt.setLong(1, itemId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        insert(connection, itemNames);
+    }
+}
+/* trigram 색인 */
+// like '%검색어%' 는 앞에 와일드카드가 있으므로 item_name 에 B-tree 인덱스가 있어도 사용할 수 없고, item 테이블 전체를 읽는다.
+// 검색어가 item_name 에 포함되어 있으면 검색어의 모든 trigram 도 item_name 에 포함되어 있다.
+// 따라서 item_trigram 의 PK (trigram, item_id) 인덱스로 trigram 마다 item_id 를 찾고,
+// 모든 trigram 을 가진 item_id (group by item_id having count(*) = trigram 개수) 만 후보로 남긴다.
+// trigram 이 모두 있어도 순서가 다를 수 있으므로 (ex "abcab" 와 "bcabc") 후보는 like 로 다시 확인한다.
+
+// 대소문자
+// H2 의 like 는 대소문자를 구분하므로 trigram 도 원래 글자 그대로 저장한다.
+
+// 기존 데이터
+// 이 테이블을 추가하기 전에 저장된 item 은 trigram 이 없으므로 이름으로 검색되지 않는다.
+// 기존 DB 에는 sql/migration_item_trigram.sql 을 한 번 실행해서 테이블을 만들고 trigram 을 채운다. (다시 실행해도 된다)
@@ -0,0 +1,64 @@
+package hello.itemservice.repository;
+
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * JDBC batch update 공통 - update count 배열을 itemId 별 성공 여부로 바꾼다. (JdbcTemplate, MyBatis)
+ *
+ * Statement.SUCCESS_NO_INFO 는 "실행은 됐지만 영향받은 row 수는 모른다" 이므로 성공으로 취급하지 않는다.
+ * - version 을 지정하지 않은 항목 : where id = ? 만 남으므로, 같은 트랜잭션에서 id 가 있는지 다시 조회해서 정한다.
+ * - version 을 지정한 항목 : 조회로는 내 update 가 적용된 것인지 다른 트랜잭션이 version 을 올린 것인지 구분할 수 없으므로 예외를 던진다.
+ */
+public final class ItemUpdateCounts {
+
+    private ItemUpdateCounts() {
+    }
+
+    /**
+     * @param itemIds      update 를 추가한 순서의 itemId
+     * @param updateCounts executeBatch() 의 결과 (itemIds 와 같은 순서)
+     * @param existingIds  SUCCESS_NO_INFO 인 itemId 중 item 테이블에 있는 id 를 조회
+     */
+    public static Map<Long, Boolean> updated(List<Long> itemIds, int[] updateCounts,
+                                             Map<Long, ItemUpdateDto> updateParams,
+                                             Function<Collection<Long>, Set<Long>> existingIds) {
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        List<Long> unknownIds = new ArrayList<>();
+        for (int i = 0; i < itemIds.size(); i++) {
+            Long itemId = itemIds.get(i);
+            ItemUpdateDto updateParam = updateParams.get(itemId);
+            int updateCount = updateCounts[i];
+            if (updateCount == Statement.SUCCESS_NO_INFO) {
+                if (updateParam.getVersion() != null) {
+                    throw new IncorrectUpdateSemanticsDataAccessException(
+                            "update count unknown (SUCCESS_NO_INFO) for versioned item: " + itemId);
+                }
+                unknownIds.add(itemId);
+                result.put(itemId, false); // 순서 유지, 아래에서 다시 정한다.
+                continue;
+            }
+            if (updateCount == 0 && updateParam.getVersion() != null) {
+                updateParam.checkUpdated(itemId, 0);
+            }
+            result.put(itemId, updateCount > 0);
+        }
+
+        if (!unknownIds.isEmpty()) {
+            Set<Long> foundIds = existingIds.apply(unknownIds);
+            unknownIds.forEach(itemId -> result.put(itemId, foundIds.contains(itemId)));
+        }
+        return result;
+    }
+}
+/* SUCCESS_NO_INFO */
+// 일부 드라이버는 batch 실행 후 문장별 row 수 대신 SUCCESS_NO_INFO(-2) 를 돌려준다. (H2 는 항상 row 수를 돌려준다)
+// 이를 성공으로 취급하면 없는 id 가 true 로 보고되고, 그 id 로 item_trigram 이 추가되며, version 충돌을 놓친다.
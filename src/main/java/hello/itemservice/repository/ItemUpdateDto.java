@@ -1,6 +1,10 @@
 package hello.itemservice.repository;
 
+import hello.itemservice.domain.Item;
 import lombok.Data;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.NoSuchElementException;
 
 /**
  * 상품 수정 객체
@@ -11,6 +15,7 @@ public class ItemUpdateDto {
     private String itemName;
     private Integer price;
     private Integer quantity;
+    private Long version; // 수정 폼을 열 때 읽은 version, null 이면 version 을 확인하지 않는다.
 
     public ItemUpdateDto() {
     }
@@ -20,6 +25,36 @@ public class ItemUpdateDto {
         this.price = price;
         this.quantity = quantity;
     }
+
+    public ItemUpdateDto(String itemName, Integer price, Integer quantity, Long version) {
+        this(itemName, price, quantity);
+        this.version = version;
+    }
+
+    /**
+     * update ... where id = ? and version = coalesce(?, version) 의 결과 확인
+     * 수정된 행이 없으면 version 을 지정한 경우 다른 요청이 먼저 수정(또는 삭제) 한 것이므로 ObjectOptimisticLockingFailureException,
+     * version 을 지정하지 않은 경우 없는 id 이므로 NoSuchElementException 을 던진다.
+     */
+    public void checkUpdated(Long itemId, long updatedRows) {
+        if (updatedRows > 0) {
+            return;
+        }
+        if (version != null) {
+            throw new ObjectOptimisticLockingFailureException(Item.class, itemId);
+        }
+        throw new NoSuchElementException("item not found: " + itemId);
+    }
+
+    /**
+     * 조회한 item 을 변경할 때 (메모리 리포지토리, JPA 변경 감지) 의 version 확인
+     * version 을 지정했는데 현재 version 과 다르면 ObjectOptimisticLockingFailureException 을 던진다.
+     */
+    public void checkVersion(Long itemId, Long currentVersion) {
+        if (version != null && !version.equals(currentVersion)) {
+            throw new ObjectOptimisticLockingFailureException(Item.class, itemId);
+        }
+    }
 }
 /* 참고 DTO */
 // DTO : Data Transfer Object
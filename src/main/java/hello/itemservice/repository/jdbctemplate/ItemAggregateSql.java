@@ -0,0 +1,26 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.repository.ItemAggregate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * JdbcTemplate 리포지토리 공통 - 집계 SQL
+ * where 절은 각 리포지토리의 동적 쿼리를 붙여서 사용한다.
+ */
+final class ItemAggregateSql {
+
+    // price * quantity 는 int 범위를 넘을 수 있으므로 bigint 로 계산한다.
+    static final String SELECT = "select count(*) as item_count," +
+            " coalesce(sum(cast(price as bigint) * quantity), 0) as total_stock_value," +
+            " min(price) as min_price, max(price) as max_price" +
+            " from item";
+
+    static final RowMapper<ItemAggregate> ROW_MAPPER = (rs, rowNum) -> new ItemAggregate(
+            rs.getLong("item_count"),
+            rs.getLong("total_stock_value"),
+            rs.getObject("min_price", Integer.class),
+            rs.getObject("max_price", Integer.class));
+
+    private ItemAggregateSql() {
+    }
+}
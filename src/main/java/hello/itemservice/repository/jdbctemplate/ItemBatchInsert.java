@@ -0,0 +1,68 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemTrigrams;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcOperations;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JdbcTemplate 리포지토리 공통 - item 배치 저장
+ *
+ * JdbcTemplate.batchUpdate() 와 SimpleJdbcInsert.executeBatch() 는 생성된 키를 돌려주지 않는다.
+ * 따라서 PreparedStatement 를 직접 사용해서 addBatch() / executeBatch() 후 getGeneratedKeys() 로 id 를 채운다.
+ * id 를 채운 후 같은 커넥션으로 item_trigram 도 추가한다.
+ */
+final class ItemBatchInsert {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String SQL = "insert into item (item_name, price, quantity) values (?, ?, ?)";
+
+    private ItemBatchInsert() {
+    }
+
+    static List<Item> insert(JdbcOperations template, List<Item> items) {
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            List<Item> chunk = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+            // ConnectionCallback : 커넥션 획득/반납, 예외 변환은 JdbcTemplate 이 처리한다.
+            template.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(SQL, new String[]{"id"})) {
+                    for (Item item : chunk) {
+                        pstmt.setString(1, item.getItemName());
+                        pstmt.setObject(2, item.getPrice(), Types.INTEGER);
+                        pstmt.setObject(3, item.getQuantity(), Types.INTEGER);
+                        pstmt.addBatch();
+                    }
+                    // chunk 단위로 한 번에 전송 (DB 왕복 1회)
+                    pstmt.executeBatch();
+
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        for (Item item : chunk) {
+                            if (!keys.next()) {
+                                throw new DataRetrievalFailureException("generated key not returned");
+                            }
+                            item.setId(keys.getLong(1));
+                            item.setVersion(0L); // 컬럼 기본값
+                        }
+                    }
+                }
+
+                Map<Long, String> itemNames = new LinkedHashMap<>();
+                for (Item item : chunk) {
+                    itemNames.put(item.getId(), item.getItemName());
+                }
+                ItemTrigrams.insert(connection, itemNames);
+                return null;
+            });
+        }
+        return items;
+    }
+}
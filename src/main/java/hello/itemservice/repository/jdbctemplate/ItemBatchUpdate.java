@@ -0,0 +1,79 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.repository.ItemUpdateCounts;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.jdbc.core.JdbcOperations;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JdbcTemplate 리포지토리 공통 - item 배치 수정
+ *
+ * JdbcTemplate.batchUpdate() 로 update 문을 chunk 단위로 묶어서 전송하고,
+ * 반환된 row 수 배열로 itemId 별 성공 여부를 만든다.
+ * 수정된 item 은 item_trigram 도 새 이름으로 교체한다.
+ * version 을 지정한 항목이 수정되지 않았으면 OptimisticLockingFailureException 을 던진다. (없는 id 는 false)
+ * 드라이버가 row 수 대신 SUCCESS_NO_INFO 를 돌려주면 ItemUpdateCounts 가 다시 확인한다.
+ */
+final class ItemBatchUpdate {
+
+    static final String SQL = "update item set item_name = ?, price = ?, quantity = ?, version = version + 1"
+            + " where id = ? and version = coalesce(?, version)";
+    static final int[] ARG_TYPES = {Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.BIGINT, Types.BIGINT};
+
+    private ItemBatchUpdate() {
+    }
+
+    static Map<Long, Boolean> update(JdbcOperations template, Map<Long, ItemUpdateDto> updateParams) {
+        List<Long> itemIds = new ArrayList<>(updateParams.keySet());
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+
+        for (int from = 0; from < itemIds.size(); from += ItemBatchInsert.BATCH_SIZE) {
+            List<Long> chunk = itemIds.subList(from, Math.min(from + ItemBatchInsert.BATCH_SIZE, itemIds.size()));
+            List<Object[]> args = new ArrayList<>(chunk.size());
+            for (Long itemId : chunk) {
+                args.add(args(itemId, updateParams.get(itemId)));
+            }
+
+            // chunk 단위로 한 번에 전송 (DB 왕복 1회), 결과는 추가한 순서대로 영향받은 row 수
+            int[] updateCounts = template.batchUpdate(SQL, args, ARG_TYPES);
+            Map<Long, Boolean> updated = ItemUpdateCounts.updated(chunk, updateCounts, updateParams,
+                    ids -> existingIds(template, ids));
+            Map<Long, String> updatedNames = new LinkedHashMap<>();
+            updated.forEach((itemId, success) -> {
+                if (success) {
+                    updatedNames.put(itemId, updateParams.get(itemId).getItemName());
+                }
+            });
+            result.putAll(updated);
+            ItemTrigramSql.replace(template, updatedNames);
+        }
+        return result;
+    }
+
+    /**
+     * SQL 의 파라미터 (ARG_TYPES 순서)
+     * version 이 null 이면 coalesce(null, version) = version 이므로 version 을 확인하지 않는다. (타입은 ARG_TYPES 로 지정)
+     */
+    static Object[] args(Long itemId, ItemUpdateDto updateParam) {
+        return new Object[]{updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity(),
+                itemId, updateParam.getVersion()};
+    }
+
+    /**
+     * update count 가 SUCCESS_NO_INFO 인 itemId 중 있는 id (ItemUpdateCounts)
+     */
+    private static Set<Long> existingIds(JdbcOperations template, Collection<Long> itemIds) {
+        String params = String.join(",", Collections.nCopies(itemIds.size(), "?"));
+        return new HashSet<>(template.queryForList("select id from item where id in (" + params + ")",
+                Long.class, itemIds.toArray()));
+    }
+}
@@ -0,0 +1,32 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.repository.ItemStock;
+import org.springframework.jdbc.core.JdbcOperations;
+
+/**
+ * JdbcTemplate 리포지토리 공통 - 재고 예약 / 반환
+ *
+ * 조회 없이 update 한 번으로 수량을 바꾼다. 재고 확인(quantity >= ?) 도 같은 문장의 조건이므로
+ * 동시에 여러 요청이 예약해도 DB 의 row lock 안에서 차례로 확인되고, 재고가 음수가 되지 않는다.
+ * 수량이 바뀌므로 version 도 증가시킨다. (수정 폼에서 읽은 수량으로 덮어쓰지 않도록)
+ */
+final class ItemStockSql {
+
+    static final String RESERVE_SQL = "update item set quantity = quantity - ?, version = version + 1"
+            + " where id = ? and quantity >= ?";
+    static final String RELEASE_SQL = "update item set quantity = quantity + ?, version = version + 1"
+            + " where id = ?";
+
+    private ItemStockSql() {
+    }
+
+    static boolean reserve(JdbcOperations template, Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return template.update(RESERVE_SQL, quantity, itemId, quantity) > 0;
+    }
+
+    static void release(JdbcOperations template, Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        ItemStock.checkReleased(itemId, template.update(RELEASE_SQL, quantity, itemId));
+    }
+}
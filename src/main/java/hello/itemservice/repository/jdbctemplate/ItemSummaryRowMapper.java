@@ -0,0 +1,29 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.repository.ItemSummary;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * JdbcTemplate 리포지토리 공통 - ItemSummary 직접 매핑
+ * select id, item_name, price, quantity 순서의 컬럼을 인덱스로 읽는다.
+ * (BeanPropertyRowMapper 처럼 리플렉션, setter 를 사용하지 않는다)
+ */
+final class ItemSummaryRowMapper implements RowMapper<ItemSummary> {
+
+    static final ItemSummaryRowMapper INSTANCE = new ItemSummaryRowMapper();
+
+    private ItemSummaryRowMapper() {
+    }
+
+    @Override
+    public ItemSummary mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new ItemSummary(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getObject(3, Integer.class),
+                rs.getObject(4, Integer.class));
+    }
+}
@@ -0,0 +1,47 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.repository.ItemTrigrams;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcOperations;
+
+import java.util.Map;
+
+/**
+ * JdbcTemplate 리포지토리 공통 - item_trigram 갱신, 검색 후보 SQL
+ */
+final class ItemTrigramSql {
+
+    private ItemTrigramSql() {
+    }
+
+    /**
+     * 검색어의 trigram 을 모두 가진 item 만 후보로 남기는 조건
+     * trigram 개수는 in 목록의 크기와 같이 SQL 마다 고정이므로 그대로 SQL 에 넣는다.
+     * @param trigramParams in 목록 파라미터 (? 목록 또는 :itemNameTrigrams)
+     */
+    static String candidateSql(String trigramParams, int trigramCount) {
+        // PK (trigram, item_id) 이므로 item_id 별 row 수 = 일치한 trigram 수
+        return " id in (select item_id from item_trigram where trigram in (" + trigramParams + ")"
+                + " group by item_id having count(*) = " + trigramCount + ")";
+    }
+
+    static void insert(JdbcOperations template, Map<Long, String> itemNames) {
+        if (itemNames.isEmpty()) {
+            return;
+        }
+        template.execute((ConnectionCallback<Void>) connection -> {
+            ItemTrigrams.insert(connection, itemNames);
+            return null;
+        });
+    }
+
+    static void replace(JdbcOperations template, Map<Long, String> itemNames) {
+        if (itemNames.isEmpty()) {
+            return;
+        }
+        template.execute((ConnectionCallback<Void>) connection -> {
+            ItemTrigrams.replace(connection, itemNames);
+            return null;
+        });
+    }
+}
@@ -1,8 +1,12 @@
 package hello.itemservice.repository.jdbctemplate;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.domain.ItemRowMapper;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -11,13 +15,18 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * JdbcTemplate
@@ -28,7 +37,15 @@ import java.util.Optional;
 @Repository
 public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
 
+    // streamAll() 에서 한 번에 가져올 row 수
+    private static final int FETCH_SIZE = 100;
+
     private final JdbcTemplate template;
+    private final JdbcTemplate streamTemplate;
+
+    // 검색 조건의 모양(ItemSearchShape) 별 SQL : 생성 시점에 한 번만 만든다.
+    private final String[] findAllSql = new String[ItemSearchShape.SIZE];
+    private final String[] aggregateSql = new String[ItemSearchShape.SIZE];
 
     /**
      * JdbcTemplate 는 관례상 다음과 같이 생성자를 이용하여 사용함
@@ -36,14 +53,24 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
     public JdbcTemplateItemRepositoryV1(DataSource dataSource) {
         // JdbcTemplate 는 DataSource 가 필요
         this.template = new JdbcTemplate(dataSource);
+        // fetch size 는 streamAll() 전용 template 에만 설정한다.
+        this.streamTemplate = new JdbcTemplate(dataSource);
+        this.streamTemplate.setFetchSize(FETCH_SIZE);
         // DataSource 를 의존 관계 주입받아 생성자 내부에서 JdbcTemplate 생성함
         // JdbcTemplate 를 스프링 빈으로 직접 등록하고 주입받는 방식도 OK
+
+        for (int shape = 0; shape < ItemSearchShape.SIZE; shape++) {
+            findAllSql[shape] = findAllSql(shape);
+            aggregateSql[shape] = ItemAggregateSql.SELECT + whereSql(shape);
+        }
     }
 
     /**
      * Item 저장
+     * item_trigram 도 함께 추가하므로 트랜잭션 안에서 실행한다.
      */
     @Override
+    @Transactional
     public Item save(Item item) {
         String sql = "insert into item (item_name, price, quantity) values (?, ?, ?)";
 
@@ -62,19 +89,54 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
         // DB 에서 key 를 생성해주므로 INSERT 가 완료된 후 생성된 ID 를 조회할 수 있다.
         long key = keyHolder.getKey().longValue();
         item.setId(key);
+        item.setVersion(0L); // 컬럼 기본값
+        ItemTrigramSql.insert(template, Collections.singletonMap(key, item.getItemName()));
         return item;
     }
 
+    /**
+     * 여러 Item 저장 (JDBC batch)
+     * save() 를 반복하면 item 마다 DB 왕복이 발생하므로 addBatch() / executeBatch() 로 묶어서 전송한다.
+     */
+    @Override
+    @Transactional
+    public List<Item> saveAll(List<Item> items) {
+        return ItemBatchInsert.insert(template, items);
+    }
+
     @Override
+    @Transactional
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        String sql = "update item set item_name=?, price=?, quantity=? where id=?";
+        // 조회 없이 update 한 번으로 수정한다. version 이 다르면(다른 요청이 먼저 수정) 영향받은 row 가 0 이다.
+        // (sql 은 ItemBatchUpdate 와 같다)
+        int updated = template.update(ItemBatchUpdate.SQL,
+                ItemBatchUpdate.args(itemId, updateParam),
+                ItemBatchUpdate.ARG_TYPES);
+        updateParam.checkUpdated(itemId, updated);
+        ItemTrigramSql.replace(template, Collections.singletonMap(itemId, updateParam.getItemName()));
+    }
+
+    /**
+     * 여러 Item 수정 (JDBC batch)
+     * 존재하지 않는 id 는 영향받은 row 가 0 이므로 false 로 반환된다.
+     */
+    @Override
+    @Transactional
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return ItemBatchUpdate.update(template, updateParams);
+    }
+
+    /**
+     * 재고 예약 / 반환 : update 한 번 (ItemStockSql)
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return ItemStockSql.reserve(template, itemId, quantity);
+    }
 
-        // 쿼리문의 조건이 id = ? 이므로 영향받은 row 는 무조건 1개이다.
-        template.update(sql,
-                updateParam.getItemName(),
-                updateParam.getPrice(),
-                updateParam.getQuantity(),
-                itemId);
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStockSql.release(template, itemId, quantity);
     }
 
     /**
@@ -83,7 +145,7 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
      */
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id = ?";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id = ?";
         try {
             // template.queryForObject() : 결과 row 가 1개 일 때 사용
             Item item = template.queryForObject(sql, itemRowMapper(), id);
@@ -103,48 +165,136 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
         // 차이가 있다면 다음과 같이 JdbcTemplate 의 loop 를 돌려주고,
         // 개발자는 RowMapper 를 구현해서 그 내부 코드만 채운다
         // while(resultSet 이 끝날 때 까지) { rowMapper(rs, rowNum) }
-        return (rs, rowNum) -> {
-            Item item = new Item();
-            item.setId(rs.getLong("id"));
-            item.setItemName(rs.getString("item_name"));
-            item.setPrice(rs.getInt("price"));
-            item.setQuantity(rs.getInt("quantity"));
-            return item;
-        };
+        // ItemRowMapper : Item 의 @GenerateRowMapper 로 컴파일 시점에 생성된 RowMapper
+        // 컬럼을 이름 대신 인덱스로 읽으므로 select 절은 ItemRowMapper.COLUMNS 를 사용한다.
+        return ItemRowMapper.INSTANCE;
     }
 
     @Override
     public List<Item> findAll(ItemSearchCondition searchCondition) {
-        String itemName = searchCondition.getItemName();
-        Integer maxPrice = searchCondition.getMaxPrice();
+        String sql = findAllSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        // template.query()
+        // - 결과가 하나 이상일 때 사용
+        // - RowMapper : DB 리턴 결과인 ResultSet 객체로 변환
+        // - 결과가 없으면 빈 Collection 반환
+        return template.query(sql, itemRowMapper(), params(searchCondition));
+    }
+
+    /**
+     * 목록 화면용 조회 : findAll() 과 같은 SQL, ItemSummary 로 바로 매핑
+     */
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCondition searchCondition) {
+        String sql = findAllSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        return template.query(sql, ItemSummaryRowMapper.INSTANCE, params(searchCondition));
+    }
+
+    /**
+     * findAll() 과 같은 SQL 을 커서로 읽는다.
+     * queryForStream() : ResultSet 을 한 row 씩 RowMapper 로 변환하는 Stream
+     * Stream 을 close() 해야 ResultSet, 커넥션이 반납되므로 try-with-resources 로 사용한다.
+     */
+    @Override
+    public void streamAll(ItemSearchCondition searchCondition, Consumer<Item> action) {
+        String sql = findAllSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        try (Stream<Item> items = streamTemplate.queryForStream(sql, itemRowMapper(), params(searchCondition))) {
+            items.forEach(action);
+        }
+    }
+
+    /**
+     * 집계 SQL : count, sum, min, max 를 DB 에서 계산하고 결과 1 row 만 조회한다.
+     */
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition searchCondition) {
+        String sql = aggregateSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        // 집계 함수만 사용하므로 조건에 맞는 row 가 없어도 결과는 1 row 이다. (count = 0)
+        // 집계 SQL 에는 limit 이 없으므로 pageSize 는 바인딩하지 않는다.
+        return template.queryForObject(sql, ItemAggregateSql.ROW_MAPPER, whereParams(searchCondition).toArray());
+    }
+
+    /**
+     * findAll(), streamAll() 공통 동적 쿼리 (생성 시점에 모양마다 한 번 만든다)
+     */
+    private static String findAllSql(int shape) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item" + whereSql(shape);
+        if (ItemSearchShape.has(shape, ItemSearchShape.PAGE)) {
+            sql += " order by id limit ?";
+        }
+        return sql;
+    }
 
-        String sql = "select id, item_name, price, quantity from item";
+    /**
+     * findAll(), aggregate() 공통 where 절 (검색 조건 + afterId)
+     */
+    private static String whereSql(int shape) {
+        String sql = "";
         // dynamic query
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (ItemSearchShape.hasWhere(shape)) {
             sql += " where";
         }
 
         boolean andFlag = false;
-        List<Object> param = new ArrayList<>();
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.NAME)) {
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다.
+            int trigramCount = ItemSearchShape.trigramCount(shape);
+            if (trigramCount > 0) {
+                sql += ItemTrigramSql.candidateSql(String.join(", ", Collections.nCopies(trigramCount, "?")), trigramCount) + " and";
+            }
             sql += " item_name like concat('%', ?, '%')";
-            param.add(itemName);
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.PRICE)) {
             if (andFlag) {
                 sql += " and";
             }
             sql += " price <= ?";
-            param.add(maxPrice);
+            andFlag = true;
         }
-        log.info("sql={}", sql);
-        // template.query()
-        // - 결과가 하나 이상일 때 사용
-        // - RowMapper : DB 리턴 결과인 ResultSet 객체로 변환
-        // - 결과가 없으면 빈 Collection 반환
-        return template.query(sql, itemRowMapper(), param.toArray());
+
+        // keyset 페이징 : PK 인덱스에서 afterId 다음 위치부터 읽는다.
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > ?";
+        }
+        return sql;
+    }
+
+    /**
+     * SQL 의 ? 순서대로 바인딩할 파라미터 (where 절 파라미터, pageSize)
+     */
+    private static Object[] params(ItemSearchCondition searchCondition) {
+        List<Object> param = whereParams(searchCondition);
+        if (searchCondition.getPageSize() != null) {
+            param.add(searchCondition.getPageSize());
+        }
+        return param.toArray();
+    }
+
+    /**
+     * whereSql() 의 ? 순서대로 바인딩할 파라미터 (trigram 목록, itemName, maxPrice, afterId)
+     */
+    private static List<Object> whereParams(ItemSearchCondition searchCondition) {
+        List<Object> param = new ArrayList<>();
+        String itemName = searchCondition.getItemName();
+        if (StringUtils.hasText(itemName)) {
+            param.addAll(searchCondition.getItemNameTrigrams());
+            param.add(itemName);
+        }
+        if (searchCondition.getMaxPrice() != null) {
+            param.add(searchCondition.getMaxPrice());
+        }
+        if (searchCondition.getAfterId() != null) {
+            param.add(searchCondition.getAfterId());
+        }
+        return param;
     }
 }
 /* findAll() : 동적쿼리 문제 */
@@ -1,12 +1,15 @@
 package hello.itemservice.repository.jdbctemplate;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.domain.ItemRowMapper;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
@@ -16,14 +19,18 @@ import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * NamedParameterJdbcTemplate
@@ -32,7 +39,7 @@ import java.util.Optional;
  * - MapSqlParameterSource
  * Map
  *
- * BeanPropertyRowMapper
+ * ItemRowMapper (@GenerateRowMapper 로 생성, 이전에는 BeanPropertyRowMapper)
  *
  * ItemRepository interface 구현
  */
@@ -40,12 +47,28 @@ import java.util.Optional;
 @Repository
 public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
 
+    // streamAll() 에서 한 번에 가져올 row 수
+    private static final int FETCH_SIZE = 100;
+
     private final NamedParameterJdbcTemplate template;
+    private final NamedParameterJdbcTemplate streamTemplate;
+
+    // 검색 조건의 모양(ItemSearchShape) 별 SQL : 생성 시점에 한 번만 만든다.
+    private final String[] findAllSql = new String[ItemSearchShape.SIZE];
+    private final String[] aggregateSql = new String[ItemSearchShape.SIZE];
 
     public JdbcTemplateItemRepositoryV2(DataSource dataSource) {
         // DataSource 주입받아 생성자로 생성
         // 관례상 많이 사용하는 방법
         this.template = new NamedParameterJdbcTemplate(dataSource);
+        JdbcTemplate fetchSizeTemplate = new JdbcTemplate(dataSource);
+        fetchSizeTemplate.setFetchSize(FETCH_SIZE);
+        this.streamTemplate = new NamedParameterJdbcTemplate(fetchSizeTemplate);
+
+        for (int shape = 0; shape < ItemSearchShape.SIZE; shape++) {
+            findAllSql[shape] = findAllSql(shape);
+            aggregateSql[shape] = ItemAggregateSql.SELECT + whereSql(shape);
+        }
     }
 
     /**
@@ -54,6 +77,7 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
      * 이름지정 파라미터 : BeanPropertySqlParameterSource 사용
      */
     @Override
+    @Transactional
     public Item save(Item item) {
         // 파라미터를 :parameterName 으로 설정
         String sql = "insert into item (item_name, price, quantity) values (:itemName, :price, :quantity)";
@@ -72,17 +96,32 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
 
         Long key = keyHolder.getKey().longValue();
         item.setId(key);
+        item.setVersion(0L); // 컬럼 기본값
+        // 같은 트랜잭션에서 item_trigram 추가
+        ItemTrigramSql.insert(template.getJdbcOperations(), Collections.singletonMap(key, item.getItemName()));
         return item;
     }
 
+    /**
+     * 여러 Item 저장 (JDBC batch)
+     */
+    @Override
+    @Transactional
+    public List<Item> saveAll(List<Item> items) {
+        return ItemBatchInsert.insert(template.getJdbcOperations(), items);
+    }
+
     /**
      * item 업데이트
      *
      * 이름지정 파라미터 : MapSqlParameterSource
      */
     @Override
+    @Transactional
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        String sql = "update item set item_name = :itemName, price = :price, quantity = :quantity where id = :id";
+        // 조회 없이 update 한 번으로 수정한다. version 이 다르면(다른 요청이 먼저 수정) 영향받은 row 가 0 이다.
+        String sql = "update item set item_name = :itemName, price = :price, quantity = :quantity, version = version + 1"
+                + " where id = :id and version = coalesce(:version, version)";
 
         // MapSqlParameterSource
         // Map 과 유사한데, SQL 타입을 지정할 수 있는 등 SQL 에 좀더 특화된 기능을 제공한다.
@@ -92,8 +131,32 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
                 .addValue("itemName", updateParam.getItemName())
                 .addValue("price", updateParam.getPrice())
                 .addValue("quantity", updateParam.getQuantity())
-                .addValue("id", itemId); //이 부분이 별도로 필요하다.
-        template.update(sql, param);
+                .addValue("id", itemId) //이 부분이 별도로 필요하다.
+                .addValue("version", updateParam.getVersion(), Types.BIGINT); // null 이면 version 을 확인하지 않는다.
+        updateParam.checkUpdated(itemId, template.update(sql, param));
+        ItemTrigramSql.replace(template.getJdbcOperations(), Collections.singletonMap(itemId, updateParam.getItemName()));
+    }
+
+    /**
+     * 여러 Item 수정 (JDBC batch)
+     */
+    @Override
+    @Transactional
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return ItemBatchUpdate.update(template.getJdbcOperations(), updateParams);
+    }
+
+    /**
+     * 재고 예약 / 반환 : update 한 번 (ItemStockSql)
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return ItemStockSql.reserve(template.getJdbcOperations(), itemId, quantity);
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStockSql.release(template.getJdbcOperations(), itemId, quantity);
     }
 
     /**
@@ -104,7 +167,7 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
      */
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id = :id";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id = :id";
         try {
             Map<String, Object> param = Map.of("id", id);
             Item item = template.queryForObject(sql, param, itemRowMapper());
@@ -116,41 +179,104 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
 
     @Override
     public List<Item> findAll(ItemSearchCondition searchCondition) {
-        String itemName = searchCondition.getItemName();
-        Integer maxPrice = searchCondition.getMaxPrice();
+        SqlParameterSource param = new BeanPropertySqlParameterSource(searchCondition);
+        String sql = findAllSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        return template.query(sql, param, itemRowMapper());
+    }
+
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCondition searchCondition) {
+        SqlParameterSource param = new BeanPropertySqlParameterSource(searchCondition);
+        String sql = findAllSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        return template.query(sql, param, ItemSummaryRowMapper.INSTANCE);
+    }
+
+    /**
+     * findAll() 과 같은 SQL 을 fetch size 단위로 읽는다. (queryForStream)
+     */
+    @Override
+    public void streamAll(ItemSearchCondition searchCondition, Consumer<Item> action) {
+        SqlParameterSource param = new BeanPropertySqlParameterSource(searchCondition);
+        String sql = findAllSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        try (Stream<Item> items = streamTemplate.queryForStream(sql, param, itemRowMapper())) {
+            items.forEach(action);
+        }
+    }
 
+    /**
+     * 집계 SQL : 결과는 항상 1 row
+     */
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition searchCondition) {
         SqlParameterSource param = new BeanPropertySqlParameterSource(searchCondition);
+        String sql = aggregateSql[ItemSearchShape.of(searchCondition)];
+        log.debug("sql={}", sql);
+        return template.queryForObject(sql, param, ItemAggregateSql.ROW_MAPPER);
+    }
+
+    /**
+     * findAll(), streamAll() 공통 동적 쿼리 (생성 시점에 모양마다 한 번 만든다)
+     */
+    private static String findAllSql(int shape) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item" + whereSql(shape);
+        if (ItemSearchShape.has(shape, ItemSearchShape.PAGE)) {
+            sql += " order by id limit :pageSize";
+        }
+        return sql;
+    }
 
-        String sql = "select id, item_name, price, quantity from item";
-        // dynamic query
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+    /**
+     * findAll(), aggregate() 공통 where 절 (검색 조건 + afterId)
+     */
+    private static String whereSql(int shape) {
+        String sql = "";
+
+        // 동적 쿼리
+        if (ItemSearchShape.hasWhere(shape)) {
             sql += " where";
         }
 
         boolean andFlag = false;
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.NAME)) {
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다. (:itemNameTrigrams 는 in 목록으로 펼쳐진다)
+            int trigramCount = ItemSearchShape.trigramCount(shape);
+            if (trigramCount > 0) {
+                sql += ItemTrigramSql.candidateSql(":itemNameTrigrams", trigramCount) + " and";
+            }
             sql += " item_name like concat('%', :itemName, '%')";
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.PRICE)) {
             if (andFlag) {
                 sql += " and";
             }
             sql += " price <= :maxPrice";
+            andFlag = true;
         }
-        log.info("sql={}", sql);
-        return template.query(sql, param, itemRowMapper());
+
+        // keyset 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > :afterId";
+        }
+        return sql;
     }
 
     /**
-     * BeanPropertyRowMapper
+     * ItemRowMapper (Item 의 @GenerateRowMapper 로 컴파일 시점에 생성)
+     * BeanPropertyRowMapper 는 조회마다 프로퍼티를 리플렉션으로 찾고, 컬럼명을 변환해서 setter 를 호출한다.
+     * 생성된 ItemRowMapper 는 컬럼을 인덱스로 읽어서 setter 를 직접 호출한다. (select 절은 ItemRowMapper.COLUMNS)
      */
     private RowMapper<Item> itemRowMapper() {
-        // Camel case 변환 지원
-        return BeanPropertyRowMapper.newInstance(Item.class);
+        return ItemRowMapper.INSTANCE;
 
-        // BeanPropertyRowMapper
+        // BeanPropertyRowMapper (이전 방식 : return BeanPropertyRowMapper.newInstance(Item.class), Camel case 변환 지원)
         // ResultSet 의 결과를 받아서 자바빈 규약에 맞추어 데이터를 변환한다.
         // 예를들어 DB 에서 조회한 결과가 select id, price 라고 한다면 다음과 같은 코드를 작성해준다.
         // (실제로는 리플렉션 같은 기능을 사용)
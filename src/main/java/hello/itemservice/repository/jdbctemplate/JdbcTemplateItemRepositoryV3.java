@@ -1,12 +1,16 @@
 package hello.itemservice.repository.jdbctemplate;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.domain.ItemRowMapper;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -14,12 +18,16 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
+import java.sql.Types;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * SimpleJdbcInsert
@@ -28,45 +36,97 @@ import java.util.Optional;
 @Repository
 public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
 
+    // streamAll() 에서 한 번에 가져올 row 수
+    private static final int FETCH_SIZE = 100;
+
     private final NamedParameterJdbcTemplate template;
+    private final NamedParameterJdbcTemplate streamTemplate;
     private final SimpleJdbcInsert jdbcInsert;
 
+    // 검색 조건의 모양(ItemSearchShape) 별 SQL : 생성 시점에 한 번만 만든다.
+    private final String[] findAllSql = new String[ItemSearchShape.SIZE];
+    private final String[] aggregateSql = new String[ItemSearchShape.SIZE];
+
     public JdbcTemplateItemRepositoryV3(DataSource dataSource) {
         this.template = new NamedParameterJdbcTemplate(dataSource);
+        JdbcTemplate fetchSizeTemplate = new JdbcTemplate(dataSource);
+        fetchSizeTemplate.setFetchSize(FETCH_SIZE);
+        this.streamTemplate = new NamedParameterJdbcTemplate(fetchSizeTemplate);
         // DataSource 를 주입받아 내부에서 생성한다. (스프링의 관례상 생성 방법)
         this.jdbcInsert = new SimpleJdbcInsert(dataSource)
                 .withTableName("item") // 테이블 명 지정
-                .usingGeneratedKeyColumns("id"); // key 생성하는 PK 컬럼명 지정
-//                .usingColumns("item_name", "price", "quantity"); // INSERT 에 사용할 컬럼 지정, 생략가능
+                .usingGeneratedKeyColumns("id") // key 생성하는 PK 컬럼명 지정
+                .usingColumns("item_name", "price", "quantity"); // INSERT 에 사용할 컬럼 지정, 생략가능
+        // version 은 컬럼 기본값(0) 을 사용한다. (생략하면 저장 전 item 의 version(null) 이 INSERT 된다)
         // SimpleJdbcInsert 는 생성 시점에 DB 테이블의 메타 데이터를 조회한다.
         // 따라서 어떤 컬럼이 있는지 확인할 수 있으므로 usingColumns 를 생략할 수 있다.
         // 만약 특정 컬럼만 지정해서 저장하고 싶다면 usingColumns 를 사용하면 된다.
+
+        for (int shape = 0; shape < ItemSearchShape.SIZE; shape++) {
+            findAllSql[shape] = findAllSql(shape);
+            aggregateSql[shape] = ItemAggregateSql.SELECT + whereSql(shape);
+        }
     }
 
     @Override
+    @Transactional
     public Item save(Item item) {
         SqlParameterSource param = new BeanPropertySqlParameterSource(item);
         // INSERT SQL 생성하고 생성된 키 값도 편리하게 조회할 수 있다.
         Number key = jdbcInsert.executeAndReturnKey(param);
         item.setId(key.longValue());
+        item.setVersion(0L); // 컬럼 기본값
+        // 같은 트랜잭션에서 item_trigram 추가
+        ItemTrigramSql.insert(template.getJdbcOperations(), Collections.singletonMap(item.getId(), item.getItemName()));
         return item;
     }
 
     @Override
+    @Transactional
+    public List<Item> saveAll(List<Item> items) {
+        // jdbcInsert.executeBatch() 는 생성된 키를 돌려주지 않으므로 ItemBatchInsert 를 사용한다.
+        return ItemBatchInsert.insert(template.getJdbcOperations(), items);
+    }
+
+    @Override
+    @Transactional
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        String sql = "update item set item_name = :itemName, price = :price, quantity = :quantity where id = :id";
+        // 조회 없이 update 한 번으로 수정한다. version 이 다르면(다른 요청이 먼저 수정) 영향받은 row 가 0 이다.
+        String sql = "update item set item_name = :itemName, price = :price, quantity = :quantity, version = version + 1"
+                + " where id = :id and version = coalesce(:version, version)";
 
         SqlParameterSource param = new MapSqlParameterSource()
                 .addValue("itemName", updateParam.getItemName())
                 .addValue("price", updateParam.getPrice())
                 .addValue("quantity", updateParam.getQuantity())
-                .addValue("id", itemId);
-        template.update(sql, param);
+                .addValue("id", itemId)
+                .addValue("version", updateParam.getVersion(), Types.BIGINT); // null 이면 version 을 확인하지 않는다.
+        updateParam.checkUpdated(itemId, template.update(sql, param));
+        ItemTrigramSql.replace(template.getJdbcOperations(), Collections.singletonMap(itemId, updateParam.getItemName()));
+    }
+
+    /**
+     * 여러 Item 수정 (JDBC batch)
+     */
+    @Override
+    @Transactional
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return ItemBatchUpdate.update(template.getJdbcOperations(), updateParams);
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return ItemStockSql.reserve(template.getJdbcOperations(), itemId, quantity);
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStockSql.release(template.getJdbcOperations(), itemId, quantity);
     }
 
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id = :id";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id = :id";
 
         try {
             Map<String, Object> param = Map.of("id", id);
@@ -77,39 +137,102 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
         }
     }
 
+    /**
+     * ItemRowMapper : Item 의 @GenerateRowMapper 로 생성 (리플렉션 없이 컬럼 인덱스로 읽는다)
+     */
     private RowMapper<Item> itemRowMapper() {
-        return BeanPropertyRowMapper.newInstance(Item.class);
+        return ItemRowMapper.INSTANCE;
     }
 
     @Override
     public List<Item> findAll(ItemSearchCondition condition) {
-        Integer maxPrice = condition.getMaxPrice();
-        String itemName = condition.getItemName();
+        SqlParameterSource param = new BeanPropertySqlParameterSource(condition);
+        String sql = findAllSql[ItemSearchShape.of(condition)];
+        log.debug("sql={}", sql);
+        return template.query(sql, param, itemRowMapper());
+    }
+
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCondition condition) {
+        SqlParameterSource param = new BeanPropertySqlParameterSource(condition);
+        String sql = findAllSql[ItemSearchShape.of(condition)];
+        log.debug("sql={}", sql);
+        return template.query(sql, param, ItemSummaryRowMapper.INSTANCE);
+    }
+
+    /**
+     * findAll() 과 같은 SQL 을 fetch size 단위로 읽는다. (queryForStream)
+     */
+    @Override
+    public void streamAll(ItemSearchCondition condition, Consumer<Item> action) {
+        SqlParameterSource param = new BeanPropertySqlParameterSource(condition);
+        String sql = findAllSql[ItemSearchShape.of(condition)];
+        log.debug("sql={}", sql);
+        try (Stream<Item> items = streamTemplate.queryForStream(sql, param, itemRowMapper())) {
+            items.forEach(action);
+        }
+    }
 
+    /**
+     * 집계 SQL : 결과는 항상 1 row
+     */
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition condition) {
         SqlParameterSource param = new BeanPropertySqlParameterSource(condition);
+        String sql = aggregateSql[ItemSearchShape.of(condition)];
+        log.debug("sql={}", sql);
+        return template.queryForObject(sql, param, ItemAggregateSql.ROW_MAPPER);
+    }
 
-        String sql = "select id, item_name, price, quantity from item";
+    /**
+     * findAll(), streamAll() 공통 동적 쿼리 (생성 시점에 모양마다 한 번 만든다)
+     */
+    private static String findAllSql(int shape) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item" + whereSql(shape);
+        if (ItemSearchShape.has(shape, ItemSearchShape.PAGE)) {
+            sql += " order by id limit :pageSize";
+        }
+        return sql;
+    }
+
+    /**
+     * findAll(), aggregate() 공통 where 절 (검색 조건 + afterId)
+     */
+    private static String whereSql(int shape) {
+        String sql = "";
 
         // 동적 쿼리
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (ItemSearchShape.hasWhere(shape)) {
             sql += " where";
         }
 
         boolean andFlag = false;
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.NAME)) {
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다. (:itemNameTrigrams 는 in 목록으로 펼쳐진다)
+            int trigramCount = ItemSearchShape.trigramCount(shape);
+            if (trigramCount > 0) {
+                sql += ItemTrigramSql.candidateSql(":itemNameTrigrams", trigramCount) + " and";
+            }
             sql += " item_name like concat('%', :itemName, '%')";
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.PRICE)) {
             if (andFlag) {
                 sql += " and";
             }
             sql += " price <= :maxPrice";
+            andFlag = true;
         }
 
-        log.info("sql={}", sql);
-        return template.query(sql, param, itemRowMapper());
+        // keyset 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > :afterId";
+        }
+        return sql;
     }
 }
 
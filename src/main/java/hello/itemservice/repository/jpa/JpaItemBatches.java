@@ -0,0 +1,112 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * JPA 리포지토리 공통 - 여러 Item 을 BATCH_SIZE 단위로 나누어 저장, 수정
+ *
+ * chunk 마다 flush() 로 SQL 을 전송한 뒤, 이번 호출에서 영속성 컨텍스트에 새로 올린 엔티티만 detach 한다.
+ * (JpaItemRepositoryV1, V2, V3, ItemQueryRepositoryV2 가 같은 방식으로 동작한다)
+ * clear() 는 호출한 쪽이 같은 트랜잭션에서 사용 중인 다른 엔티티까지 detach 하므로 사용하지 않는다.
+ */
+public final class JpaItemBatches {
+
+    // application.properties 의 hibernate.jdbc.batch_size 와 같은 값
+    public static final int BATCH_SIZE = 100;
+
+    private JpaItemBatches() {
+    }
+
+    /**
+     * @param persist chunk 저장 (em.persist() 또는 스프링 데이터 JPA 의 saveAll())
+     */
+    public static void saveAll(EntityManager entityManager, List<Item> items, Consumer<List<Item>> persist) {
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            List<Item> chunk = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+            // 이미 영속 상태로 넘어온 item 은 호출한 쪽의 엔티티이므로 detach 하지 않는다.
+            List<Item> persisted = new ArrayList<>(chunk.size());
+            for (Item item : chunk) {
+                if (!entityManager.contains(item)) {
+                    persisted.add(item);
+                }
+            }
+            persist.accept(chunk);
+            entityManager.flush();
+            persisted.forEach(entityManager::detach);
+        }
+    }
+
+    /**
+     * chunk 단위로 id in (...) 한 번에 조회해서 변경하고, flush() 로 UPDATE 를 JDBC batch 로 전송한다.
+     * 조회되지 않은 id 는 false 로 반환된다.
+     * version 은 조회한 엔티티로 확인하고, UPDATE 에는 Hibernate 가 where version = ? 을 붙인다. (@Version)
+     * @param findAllById chunk 조회 (JPQL, Querydsl 또는 스프링 데이터 JPA 의 findAllById())
+     */
+    public static Map<Long, Boolean> updateAll(EntityManager entityManager, Map<Long, ItemUpdateDto> updateParams,
+                                               Function<List<Long>, List<Item>> findAllById) {
+        List<Long> itemIds = new ArrayList<>(updateParams.keySet());
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+
+        for (int from = 0; from < itemIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = itemIds.subList(from, Math.min(from + BATCH_SIZE, itemIds.size()));
+            // 조회 전에 이미 영속 상태인 item 은 호출한 쪽의 엔티티이므로 detach 하지 않는다.
+            Set<Long> managedIds = managedIds(entityManager, chunk);
+            List<Item> findItems = findAllById.apply(chunk);
+
+            Set<Long> updatedIds = new HashSet<>();
+            Map<Long, String> updatedNames = new LinkedHashMap<>();
+            for (Item findItem : findItems) {
+                ItemUpdateDto updateParam = updateParams.get(findItem.getId());
+                updateParam.checkVersion(findItem.getId(), findItem.getVersion());
+                findItem.setItemName(updateParam.getItemName());
+                findItem.setPrice(updateParam.getPrice());
+                findItem.setQuantity(updateParam.getQuantity());
+                updatedIds.add(findItem.getId());
+                updatedNames.put(findItem.getId(), updateParam.getItemName());
+            }
+            JpaItemTrigrams.replace(entityManager, updatedNames);
+            // 변경 감지로 만들어진 UPDATE 는 hibernate.jdbc.batch_size 단위로 묶여서 전송된다.
+            entityManager.flush();
+            for (Item findItem : findItems) {
+                if (!managedIds.contains(findItem.getId())) {
+                    entityManager.detach(findItem);
+                }
+            }
+
+            chunk.forEach(itemId -> result.put(itemId, updatedIds.contains(itemId)));
+        }
+        return result;
+    }
+
+    /**
+     * itemIds 중 영속성 컨텍스트에 이미 있는 id (SELECT 없이 영속성 컨텍스트만 확인한다)
+     */
+    private static Set<Long> managedIds(EntityManager entityManager, List<Long> itemIds) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Item.class);
+        Set<Long> managedIds = new HashSet<>();
+        for (Long itemId : itemIds) {
+            if (session.getPersistenceContext().getEntity(session.generateEntityKey(itemId, persister)) != null) {
+                managedIds.add(itemId);
+            }
+        }
+        return managedIds;
+    }
+}
+/* IDENTITY 와 JDBC batch */
+// Item.id 는 IDENTITY (DB 가 INSERT 시점에 생성) 이므로 Hibernate 는 persist() 할 때마다 INSERT 를 바로 실행해서 id 를 받는다.
+// 따라서 hibernate.jdbc.batch_size 를 설정해도 INSERT 는 한 건씩 전송된다. (chunk 단위 flush, detach 로 메모리만 일정하게 유지)
+// INSERT 를 실제로 JDBC batch 로 묶으려면 sequence 프로필 (orm-sequence.xml, pooled-lo) 로 id 를 미리 할당한다.
@@ -1,19 +1,28 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
@@ -21,8 +30,21 @@ import java.util.Optional;
 // (참고) 일반적으로는 비즈니스 로직을 시작하는 서비스 계층에서 트랜젝션을 걸어준다.
 public class JpaItemRepositoryV1 implements ItemRepository {
 
+    // streamAll() 에서 한 번에 가져올 row 수
+    private static final int FETCH_SIZE = 100;
+
+    private static final String SELECT_ITEM = "select i";
+    private static final String SELECT_SUMMARY = "select new hello.itemservice.repository.ItemSummary(i.id, i.itemName, i.price, i.quantity)";
+    private static final String SELECT_AGGREGATE = "select new hello.itemservice.repository.ItemAggregate(" +
+            "count(i), coalesce(sum(cast(i.price as long) * i.quantity), 0L), min(i.price), max(i.price))";
+
     private final EntityManager entityManager;
 
+    // 검색 조건의 모양(ItemSearchShape) 별 JPQL : 생성 시점에 한 번만 만든다.
+    private final String[] findAllJpql = new String[ItemSearchShape.SIZE];
+    private final String[] findSummariesJpql = new String[ItemSearchShape.SIZE];
+    private final String[] aggregateJpql = new String[ItemSearchShape.SIZE];
+
     public JpaItemRepositoryV1(EntityManager entityManager) {
         // 스프링 통해 엔티티매니저 주입 받음
         // entityManager 는 내부에 DataSource 가지고있고, DB 접근 가능하다.
@@ -30,6 +52,12 @@ public class JpaItemRepositoryV1 implements ItemRepository {
         // 참고
         // JPA 설정에는 EntityManagerFactory, JpaTransactionManager, DataSource 등 다양한 설정이 필요하다.
         // 스프링 부트가 이 과정들을 자동화 해준다.
+
+        for (int shape = 0; shape < ItemSearchShape.SIZE; shape++) {
+            findAllJpql[shape] = selectJpql(SELECT_ITEM, shape, true);
+            findSummariesJpql[shape] = selectJpql(SELECT_SUMMARY, shape, true);
+            aggregateJpql[shape] = selectJpql(SELECT_AGGREGATE, shape, false);
+        }
     }
 
     @Override
@@ -39,21 +67,63 @@ public class JpaItemRepositoryV1 implements ItemRepository {
         // 실행 결과 로그 : insert into item (id, item_name, price, quantity) values (default, ?, ?, ?)
         // PK 생성 전략을 IDENTITY 로 사용했기 때문에 id 값이 빠져있다.
         // 쿼리 실행 후, Item 객체의 id 필드에 DB 가 생성한 PK 값이 들어가게 된다.
+        JpaItemTrigrams.insert(entityManager, Collections.singletonMap(item.getId(), item.getItemName()));
         return item;
     }
 
+    /**
+     * JpaItemBatches.BATCH_SIZE 마다 flush (SQL 전송) 하고 저장한 엔티티만 detach 해서 메모리 사용량을 일정하게 유지한다.
+     * IDENTITY 전략에서는 INSERT 가 한 건씩 실행된다. (JDBC batch 는 sequence 프로필에서만 동작, JpaItemBatches 참고)
+     */
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        JpaItemBatches.saveAll(entityManager, items, chunk -> chunk.forEach(entityManager::persist));
+        // persist() 시점에 id 가 할당되므로 trigram 은 마지막에 한 번에 추가한다.
+        JpaItemTrigrams.insert(entityManager, JpaItemTrigrams.itemNames(items));
+        return items;
+    }
+
+    /**
+     * 조회 없이 update 한 번으로 수정 (version 확인, 1 증가, JpaItemUpdates)
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = entityManager.find(Item.class, itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        int updated = JpaItemUpdates.update(entityManager, itemId, updateParam);
+        updateParam.checkUpdated(itemId, updated);
+        JpaItemTrigrams.replace(entityManager, Collections.singletonMap(itemId, updateParam.getItemName()));
+        // 이전 방식 : em.find() 로 조회한 엔티티를 변경하면 커밋 시점에 변경 감지로 UPDATE SQL 이 실행된다.
         // em.update() 같은 메소드를 호출하지 않았는데 UPDATE SQL 이 실행된다.
         // JPA 는 트랜젝션이 커밋되는 시점에 변경된 엔티티 객체가 있는지 확인하고, 변경된 경우 SQL 을 실행한다.
         // JPA 가 변경된 엔티티 객체를 찾는 과정은 영속성 컨텍스트라는 JPA 내부 원리에 의한다.
         // 테스트의 경우 마지막에 트랜젝션이 rollback 되므로 @Commit 으로 확인해야 한다.
     }
 
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return JpaItemUpdates.reserve(entityManager, itemId, quantity) > 0;
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        ItemStock.checkReleased(itemId, JpaItemUpdates.release(entityManager, itemId, quantity));
+    }
+
+    /**
+     * 여러 Item 수정
+     * chunk 단위로 id in (...) 한 번에 조회해서 변경하고, flush() 로 UPDATE 를 JDBC batch 로 전송한다. (JpaItemBatches)
+     * 조회되지 않은 id 는 false 로 반환된다.
+     * version 은 조회한 엔티티로 확인하고, UPDATE 에는 Hibernate 가 where version = ? 을 붙인다. (@Version)
+     */
+    @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return JpaItemBatches.updateAll(entityManager, updateParams, chunk -> entityManager
+                .createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", chunk)
+                .getResultList());
+    }
+
     @Override
     public Optional<Item> findById(Long id) {
         Item item = entityManager.find(Item.class, id);
@@ -67,53 +137,147 @@ public class JpaItemRepositoryV1 implements ItemRepository {
 
     @Override
     public List<Item> findAll(ItemSearchCondition cond) {
-        String jpql = "select i from Item i";
+        TypedQuery<Item> query = findAllQuery(findAllJpql, Item.class, cond);
+        return query.getResultList();
+        // JPQL (Java Persistence Query Language) 객체지향 쿼리 언어
+        // 주로 여러 데이터를 복잡한 조건으로 조회할 때 사용
+        // SQL 이 테이블 대상이라면, JPQL 은 엔티티 객체를 대상으로 SQL 을 실행한다 생각하자.
+        // 엔티티 객체를 대상으로 하기 때문에 from 다음에 Item 엔티티 객체 이름이 들어간다.
+        // 엔티티 객체와 속성의 대소문자는 구분해야 한다.
+        // SQL 과 문법이 거의 비슷하다.
+
+        // 로그로 확인한 실행된 JPQL
+        // select i from Item i where i.itemName like concat('%', :itemName, '%') and i.price <= :maxPrice
+        // JPQL 통해 생성된 SQL
+        // select item0_.id as id1_0_, item0_.item_name as item_nam2_0_, item0_.price as price3_0_, item0_.quantity as quantity4_0_ from item item0_ where (item0_.item_name like ('%'||?||'%')) and item0_.price<=?
+
+    }
+
+    /**
+     * 목록 화면용 조회 : JPQL 생성자 표현식
+     * 엔티티가 아닌 DTO 로 조회하므로 영속성 컨텍스트 등록, 스냅샷 생성이 없다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findSummaries(ItemSearchCondition cond) {
+        return findAllQuery(findSummariesJpql, ItemSummary.class, cond).getResultList();
+    }
+
+    /**
+     * findAll() 과 같은 JPQL 을 getResultStream() 으로 읽는다. (Hibernate 는 Query.stream() 으로 동작)
+     * - ScrollableResults(FORWARD_ONLY) 커서, fetch size 단위로 DB 에서 가져온다.
+     * - 읽기 전용으로 조회해서 변경 감지용 스냅샷을 만들지 않는다. (이미 영속 상태인 엔티티에는 적용되지 않는다)
+     * - action 호출 후 새로 읽은 엔티티만 detach 해서 영속성 컨텍스트에 쌓이지 않게 한다. (JpaItemStreams)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(ItemSearchCondition cond, Consumer<Item> action) {
+        // Hibernate Query 로 unwrap 하지 않고 힌트로 지정한다. (fetch size, 읽기 전용)
+        TypedQuery<Item> query = findAllQuery(findAllJpql, Item.class, cond)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true);
 
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
+        try (Stream<Item> items = query.getResultStream()) {
+            JpaItemStreams.forEach(entityManager, items, action);
+        }
+    }
+
+    /**
+     * 집계 JPQL : 생성자 프로젝션으로 결과 1 row 를 ItemAggregate 로 바로 받는다. (엔티티를 조회하지 않음)
+     */
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition cond) {
+        String jpql = aggregateJpql[ItemSearchShape.of(cond)];
+        log.debug("jpql={}", jpql);
+
+        TypedQuery<ItemAggregate> query = entityManager.createQuery(jpql, ItemAggregate.class);
+        setParameters(query, cond);
+        return query.getSingleResult();
+    }
+
+    /**
+     * findAll(), streamAll(), findSummaries() 공통 동적 쿼리
+     * @param jpqls 검색 조건의 모양별 JPQL (findAllJpql, findSummariesJpql)
+     */
+    private <T> TypedQuery<T> findAllQuery(String[] jpqls, Class<T> resultClass, ItemSearchCondition cond) {
+        Integer pageSize = cond.getPageSize();
+
+        String jpql = jpqls[ItemSearchShape.of(cond)];
+        log.debug("jpql={}", jpql);
+
+        TypedQuery<T> query = entityManager.createQuery(jpql, resultClass);
+        setParameters(query, cond);
+        if (pageSize != null) {
+            // JPQL 에는 limit 이 없으므로 setMaxResults() 로 지정한다. (SQL 의 limit 으로 변환)
+            query.setMaxResults(pageSize);
+        }
+        return query;
+    }
+
+    /**
+     * select 절 + where 절 (+ 페이징 정렬) : 생성 시점에 모양마다 한 번 만든다.
+     * @param select select 절 (엔티티 또는 생성자 표현식)
+     */
+    private static String selectJpql(String select, int shape, boolean orderByPage) {
+        String jpql = select + " from Item i" + whereJpql(shape);
+        if (orderByPage && ItemSearchShape.has(shape, ItemSearchShape.PAGE)) {
+            jpql += " order by i.id";
+        }
+        return jpql;
+    }
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+    /**
+     * findAll(), aggregate() 공통 where 절 (검색 조건 + afterId)
+     */
+    private static String whereJpql(int shape) {
+        String jpql = "";
+        if (ItemSearchShape.hasWhere(shape)) {
             jpql += " where";
         }
 
         boolean andFlag = false;
-        List<Object> param = new ArrayList<>();
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.NAME)) {
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다.
+            if (ItemSearchShape.trigramCount(shape) > 0) {
+                jpql += " " + JpaItemTrigrams.CANDIDATE_JPQL + " and";
+            }
             jpql += " i.itemName like concat('%', :itemName, '%')";
-            param.add(itemName);
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.PRICE)) {
             if (andFlag) {
                 jpql += " and";
             }
             jpql += " i.price <= :maxPrice";
-            param.add(maxPrice);
+            andFlag = true;
         }
 
-        log.info("jpql={}", jpql);
+        // keyset 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                jpql += " and";
+            }
+            jpql += " i.id > :afterId";
+        }
+        return jpql;
+    }
 
-        TypedQuery<Item> query = entityManager.createQuery(jpql, Item.class);
-        if (StringUtils.hasText(itemName)) {
-            query.setParameter("itemName", itemName);
+    private void setParameters(TypedQuery<?> query, ItemSearchCondition cond) {
+        if (StringUtils.hasText(cond.getItemName())) {
+            query.setParameter("itemName", cond.getItemName());
+            Set<String> trigrams = cond.getItemNameTrigrams();
+            if (!trigrams.isEmpty()) {
+                query.setParameter("trigrams", trigrams);
+                query.setParameter("trigramCount", (long) trigrams.size());
+            }
         }
-        if (maxPrice != null) {
-            query.setParameter("maxPrice", maxPrice);
+        if (cond.getMaxPrice() != null) {
+            query.setParameter("maxPrice", cond.getMaxPrice());
+        }
+        if (cond.getAfterId() != null) {
+            query.setParameter("afterId", cond.getAfterId());
         }
-        return query.getResultList();
-        // JPQL (Java Persistence Query Language) 객체지향 쿼리 언어
-        // 주로 여러 데이터를 복잡한 조건으로 조회할 때 사용
-        // SQL 이 테이블 대상이라면, JPQL 은 엔티티 객체를 대상으로 SQL 을 실행한다 생각하자.
-        // 엔티티 객체를 대상으로 하기 때문에 from 다음에 Item 엔티티 객체 이름이 들어간다.
-        // 엔티티 객체와 속성의 대소문자는 구분해야 한다.
-        // SQL 과 문법이 거의 비슷하다.
-
-        // 로그로 확인한 실행된 JPQL
-        // select i from Item i where i.itemName like concat('%', :itemName, '%') and i.price <= :maxPrice
-        // JPQL 통해 생성된 SQL
-        // select item0_.id as id1_0_, item0_.item_name as item_nam2_0_, item0_.price as price3_0_, item0_.quantity as quantity4_0_ from item item0_ where (item0_.item_name like ('%'||?||'%')) and item0_.price<=?
-
     }
 }
 /* 예외 변환 */
@@ -1,18 +1,24 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import javax.persistence.TypedQuery;
-import java.util.ArrayList;
+import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository
 @Transactional
@@ -20,18 +26,57 @@ import java.util.Optional;
 public class JpaItemRepositoryV2 implements ItemRepository {
 
     private final SpringDataJpaItemRepository repository;
+    // streamAll() 에서 읽은 엔티티를 detach, item_trigram 갱신에 사용
+    private final EntityManager entityManager;
 
     @Override
     public Item save(Item item) {
-        return repository.save(item);
+        Item savedItem = repository.save(item);
+        JpaItemTrigrams.insert(entityManager, Collections.singletonMap(savedItem.getId(), savedItem.getItemName()));
+        return savedItem;
     }
 
+    /**
+     * JpaItemBatches.BATCH_SIZE 마다 flush 하고 저장한 엔티티만 detach 한다. (IDENTITY 전략의 INSERT 는 한 건씩 실행, JpaItemBatches 참고)
+     */
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        JpaItemBatches.saveAll(entityManager, items, repository::saveAll);
+        JpaItemTrigrams.insert(entityManager, JpaItemTrigrams.itemNames(items));
+        return items;
+    }
+
+    /**
+     * 조회 없이 update 한 번으로 수정 (version 확인, 1 증가, JpaItemUpdates)
+     * @Modifying @Query (JPQL 벌크 update) 는 2차 캐시의 Item 영역 전체를 비우므로 사용하지 않는다.
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = repository.findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        int updated = JpaItemUpdates.update(entityManager, itemId, updateParam);
+        updateParam.checkUpdated(itemId, updated);
+        JpaItemTrigrams.replace(entityManager, Collections.singletonMap(itemId, updateParam.getItemName()));
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return JpaItemUpdates.reserve(entityManager, itemId, quantity) > 0;
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        ItemStock.checkReleased(itemId, JpaItemUpdates.release(entityManager, itemId, quantity));
+    }
+
+    /**
+     * 여러 Item 수정
+     * findAllById() 로 chunk 단위 조회 (id in (...)) 후 변경하고, flush() 로 UPDATE 를 JDBC batch 로 전송한다. (JpaItemBatches)
+     * version 은 조회한 엔티티로 확인한다.
+     */
+    @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return JpaItemBatches.updateAll(entityManager, updateParams, repository::findAllById);
     }
 
     @Override
@@ -41,6 +86,10 @@ public class JpaItemRepositoryV2 implements ItemRepository {
 
     @Override
     public List<Item> findAll(ItemSearchCondition cond) {
+        // 페이징, trigram 색인을 사용할 수 있는 이름 검색은 동적 쿼리 (SpringDataJpaItemSearch) 로 조회한다.
+        if (cond.getAfterId() != null || cond.getPageSize() != null || !cond.getItemNameTrigrams().isEmpty()) {
+            return repository.search(cond);
+        }
 
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
@@ -58,6 +107,32 @@ public class JpaItemRepositoryV2 implements ItemRepository {
             return repository.findAll();
         }
     }
+
+    /**
+     * 목록 화면용 조회 : 엔티티 대신 DTO 로 조회 (SpringDataJpaItemSearch)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findSummaries(ItemSearchCondition cond) {
+        return repository.searchSummaries(cond);
+    }
+
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition cond) {
+        return repository.searchAggregate(cond);
+    }
+
+    /**
+     * findAll() 과 같은 조건을 Stream 으로 읽는다. (SpringDataJpaItemSearch)
+     * action 호출 후 새로 읽은 엔티티만 detach 해서 영속성 컨텍스트에 쌓이지 않게 한다. (JpaItemStreams)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(ItemSearchCondition cond, Consumer<Item> action) {
+        try (Stream<Item> items = repository.searchStream(cond)) {
+            JpaItemStreams.forEach(entityManager, items, action);
+        }
+    }
 }
 // ItemService 는 ItemRepository 에 의존하기 때문에 ItemService 에서 SpringDataJpaItemRepository 를 그대로 사용할 수 있다.
 // 여기서는 JpaItemRepositoryV2 가 MemberRepository 와 SpringDataJpaItemRepository 사이의 어댑터 처럼 사용된다.
@@ -1,21 +1,26 @@
 package hello.itemservice.repository.jpa;
 
 import com.querydsl.core.BooleanBuilder;
-import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.itemservice.domain.Item;
 import hello.itemservice.domain.QItem;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static hello.itemservice.domain.QItem.*;
 
@@ -36,15 +41,52 @@ public class JpaItemRepositoryV3 implements ItemRepository {
     @Override
     public Item save(Item item) {
         entityManager.persist(item);
+        JpaItemTrigrams.insert(entityManager, Collections.singletonMap(item.getId(), item.getItemName()));
         return item;
     }
 
+    /**
+     * JpaItemBatches.BATCH_SIZE 마다 flush 하고 저장한 엔티티만 detach 한다. (IDENTITY 전략의 INSERT 는 한 건씩 실행, JpaItemBatches 참고)
+     */
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        JpaItemBatches.saveAll(entityManager, items, chunk -> chunk.forEach(entityManager::persist));
+        JpaItemTrigrams.insert(entityManager, JpaItemTrigrams.itemNames(items));
+        return items;
+    }
+
+    /**
+     * 조회 없이 update 한 번으로 수정 (version 확인, 1 증가, JpaItemUpdates)
+     * Querydsl update (JPQL 벌크 update) 는 2차 캐시의 Item 영역 전체를 비우므로 사용하지 않는다.
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setQuantity(updateParam.getQuantity());
-        findItem.setPrice(updateParam.getPrice());
+        int updated = JpaItemUpdates.update(entityManager, itemId, updateParam);
+        updateParam.checkUpdated(itemId, updated);
+        JpaItemTrigrams.replace(entityManager, Collections.singletonMap(itemId, updateParam.getItemName()));
+    }
+
+    /**
+     * 재고 예약 : 재고 확인(quantity >= n) 과 차감을 update 한 번으로 실행한다. (JpaItemUpdates)
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return JpaItemUpdates.reserve(entityManager, itemId, quantity) > 0;
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        ItemStock.checkReleased(itemId, JpaItemUpdates.release(entityManager, itemId, quantity));
+    }
+
+    @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return JpaItemBatches.updateAll(entityManager, updateParams, chunk -> queryFactory
+                .selectFrom(item)
+                .where(item.id.in(chunk))
+                .fetch());
     }
 
     @Override
@@ -81,31 +123,36 @@ public class JpaItemRepositoryV3 implements ItemRepository {
     @Override
     public List<Item> findAll(ItemSearchCondition condition) {
         // findAllOld() 코드를 리팩토링
-        String itemName = condition.getItemName();
-        Integer maxPrice = condition.getMaxPrice();
-
         // Querydsl 장점 : 동적 쿼리, 컴파일 시점에 에러체크, 메소드추출로 코드 재사용
-        List<Item> result = queryFactory
-                .select(item) // QItem static import
-                .from(item)
-                .where(likeItemName(itemName), maxPrice(maxPrice)) // where 의 and 조건
-                .fetch();
-
-        return result;
+        // 조건 메소드(likeItemName, maxPrice, afterId) 는 JpaItemRepositoryV2 와 함께 사용하도록 JpaItemSearch 로 추출했다.
+        return JpaItemSearch.items(queryFactory, condition).fetch();
     }
 
-    private BooleanExpression likeItemName(String itemName) {
-        if (StringUtils.hasText(itemName)) {
-            return item.itemName.like("%" + itemName + "%");
+    /**
+     * findAll() 과 같은 조건을 Stream 으로 읽는다.
+     * action 호출 후 새로 읽은 엔티티만 detach 해서 영속성 컨텍스트에 쌓이지 않게 한다. (JpaItemStreams)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(ItemSearchCondition condition, Consumer<Item> action) {
+        try (Stream<Item> items = JpaItemSearch.stream(queryFactory, condition)) {
+            JpaItemStreams.forEach(entityManager, items, action);
         }
-        return null;
     }
 
-    private BooleanExpression maxPrice(Integer maxPrice) {
-        if (maxPrice != null) {
-            return item.price.loe(maxPrice);
-        }
-        return null;
+    /**
+     * 목록 화면용 조회 : ItemSummary 를 바로 생성한다.
+     * 엔티티가 아니므로 영속성 컨텍스트 등록, 변경 감지 스냅샷이 없다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findSummaries(ItemSearchCondition condition) {
+        return JpaItemSearch.summaries(queryFactory, condition).fetch();
+    }
+
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition condition) {
+        return JpaItemSearch.aggregate(queryFactory, condition);
     }
 }
 // 예외변환
@@ -0,0 +1,116 @@
+package hello.itemservice.repository.jpa;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.util.StringUtils;
+
+import java.util.stream.Stream;
+
+import static hello.itemservice.domain.QItem.item;
+
+/**
+ * Querydsl 검색 쿼리 (JpaItemRepositoryV3, SpringDataJpaItemSearchImpl 공통)
+ * 값이 없는 조건은 null 을 반환해서 where 에서 빠지므로, 조건의 조합마다 쿼리를 따로 만들지 않는다.
+ * (:x is null or ...) 처럼 인덱스를 쓸 수 없는 조건도 생기지 않는다.
+ */
+public final class JpaItemSearch {
+
+    // stream() 에서 한 번에 가져올 row 수
+    private static final int FETCH_SIZE = 100;
+
+    private JpaItemSearch() {
+    }
+
+    /**
+     * @param select 조회 대상 (엔티티 또는 DTO 프로젝션)
+     */
+    public static <T> JPAQuery<T> query(JPAQueryFactory queryFactory, Expression<T> select, ItemSearchCondition condition) {
+        JPAQuery<T> query = queryFactory
+                .select(select)
+                .from(item)
+                .where(likeItemName(condition.getItemName()), maxPrice(condition.getMaxPrice()),
+                        afterId(condition.getAfterId())); // where 의 and 조건
+
+        // keyset 페이징 : where id > ? order by id limit ?
+        if (condition.getAfterId() != null || condition.getPageSize() != null) {
+            query.orderBy(item.id.asc());
+        }
+        if (condition.getPageSize() != null) {
+            query.limit(condition.getPageSize());
+        }
+        return query;
+    }
+
+    public static JPAQuery<Item> items(JPAQueryFactory queryFactory, ItemSearchCondition condition) {
+        return query(queryFactory, item, condition);
+    }
+
+    /**
+     * 목록 화면용 조회 : Projections.constructor 로 ItemSummary 를 바로 생성한다.
+     */
+    public static JPAQuery<ItemSummary> summaries(JPAQueryFactory queryFactory, ItemSearchCondition condition) {
+        return query(queryFactory,
+                Projections.constructor(ItemSummary.class, item.id, item.itemName, item.price, item.quantity),
+                condition);
+    }
+
+    /**
+     * items() 와 같은 조건을 Stream 으로 읽는다.
+     * JPAQuery.stream() 은 Hibernate 에서 ScrollableResults(FORWARD_ONLY) 로 동작하고, 읽기 전용 힌트로 스냅샷을 만들지 않는다.
+     */
+    public static Stream<Item> stream(JPAQueryFactory queryFactory, ItemSearchCondition condition) {
+        return items(queryFactory, condition)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .stream();
+    }
+
+    /**
+     * 집계 쿼리 : 결과 1 row 를 ItemAggregate 로 받는다. (정렬, limit 없음)
+     */
+    public static ItemAggregate aggregate(JPAQueryFactory queryFactory, ItemSearchCondition condition) {
+        return queryFactory
+                .select(Projections.constructor(ItemAggregate.class,
+                        item.count(),
+                        // price * quantity 는 int 범위를 넘을 수 있으므로 long 으로 계산
+                        item.price.castToNum(Long.class).multiply(item.quantity).sum().coalesce(0L),
+                        item.price.min(),
+                        item.price.max()))
+                .from(item)
+                .where(likeItemName(condition.getItemName()), maxPrice(condition.getMaxPrice()),
+                        afterId(condition.getAfterId()))
+                .fetchOne();
+    }
+
+    private static BooleanExpression likeItemName(String itemName) {
+        if (StringUtils.hasText(itemName)) {
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다.
+            BooleanExpression candidate = JpaItemTrigrams.candidate(itemName);
+            BooleanExpression like = item.itemName.like("%" + itemName + "%");
+            return candidate == null ? like : candidate.and(like);
+        }
+        return null;
+    }
+
+    private static BooleanExpression maxPrice(Integer maxPrice) {
+        if (maxPrice != null) {
+            return item.price.loe(maxPrice);
+        }
+        return null;
+    }
+
+    private static BooleanExpression afterId(Long afterId) {
+        if (afterId != null) {
+            return item.id.gt(afterId);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * JPA 리포지토리 공통 - streamAll() 에서 읽은 Item 을 한 건씩 전달
+ *
+ * action 호출 후 이 stream 이 영속성 컨텍스트에 새로 올린 엔티티만 detach 해서 쌓이지 않게 한다.
+ * 호출 전부터 영속 상태였던 item (호출한 쪽이 같은 트랜잭션에서 수정 중일 수 있다) 은 그대로 둔다.
+ */
+public final class JpaItemStreams {
+
+    private JpaItemStreams() {
+    }
+
+    public static void forEach(EntityManager entityManager, Stream<Item> items, Consumer<Item> action) {
+        Set<Object> managedItems = managedItems(entityManager);
+        items.forEach(item -> {
+            action.accept(item);
+            if (!managedItems.contains(item)) {
+                entityManager.detach(item);
+            }
+        });
+    }
+
+    /**
+     * 현재 영속성 컨텍스트의 Item 엔티티 (동일성 비교)
+     * 같은 id 의 row 를 다시 읽으면 Hibernate 는 이미 있는 인스턴스를 돌려주므로 인스턴스로 비교할 수 있다.
+     */
+    private static Set<Object> managedItems(EntityManager entityManager) {
+        Set<Object> managedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entry.getKey() instanceof Item) {
+                managedItems.add(entry.getKey());
+            }
+        }
+        return managedItems;
+    }
+}
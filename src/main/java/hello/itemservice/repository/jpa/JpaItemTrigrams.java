@@ -0,0 +1,73 @@
+package hello.itemservice.repository.jpa;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import hello.itemservice.domain.Item;
+import hello.itemservice.domain.QItem;
+import hello.itemservice.domain.QItemTrigram;
+import hello.itemservice.repository.ItemTrigrams;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JPA 리포지토리 공통 - item_trigram 갱신, 검색 후보 조건
+ *
+ * 갱신은 엔티티(persist, 변경 감지) 대신 Session.doWork() 로 같은 커넥션에서 JDBC batch 로 실행한다.
+ * 삭제 후 같은 키로 다시 추가할 때 영속성 컨텍스트에 남은 엔티티와 충돌하지 않고, 조회 없이 바로 교체할 수 있다.
+ */
+public final class JpaItemTrigrams {
+
+    /**
+     * JPQL 후보 조건 : :trigrams 를 모두 가진 item (:trigramCount = :trigrams 의 개수)
+     */
+    public static final String CANDIDATE_JPQL = "i.id in (select t.itemId from ItemTrigram t where t.trigram in :trigrams" +
+            " group by t.itemId having count(t.trigram) = :trigramCount)";
+
+    private JpaItemTrigrams() {
+    }
+
+    public static void insert(EntityManager entityManager, Map<Long, String> itemNames) {
+        if (!itemNames.isEmpty()) {
+            entityManager.unwrap(Session.class).doWork(connection -> ItemTrigrams.insert(connection, itemNames));
+        }
+    }
+
+    public static void replace(EntityManager entityManager, Map<Long, String> itemNames) {
+        if (!itemNames.isEmpty()) {
+            entityManager.unwrap(Session.class).doWork(connection -> ItemTrigrams.replace(connection, itemNames));
+        }
+    }
+
+    /**
+     * 저장한 item 들의 itemId -> item_name
+     */
+    public static Map<Long, String> itemNames(List<Item> items) {
+        Map<Long, String> itemNames = new LinkedHashMap<>();
+        for (Item item : items) {
+            itemNames.put(item.getId(), item.getItemName());
+        }
+        return itemNames;
+    }
+
+    /**
+     * Querydsl 후보 조건 (검색어로 후보를 줄일 수 없으면 null : where 에서 무시된다)
+     */
+    public static BooleanExpression candidate(String itemName) {
+        Set<String> trigrams = ItemTrigrams.forSearch(itemName);
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+        QItemTrigram trigram = QItemTrigram.itemTrigram;
+        return QItem.item.id.in(JPAExpressions
+                .select(trigram.itemId)
+                .from(trigram)
+                .where(trigram.trigram.in(trigrams))
+                .groupBy(trigram.itemId)
+                .having(trigram.trigram.count().eq((long) trigrams.size())));
+    }
+}
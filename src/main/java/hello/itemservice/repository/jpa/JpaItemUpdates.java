@@ -0,0 +1,127 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * JPA 리포지토리 공통 - 조회 없는 item 수정
+ *
+ * update ... where id = ? and version = ? 한 번으로 수정하고 version 을 1 증가시킨다.
+ * JPQL 벌크 update 대신 Session.doWork() 로 같은 커넥션에서 SQL 을 실행하고, 수정한 id 의 캐시만 정리한다.
+ * (JPQL 벌크 update 는 Hibernate 가 Item 2차 캐시 영역 전체를 비운다)
+ */
+public final class JpaItemUpdates {
+
+    /**
+     * JdbcTemplate 리포지토리의 ItemBatchUpdate.SQL 과 같은 문장 : version 이 null 이면 version 을 확인하지 않는다.
+     */
+    static final String UPDATE_SQL = "update item set item_name = ?, price = ?, quantity = ?, version = version + 1"
+            + " where id = ? and version = coalesce(?, version)";
+    private static final int[] UPDATE_ARG_TYPES = {Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.BIGINT, Types.BIGINT};
+
+    /**
+     * 재고 예약 / 반환 (JdbcTemplate 리포지토리의 ItemStockSql 과 같은 문장)
+     * 재고 확인(quantity >= ?) 과 차감을 한 문장으로 실행한다.
+     */
+    static final String RESERVE_SQL = "update item set quantity = quantity - ?, version = version + 1"
+            + " where id = ? and quantity >= ?";
+    static final String RELEASE_SQL = "update item set quantity = quantity + ?, version = version + 1"
+            + " where id = ?";
+    private static final int[] RESERVE_ARG_TYPES = {Types.INTEGER, Types.BIGINT, Types.INTEGER};
+    private static final int[] RELEASE_ARG_TYPES = {Types.INTEGER, Types.BIGINT};
+
+    private JpaItemUpdates() {
+    }
+
+    /**
+     * @return 수정된 row 수 (없는 id 이거나 version 이 다르면 0)
+     */
+    public static int update(EntityManager entityManager, Long itemId, ItemUpdateDto updateParam) {
+        return execute(entityManager, itemId, UPDATE_SQL, UPDATE_ARG_TYPES, updateParam.getItemName(),
+                updateParam.getPrice(), updateParam.getQuantity(), itemId, updateParam.getVersion());
+    }
+
+    /**
+     * @return 수정된 row 수 (재고가 부족하거나 없는 id 이면 0)
+     */
+    public static int reserve(EntityManager entityManager, Long itemId, int quantity) {
+        return execute(entityManager, itemId, RESERVE_SQL, RESERVE_ARG_TYPES, quantity, itemId, quantity);
+    }
+
+    /**
+     * @return 수정된 row 수 (없는 id 이면 0)
+     */
+    public static int release(EntityManager entityManager, Long itemId, int quantity) {
+        return execute(entityManager, itemId, RELEASE_SQL, RELEASE_ARG_TYPES, quantity, itemId);
+    }
+
+    /**
+     * 수정 후 영속성 컨텍스트에 남은 수정 전 엔티티를 detach 한다.
+     * getReference() 는 영속성 컨텍스트에 있으면 그 엔티티를, 없으면 초기화하지 않은 프록시를 돌려주므로 SELECT 가 실행되지 않는다.
+     */
+    public static void detach(EntityManager entityManager, Long itemId) {
+        entityManager.detach(entityManager.getReference(Item.class, itemId));
+    }
+
+    private static int execute(EntityManager entityManager, Long itemId, String sql, int[] argTypes, Object... args) {
+        // 앞선 변경(persist, 변경 감지) 을 먼저 DB 에 반영한다. (JPQL 벌크 update 의 FlushMode AUTO 와 같다)
+        entityManager.flush();
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        int updated = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i], argTypes[i]);
+                }
+                return statement.executeUpdate();
+            }
+        });
+        if (updated > 0) {
+            detach(entityManager, itemId);
+            evict(session, itemId);
+        }
+        return updated;
+    }
+
+    /**
+     * 수정한 id 의 2차 캐시 항목과 item 테이블을 사용하는 쿼리 캐시 결과를 무효화한다. (l2cache 프로필)
+     * Hibernate 가 벌크 update 에 하는 정리(BulkOperationCleanupAction) 를 영역 전체 대신 id 하나에 대해 한다.
+     * - 지금 : 캐시 항목 제거, 쿼리 캐시의 item 타임스탬프를 "수정 중" 으로 표시
+     * - 커밋 / 롤백 후 : 그 사이 다른 트랜잭션이 수정 전 값을 다시 캐시했을 수 있으므로 한 번 더 제거, 타임스탬프 갱신
+     */
+    private static void evict(SessionImplementor session, Long itemId) {
+        SessionFactoryImplementor sessionFactory = session.getFactory();
+        SessionFactoryOptions options = sessionFactory.getSessionFactoryOptions();
+        if (!options.isSecondLevelCacheEnabled() && !options.isQueryCacheEnabled()) {
+            return;
+        }
+        Serializable[] querySpaces = sessionFactory.getMetamodel().entityPersister(Item.class).getQuerySpaces();
+        String[] spaces = Arrays.copyOf(querySpaces, querySpaces.length, String[].class);
+        TimestampsCache timestampsCache = sessionFactory.getCache().getTimestampsCache();
+
+        sessionFactory.getCache().evict(Item.class, itemId);
+        timestampsCache.preInvalidate(spaces, session);
+        session.getActionQueue().registerProcess((success, completedSession) -> {
+            sessionFactory.getCache().evict(Item.class, itemId);
+            timestampsCache.invalidate(spaces, completedSession);
+        });
+    }
+}
+/* 조회 없는 수정과 영속성 컨텍스트, 2차 캐시 */
+// 변경 감지 수정은 SELECT (스냅샷 저장) -> 커밋 시점의 비교 -> UPDATE 로 DB 왕복이 2번이다.
+// 조회 없는 update 는 UPDATE 한 번이지만 영속성 컨텍스트의 엔티티는 수정 전 값 그대로 남으므로 detach 한다.
+// doWork() 의 SQL 은 Hibernate 가 알지 못하므로 실행 전에 직접 flush 한다.
+// JPQL 벌크 update (Querydsl update, @Modifying @Query 포함) 를 실행하면 Hibernate 는 어떤 row 가 바뀌었는지 모르므로
+// 대상 엔티티의 2차 캐시 영역 전체를 비운다. 수정이 잦으면 다른 item 의 캐시까지 계속 비워져서 2차 캐시의 효과가 없어진다.
+// 여기서는 수정한 id 를 알고 있으므로 그 id 의 항목만 제거한다. (다른 item 의 캐시는 남는다 : ItemSecondLevelCacheTest)
+// 인기 상품의 재고 예약(reserve) 처럼 같은 item 의 수정이 잦아도 나머지 item 은 계속 캐시에서 읽는다.
+// 쿼리 캐시(ItemQueryRepositoryV2.findAll) 는 결과에 어떤 id 가 포함되는지 알 수 없으므로 item 테이블 단위로 무효화한다.
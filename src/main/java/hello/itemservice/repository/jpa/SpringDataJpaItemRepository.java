@@ -1,14 +1,15 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
-import org.apache.ibatis.annotations.Param;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 // Spring Data JPA 가 제공 하는 JpaRepository 상속
-public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
+// 검색 조건이 여러 개인 동적 검색(페이징, 목록 DTO, 집계, Stream) 은 SpringDataJpaItemSearch (Querydsl) 로 구현한다.
+public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long>, SpringDataJpaItemSearch {
 
     // 이름 조건 검색 쿼리
     // 다음과같은 JPQL 실행 : select i from Item i where i.name like ?
@@ -25,6 +26,7 @@ public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
     // 쿼리 직접 실행
     @Query("select i from Item i where i.itemName like :itemName and i.price <= :price")
     List<Item> findItems(@Param("itemName") String itemName, @Param("price") Integer price);
+
     // 메소드명으로 쿼리를 실행하는 기능의 단점
     // 1. 조건이 많으면 메소드명이 길어진다.
     // 2. 조인 같은 복잡한 조건 사용에 무리가 따른다.
@@ -47,3 +49,7 @@ public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
 // 참고
 // Spring Data JPA 는 동적 쿼리에 약하다.
 // Example 이라는 기능으로 약간의 동적 쿼리를 지원하지만, 실무사용에 기능이 빈약하다.
+// 조건 조합마다 @Query 메소드를 추가하면 조건이 하나 늘 때마다 메소드 수가 두 배가 되므로, 사용자 정의 리포지토리에서 Querydsl 로 한 번에 처리한다.
+
+// @Param
+// 스프링 데이터의 org.springframework.data.repository.query.Param 을 사용한다. (MyBatis 의 @Param 과 이름만 같다)
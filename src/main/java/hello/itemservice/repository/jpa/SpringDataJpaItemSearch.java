@@ -0,0 +1,28 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * SpringDataJpaItemRepository 의 사용자 정의 기능 (동적 검색)
+ * 구현은 SpringDataJpaItemSearchImpl (Querydsl, JpaItemSearch)
+ */
+public interface SpringDataJpaItemSearch {
+
+    List<Item> search(ItemSearchCondition cond);
+
+    List<ItemSummary> searchSummaries(ItemSearchCondition cond);
+
+    ItemAggregate searchAggregate(ItemSearchCondition cond);
+
+    // 트랜잭션 안에서 사용하고 close() 해야 한다.
+    Stream<Item> searchStream(ItemSearchCondition cond);
+}
+// 사용자 정의 리포지토리
+// 스프링 데이터 JPA 리포지토리가 이 인터페이스도 상속하면, 메소드 호출을 이름 + Impl 클래스(스프링 빈) 로 위임한다.
+// 쿼리 메소드, @Query 로 만들기 어려운 동적 쿼리를 직접 구현할 때 사용한다.
@@ -0,0 +1,44 @@
+package hello.itemservice.repository.jpa;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * SpringDataJpaItemSearch 구현 : JpaItemRepositoryV3 와 같은 Querydsl 쿼리 (JpaItemSearch)
+ * 이름 규칙(인터페이스 이름 + Impl) 으로 스프링 데이터 JPA 가 찾아서 빈으로 등록한다.
+ */
+class SpringDataJpaItemSearchImpl implements SpringDataJpaItemSearch {
+
+    private final JPAQueryFactory queryFactory;
+
+    SpringDataJpaItemSearchImpl(EntityManager entityManager) {
+        this.queryFactory = new JPAQueryFactory(entityManager);
+    }
+
+    @Override
+    public List<Item> search(ItemSearchCondition cond) {
+        return JpaItemSearch.items(queryFactory, cond).fetch();
+    }
+
+    @Override
+    public List<ItemSummary> searchSummaries(ItemSearchCondition cond) {
+        return JpaItemSearch.summaries(queryFactory, cond).fetch();
+    }
+
+    @Override
+    public ItemAggregate searchAggregate(ItemSearchCondition cond) {
+        return JpaItemSearch.aggregate(queryFactory, cond);
+    }
+
+    @Override
+    public Stream<Item> searchStream(ItemSearchCondition cond) {
+        return JpaItemSearch.stream(queryFactory, cond);
+    }
+}
@@ -0,0 +1,413 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ObjectUtils;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ItemRepository Interface 의 구현 객체
+ * 메모리 구현 - 컬럼 단위 저장 (columnar)
+ *
+ * Item 객체를 행(row) 단위로 저장하지 않고, 필드별 기본형 배열(컬럼)에 나누어 저장한다.
+ * - id, version : long[]
+ * - price, quantity : int[] + null 비트맵 (행마다 1 bit, 기본형 배열은 null 을 저장할 수 없다)
+ * - item_name : 사전(dictionary) 인코딩, 이름은 한 번만 저장하고 행에는 int 코드만 저장
+ *   사용하는 행이 없어진 이름은 사전에서 제거하고 코드를 다시 사용한다.
+ * Item 객체는 조회 결과로 반환할 때만 만든다.
+ */
+@Repository
+public class ColumnarItemRepository implements ItemRepository {
+
+    private static final int NULL_NAME = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // findAll() 에서 한 번에 처리하는 행 수 (행 번호 배열이 CPU 캐시에 들어가는 크기)
+    private static final int BLOCK_SIZE = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 컬럼, id 는 1 부터 순서대로 발급하므로 행 번호는 id - 1 이다.
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    // null 비트맵 : row 번째 bit 가 1 이면 null (값 배열에는 0 을 저장한다)
+    private long[] priceNulls = new long[bitmapLength(INITIAL_CAPACITY)];
+    private long[] quantityNulls = new long[bitmapLength(INITIAL_CAPACITY)];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int size;
+
+    // item_name 사전 : 코드 -> 이름, 이름 -> 코드
+    // 코드별 사용 중인 행 수를 세고, 0 이 되면 이름을 제거하고 코드를 freeNameCodes 에 반납한다. (제거된 코드의 이름은 null)
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> codesByName = new HashMap<>();
+    private int[] nameRefCounts = new int[INITIAL_CAPACITY];
+    private final Deque<Integer> freeNameCodes = new ArrayDeque<>();
+
+    @Override
+    public Item save(Item item) {
+        lock.writeLock().lock();
+        try {
+            if (size == ids.length) {
+                grow();
+            }
+            int row = size;
+            ids[row] = row + 1;
+            write(row, item.getItemName(), item.getPrice(), item.getQuantity());
+            versions[row] = 0;
+            size++;
+            item.setId(ids[row]);
+            item.setVersion(0L);
+            return item;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            updateParam.checkVersion(itemId, versions[row]);
+            int oldNameCode = nameCodes[row];
+            write(row, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+            // 새 이름을 먼저 등록한 뒤 이전 이름을 반납한다. (이름이 같으면 사용 수가 그대로)
+            releaseName(oldNameCode);
+            versions[row]++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 재고 예약 : quantity 컬럼만 확인하고 바꾼다.
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0 || isNull(quantityNulls, row) || quantities[row] < quantity) {
+                return false;
+            }
+            quantities[row] -= quantity;
+            versions[row]++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            if (!isNull(quantityNulls, row)) {
+                quantities[row] += quantity;
+            }
+            versions[row]++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(toItem(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCondition cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        int limit = cond.getPageSize() == null ? Integer.MAX_VALUE : cond.getPageSize();
+
+        lock.readLock().lock();
+        try {
+            boolean[] matchingCodes = ObjectUtils.isEmpty(itemName) ? null : matchingNameCodes(itemName);
+            int[] selection = new int[BLOCK_SIZE];
+            List<Item> result = new ArrayList<>();
+
+            // 행을 BLOCK_SIZE 단위로 나누어 처리하고, pageSize 건을 채우면 남은 블록은 읽지 않는다.
+            // keyset 페이징 : 행 번호가 id - 1 이므로 afterId 다음 행부터 시작한다.
+            for (int from = firstRow(cond.getAfterId()); from < size && result.size() < limit; from += BLOCK_SIZE) {
+                int to = Math.min(from + BLOCK_SIZE, size);
+
+                // 1. price 컬럼만 읽어서 조건에 맞는 행 번호를 모은다.
+                int selected = maxPrice == null
+                        ? selectAll(selection, from, to)
+                        : selectByMaxPrice(selection, from, to, maxPrice);
+
+                // 2. 이름 조건은 행마다 문자열을 비교하지 않고, 사전의 이름별로 한 번만 비교한다.
+                if (matchingCodes != null) {
+                    selected = selectByName(selection, selected, matchingCodes);
+                }
+
+                // 3. 조건에 맞는 행만 Item 객체로 만든다.
+                for (int i = 0; i < selected && result.size() < limit; i++) {
+                    result.add(toItem(selection[i]));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clearStore() {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            Arrays.fill(priceNulls, 0L);
+            Arrays.fill(quantityNulls, 0L);
+            names.clear();
+            codesByName.clear();
+            Arrays.fill(nameRefCounts, 0);
+            freeNameCodes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * findAll() 과 같은 블록 단위 선택 후, Item 객체를 만들지 않고 price, quantity 컬럼에서 바로 집계한다.
+     */
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        lock.readLock().lock();
+        try {
+            boolean[] matchingCodes = ObjectUtils.isEmpty(itemName) ? null : matchingNameCodes(itemName);
+            int[] selection = new int[BLOCK_SIZE];
+            long count = 0;
+            long totalStockValue = 0;
+            int minPrice = Integer.MAX_VALUE;
+            int maxPriceValue = Integer.MIN_VALUE;
+            boolean hasPrice = false;
+
+            for (int from = firstRow(cond.getAfterId()); from < size; from += BLOCK_SIZE) {
+                int to = Math.min(from + BLOCK_SIZE, size);
+                int selected = maxPrice == null
+                        ? selectAll(selection, from, to)
+                        : selectByMaxPrice(selection, from, to, maxPrice);
+                if (matchingCodes != null) {
+                    selected = selectByName(selection, selected, matchingCodes);
+                }
+
+                count += selected;
+                for (int i = 0; i < selected; i++) {
+                    int row = selection[i];
+                    if (isNull(priceNulls, row)) {
+                        continue;
+                    }
+                    int price = prices[row];
+                    hasPrice = true;
+                    minPrice = Math.min(minPrice, price);
+                    maxPriceValue = Math.max(maxPriceValue, price);
+                    if (!isNull(quantityNulls, row)) {
+                        totalStockValue += (long) price * quantities[row];
+                    }
+                }
+            }
+            return new ItemAggregate(count, totalStockValue,
+                    hasPrice ? minPrice : null, hasPrice ? maxPriceValue : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int selectAll(int[] selection, int from, int to) {
+        for (int row = from; row < to; row++) {
+            selection[row - from] = row;
+        }
+        return to - from;
+    }
+
+    private int selectByMaxPrice(int[] selection, int from, int to, int maxPrice) {
+        // 분기 없이 행 번호를 쓰고, 조건에 맞을 때만 다음 칸으로 이동한다.
+        int[] prices = this.prices;
+        long[] priceNulls = this.priceNulls;
+        int selected = 0;
+        for (int row = from; row < to; row++) {
+            int price = prices[row];
+            selection[selected] = row;
+            selected += (price <= maxPrice & !isNull(priceNulls, row)) ? 1 : 0;
+        }
+        return selected;
+    }
+
+    private int firstRow(Long afterId) {
+        if (afterId == null || afterId < 0) {
+            return 0;
+        }
+        return (int) Math.min(afterId, size);
+    }
+
+    private int selectByName(int[] selection, int selected, boolean[] matchingCodes) {
+        int[] nameCodes = this.nameCodes;
+        int matched = 0;
+        for (int i = 0; i < selected; i++) {
+            int row = selection[i];
+            int code = nameCodes[row];
+            selection[matched] = row;
+            matched += (code != NULL_NAME && matchingCodes[code]) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    private boolean[] matchingNameCodes(String itemName) {
+        boolean[] matching = new boolean[names.size()];
+        for (int code = 0; code < matching.length; code++) {
+            String name = names.get(code);
+            matching[code] = name != null && name.contains(itemName);
+        }
+        return matching;
+    }
+
+    private void write(int row, String itemName, Integer price, Integer quantity) {
+        nameCodes[row] = encodeName(itemName);
+        prices[row] = price == null ? 0 : price;
+        setNull(priceNulls, row, price == null);
+        quantities[row] = quantity == null ? 0 : quantity;
+        setNull(quantityNulls, row, quantity == null);
+    }
+
+    private int encodeName(String itemName) {
+        if (itemName == null) {
+            return NULL_NAME;
+        }
+        int code = codesByName.computeIfAbsent(itemName, name -> {
+            Integer free = freeNameCodes.poll();
+            if (free != null) {
+                names.set(free, name);
+                return free;
+            }
+            names.add(name);
+            if (names.size() > nameRefCounts.length) {
+                nameRefCounts = Arrays.copyOf(nameRefCounts, nameRefCounts.length * 2);
+            }
+            return names.size() - 1;
+        });
+        nameRefCounts[code]++;
+        return code;
+    }
+
+    private void releaseName(int code) {
+        if (code == NULL_NAME || --nameRefCounts[code] > 0) {
+            return;
+        }
+        codesByName.remove(names.get(code));
+        names.set(code, null);
+        freeNameCodes.push(code);
+    }
+
+    /**
+     * 사전에 등록된 이름 수 (제거된 코드 제외)
+     */
+    int dictionarySize() {
+        lock.readLock().lock();
+        try {
+            return codesByName.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Item toItem(int row) {
+        int nameCode = nameCodes[row];
+        Item item = new Item(
+                nameCode == NULL_NAME ? null : names.get(nameCode),
+                isNull(priceNulls, row) ? null : prices[row],
+                isNull(quantityNulls, row) ? null : quantities[row]);
+        item.setId(ids[row]);
+        item.setVersion(versions[row]);
+        return item;
+    }
+
+    private int rowOf(Long id) {
+        if (id == null || id < 1 || id > size) {
+            return -1;
+        }
+        return (int) (id - 1);
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        nameCodes = Arrays.copyOf(nameCodes, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        priceNulls = Arrays.copyOf(priceNulls, bitmapLength(capacity));
+        quantityNulls = Arrays.copyOf(quantityNulls, bitmapLength(capacity));
+    }
+
+    private static int bitmapLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    private static boolean isNull(long[] bitmap, int row) {
+        // long 의 shift 는 하위 6 bit 만 사용하므로 row >>> 6 번째 word 의 (row % 64) 번째 bit 이다.
+        return (bitmap[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private static void setNull(long[] bitmap, int row, boolean isNull) {
+        if (isNull) {
+            bitmap[row >>> 6] |= 1L << row;
+        } else {
+            bitmap[row >>> 6] &= ~(1L << row);
+        }
+    }
+}
+/* 행(row) 저장 vs 컬럼(column) 저장 */
+// MemoryItemRepository 는 item 마다 Item 객체 1개 + Long 1개 + Integer 2개 + String 을 힙에 만든다.
+// 객체 헤더와 참조 때문에 실제 데이터(약 20 byte) 보다 몇 배 많은 메모리를 사용한다.
+// 컬럼 저장은 item 당 long 2개 + int 3개 (28 byte) 와 null 비트맵 2 bit 만 사용하고, 같은 이름은 사전에 한 번만 저장한다.
+
+// null 비트맵
+// Integer.MIN_VALUE 같은 특정 값을 null 로 약속하면 그 값을 실제로 저장한 item 도 null 로 읽힌다.
+// null 여부를 값과 별도의 비트맵에 저장하면 int 의 모든 값을 그대로 저장할 수 있다. (행 64개당 long 1개)
+
+// 사전 정리
+// 이름을 수정해도 이전 이름을 사전에 남겨두면, 이름이 계속 바뀌는 경우 사전이 끝없이 커진다.
+// 코드별 사용 행 수가 0 이 되면 이름을 제거하고, 그 코드는 다음에 등록하는 이름이 다시 사용한다.
+
+// 검색 성능
+// price 조건은 int[] 를 처음부터 끝까지 순서대로 읽는 단순한 반복문이다.
+// 메모리에 연속으로 있으므로 CPU 캐시 효율이 좋고, JIT 컴파일러가 최적화(루프 언롤링, 벡터화) 하기 쉽다.
+// 이름 조건은 이름의 종류 수만큼만 contains() 를 실행한다.
+
+// 동시성
+// ReadWriteLock : 조회는 동시에 여러 스레드가, 저장/수정은 한 스레드만 실행한다.
+// 수정 중인 행을 조회하는 일이 없으므로 일부 필드만 수정된 상태를 볼 수 없다.
+
+// 블록 단위 처리
+// 전체 행을 한 번에 선택하면 행 번호 배열도 전체 크기만큼 필요하다.
+// BLOCK_SIZE 단위로 선택 -> 이름 필터 -> Item 생성을 반복하면 작업 배열이 작게 유지되고,
+// 페이징(pageSize) 으로 필요한 건수를 채우면 나머지 블록은 읽지 않는다.
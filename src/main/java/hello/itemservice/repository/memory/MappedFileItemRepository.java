@@ -0,0 +1,450 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ObjectUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ItemRepository Interface 의 구현 객체
+ * 메모리 맵 파일(off-heap) 구현
+ *
+ * item 을 자바 힙의 객체가 아니라 메모리 맵 파일에 고정 길이 레코드로 저장한다.
+ * 어플리케이션을 다시 시작하면 파일을 다시 매핑해서 저장된 데이터를 그대로 사용한다.
+ *
+ * 파일 구조
+ * - header (32 byte) : magic(int), format(int), record size(int), reserved(int), 저장 건수(long), reserved
+ * - record (72 byte) : id(long), price(int), quantity(int), null flag(byte), 이름 길이(byte), 이름(UTF-8 40 byte), reserved,
+ *                      version(long)
+ * format 1 (64 byte 레코드, version 없음) 파일은 처음 열 때 format 2 로 변환한다. (version 0, 임시 파일에 쓴 후 교체)
+ */
+@Slf4j
+public class MappedFileItemRepository implements ItemRepository, Closeable {
+
+    private static final int MAGIC = 0x4954454D; // "ITEM"
+    private static final int FORMAT = 2;
+    private static final int FORMAT_V1 = 1;
+    private static final int RECORD_SIZE_V1 = 64;
+    // 변환 중인 파일 : [파일명].migrating
+    private static final String MIGRATING_SUFFIX = ".migrating";
+    // 변환 시 한 번에 읽는 레코드 수
+    private static final int MIGRATE_CHUNK_RECORDS = 1024;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int RECORD_SIZE = 72;
+    private static final int ID_OFFSET = 0;
+    private static final int PRICE_OFFSET = 8;
+    private static final int QUANTITY_OFFSET = 12;
+    private static final int FLAGS_OFFSET = 16;
+    private static final int NAME_LENGTH_OFFSET = 17;
+    private static final int NAME_OFFSET = 18;
+    // item_name varchar(10), UTF-8 한 글자는 최대 4 byte
+    private static final int NAME_MAX_BYTES = 40;
+    private static final int VERSION_OFFSET = 64;
+
+    private static final byte NULL_NAME = 1;
+    private static final byte NULL_PRICE = 1 << 1;
+    private static final byte NULL_QUANTITY = 1 << 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // MappedByteBuffer 한 개는 최대 2GB 까지 매핑할 수 있다.
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    public MappedFileItemRepository(Path file) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            if (isFormatV1(file)) {
+                migrateFromV1(file);
+            }
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long fileSize = channel.size();
+            if (fileSize >= HEADER_SIZE) {
+                // 기존 파일을 다시 매핑한다.
+                capacity = (int) Math.max(INITIAL_CAPACITY, Math.min((fileSize - HEADER_SIZE) / RECORD_SIZE, MAX_CAPACITY));
+                map(capacity);
+                checkHeader(file);
+                size = (int) buffer.getLong(COUNT_OFFSET);
+                log.info("mapped item file={}, items={}", file, size);
+            } else {
+                capacity = INITIAL_CAPACITY;
+                map(capacity);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT);
+                buffer.putInt(8, RECORD_SIZE);
+                buffer.putLong(COUNT_OFFSET, 0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Item save(Item item) {
+        lock.writeLock().lock();
+        try {
+            if (size == capacity) {
+                grow();
+            }
+            int row = size;
+            long id = row + 1;
+            buffer.putLong(position(row) + ID_OFFSET, id);
+            buffer.putLong(position(row) + VERSION_OFFSET, 0);
+            write(row, item.getItemName(), item.getPrice(), item.getQuantity());
+            size++;
+            // 레코드를 모두 쓴 후에 저장 건수를 증가시킨다.
+            buffer.putLong(COUNT_OFFSET, size);
+            item.setId(id);
+            item.setVersion(0L);
+            return item;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            int versionPosition = position(row) + VERSION_OFFSET;
+            long version = buffer.getLong(versionPosition);
+            updateParam.checkVersion(itemId, version);
+            write(row, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+            buffer.putLong(versionPosition, version + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 재고 예약 : 레코드의 quantity, version 만 바꾼다.
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                return false;
+            }
+            int position = position(row);
+            int current = buffer.getInt(position + QUANTITY_OFFSET);
+            if ((buffer.get(position + FLAGS_OFFSET) & NULL_QUANTITY) != 0 || current < quantity) {
+                return false;
+            }
+            buffer.putInt(position + QUANTITY_OFFSET, current - quantity);
+            buffer.putLong(position + VERSION_OFFSET, buffer.getLong(position + VERSION_OFFSET) + 1);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            int position = position(row);
+            if ((buffer.get(position + FLAGS_OFFSET) & NULL_QUANTITY) == 0) {
+                buffer.putInt(position + QUANTITY_OFFSET, buffer.getInt(position + QUANTITY_OFFSET) + quantity);
+            }
+            buffer.putLong(position + VERSION_OFFSET, buffer.getLong(position + VERSION_OFFSET) + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(read(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCondition cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        int limit = cond.getPageSize() == null ? Integer.MAX_VALUE : cond.getPageSize();
+
+        lock.readLock().lock();
+        try {
+            List<Item> result = new ArrayList<>();
+            // keyset 페이징 : 레코드 위치가 id 순이므로 afterId 다음 레코드부터 읽고, pageSize 건을 채우면 멈춘다.
+            for (int row = firstRow(cond.getAfterId()); row < size && result.size() < limit; row++) {
+                // 가격 조건은 레코드의 price 만 읽어서 먼저 확인하고, 일치하는 레코드만 Item 으로 만든다.
+                if (maxPrice != null && !priceMatches(row, maxPrice)) {
+                    continue;
+                }
+                Item item = read(row);
+                if (ObjectUtils.isEmpty(itemName)
+                        || (item.getItemName() != null && item.getItemName().contains(itemName))) {
+                    result.add(item);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 변경 내용을 디스크에 반영하고 파일을 닫는다.
+     * 스프링 빈으로 등록하면 컨테이너 종료 시점에 호출된다.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean priceMatches(int row, int maxPrice) {
+        int position = position(row);
+        return (buffer.get(position + FLAGS_OFFSET) & NULL_PRICE) == 0
+                && buffer.getInt(position + PRICE_OFFSET) <= maxPrice;
+    }
+
+    private void write(int row, String itemName, Integer price, Integer quantity) {
+        int position = position(row);
+        byte[] name = itemName == null ? new byte[0] : itemName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > NAME_MAX_BYTES) {
+            throw new IllegalArgumentException("item_name is too long: " + itemName);
+        }
+
+        byte flags = 0;
+        if (itemName == null) {
+            flags |= NULL_NAME;
+        }
+        if (price == null) {
+            flags |= NULL_PRICE;
+        }
+        if (quantity == null) {
+            flags |= NULL_QUANTITY;
+        }
+
+        buffer.putInt(position + PRICE_OFFSET, price == null ? 0 : price);
+        buffer.putInt(position + QUANTITY_OFFSET, quantity == null ? 0 : quantity);
+        buffer.put(position + FLAGS_OFFSET, flags);
+        buffer.put(position + NAME_LENGTH_OFFSET, (byte) name.length);
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(position + NAME_OFFSET + i, name[i]);
+        }
+    }
+
+    private Item read(int row) {
+        int position = position(row);
+        byte flags = buffer.get(position + FLAGS_OFFSET);
+
+        String itemName = null;
+        if ((flags & NULL_NAME) == 0) {
+            byte[] name = new byte[buffer.get(position + NAME_LENGTH_OFFSET)];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = buffer.get(position + NAME_OFFSET + i);
+            }
+            itemName = new String(name, StandardCharsets.UTF_8);
+        }
+        Integer price = (flags & NULL_PRICE) == 0 ? buffer.getInt(position + PRICE_OFFSET) : null;
+        Integer quantity = (flags & NULL_QUANTITY) == 0 ? buffer.getInt(position + QUANTITY_OFFSET) : null;
+
+        Item item = new Item(itemName, price, quantity);
+        item.setId(buffer.getLong(position + ID_OFFSET));
+        item.setVersion(buffer.getLong(position + VERSION_OFFSET));
+        return item;
+    }
+
+    private int rowOf(Long id) {
+        if (id == null || id < 1 || id > size) {
+            return -1;
+        }
+        return (int) (id - 1);
+    }
+
+    private int firstRow(Long afterId) {
+        if (afterId == null || afterId < 0) {
+            return 0;
+        }
+        return (int) Math.min(afterId, size);
+    }
+
+    private static int position(int row) {
+        return HEADER_SIZE + row * RECORD_SIZE;
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("mapped item file is full: " + capacity);
+        }
+        capacity = (int) Math.min((long) capacity * 2, MAX_CAPACITY);
+        try {
+            // 더 큰 크기로 다시 매핑하면 파일도 함께 늘어난다.
+            map(capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+    }
+
+    private static boolean isFormatV1(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(source, 0, HEADER_SIZE);
+            return header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_V1 && header.getInt(8) == RECORD_SIZE_V1;
+        }
+    }
+
+    /**
+     * format 1 (64 byte 레코드) -> format 2 (72 byte 레코드)
+     * 원본은 그대로 두고 [파일명].migrating 에 새 형식으로 쓴 후, 디스크에 반영(force) 하고 원본 위치로 rename 한다.
+     * 어느 시점에 중단되어도 파일은 변환 전(format 1) 또는 변환 후(format 2) 중 하나이고, 다음 실행 시 변환을 다시 시도한다.
+     */
+    private static void migrateFromV1(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + MIGRATING_SUFFIX);
+        long count;
+        try {
+            count = writeFormat2(file, temp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(file);
+        log.info("migrated item file={} to format={}, items={}", file, FORMAT, count);
+    }
+
+    /**
+     * file(format 1) 의 레코드를 temp 에 format 2 로 쓰고 디스크에 반영한다.
+     * @return 레코드 수
+     */
+    private static long writeFormat2(Path file, Path temp) throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = readFully(source, 0, HEADER_SIZE);
+            long count = header.getLong(COUNT_OFFSET);
+            if (count < 0 || HEADER_SIZE + count * RECORD_SIZE_V1 > source.size()) {
+                throw new IllegalStateException("corrupted item file, items=" + count + ": " + file);
+            }
+
+            for (long row = 0; row < count; row += MIGRATE_CHUNK_RECORDS) {
+                int records = (int) Math.min(MIGRATE_CHUNK_RECORDS, count - row);
+                ByteBuffer from = readFully(source, HEADER_SIZE + row * RECORD_SIZE_V1, records * RECORD_SIZE_V1);
+                ByteBuffer to = ByteBuffer.allocate(records * RECORD_SIZE);
+                for (int i = 0; i < records; i++) {
+                    // 64 byte 는 그대로 복사하고, 뒤의 version 은 0 (allocate 의 초기값)
+                    System.arraycopy(from.array(), i * RECORD_SIZE_V1, to.array(), i * RECORD_SIZE, RECORD_SIZE_V1);
+                }
+                writeFully(target, HEADER_SIZE + row * RECORD_SIZE, to);
+            }
+
+            // 레코드를 모두 쓴 후에 header 를 쓴다.
+            header.putInt(4, FORMAT);
+            header.putInt(8, RECORD_SIZE);
+            writeFully(target, 0, header);
+            target.force(true);
+            return count;
+        }
+    }
+
+    /**
+     * rename 도 디스크에 반영한다. (디렉토리를 열 수 없는 OS(Windows) 에서는 생략)
+     */
+    private static void forceDirectory(Path file) {
+        try (FileChannel directory = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("directory force is not supported: {}", file, e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void checkHeader(Path file) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT || buffer.getInt(8) != RECORD_SIZE) {
+            throw new IllegalStateException("not an item file or unsupported format: " + file);
+        }
+    }
+}
+/* off-heap 저장 */
+// HashMap<Long, Item> 에 수백만 건을 저장하면 GC 가 매번 그 객체들을 확인해야 하므로 힙 부담이 커진다.
+// 메모리 맵 파일은 OS 의 페이지 캐시를 사용하므로 자바 힙과 GC 대상에서 빠진다.
+// 조회 결과로 반환하는 Item 객체만 힙에 만든다.
+
+// 고정 길이 레코드
+// 모든 레코드가 72 byte 이므로 id 로 위치를 바로 계산할 수 있다. (위치 = header + (id - 1) * 72)
+// price, quantity 는 int 고정 길이, item_name 은 길이 + UTF-8 bytes 로 저장한다.
+
+// 내구성
+// 쓰기는 매핑된 메모리(페이지 캐시)에 반영되고, OS 가 적절한 시점에 파일에 기록한다.
+// 정상 종료 시에는 close() 에서 force() 로 디스크에 반영하지만,
+// OS 가 비정상 종료되면 마지막 변경 내용은 유실될 수 있다. (트랜잭션, 로그는 제공하지 않는다)
@@ -1,49 +1,156 @@
 package hello.itemservice.repository.memory;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
 import hello.itemservice.repository.ItemUpdateDto;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.ObjectUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
  * ItemRepository Interface 의 구현 객체
  * 메모리 구혀
+ *
+ * 여러 요청(스레드)이 동시에 접근해도 안전하도록 동시성 컬렉션을 사용한다.
  */
 @Repository
 public class MemoryItemRepository implements ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    private static final ConcurrentNavigableMap<Long, Item> store = new ConcurrentSkipListMap<>(); //static
+    private static final AtomicLong sequence = new AtomicLong(); //static
+
+    // price 보조 인덱스 (price, id 순으로 정렬), maxPrice 검색은 이 인덱스의 범위만 읽는다.
+    private static final ConcurrentSkipListSet<PriceEntry> priceIndex = new ConcurrentSkipListSet<>(); //static
+
+    // 같은 id 의 수정은 순서대로 처리해야 인덱스가 저장소와 어긋나지 않는다. (id 별 lock striping)
+    private static final int LOCK_STRIPES = 64;
+    private static final Object[] locks = new Object[LOCK_STRIPES]; //static
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
 
     @Override
     public Item save(Item item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
+        item.setId(sequence.incrementAndGet());
+        item.setVersion(0L);
+        Item storedItem = copyOf(item);
+        // 새 id 이므로 다른 스레드와 경쟁하지 않는다. 인덱스를 먼저 추가하고 저장소에 넣는다.
+        addToIndex(storedItem);
+        store.put(storedItem.getId(), storedItem);
         return item;
     }
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        // 저장된 객체를 직접 수정하지 않고, 수정된 새 객체로 교체한다.
+        // 조회하는 쪽은 수정 전 또는 수정 후의 객체만 보게 된다. (일부 필드만 수정된 상태는 볼 수 없음)
+        Item updatedItem = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        updatedItem.setId(itemId);
+
+        synchronized (lockFor(itemId)) {
+            // 같은 id 의 update() 는 lock 으로 차례로 실행되지만, reserve() / release() 는 lock 없이 교체한다.
+            // 따라서 조회한 객체가 그대로 있을 때만 교체하고(CAS), 그 사이 교체되었으면 다시 조회한다.
+            boolean replaced = false;
+            try {
+                while (true) {
+                    Item findItem = store.get(itemId);
+                    if (findItem == null) {
+                        throw new NoSuchElementException("item not found: " + itemId);
+                    }
+                    updateParam.checkVersion(itemId, findItem.getVersion());
+                    updatedItem.setVersion(findItem.getVersion() + 1);
+                    // 새 가격을 인덱스에 추가 -> 저장소 교체 -> 이전 가격 제거
+                    // 교체 중에 조회하는 스레드도 인덱스에서 현재 저장된 item 을 찾을 수 있다.
+                    addToIndex(updatedItem);
+                    if (!replace(itemId, findItem, updatedItem)) {
+                        // reserve() / release() 는 가격을 바꾸지 않으므로 추가한 인덱스는 그대로 두고 다시 시도한다.
+                        continue;
+                    }
+                    replaced = true;
+                    if (!Objects.equals(findItem.getPrice(), updatedItem.getPrice())) {
+                        removeFromIndex(findItem);
+                    }
+                    return;
+                }
+            } finally {
+                // 다시 시도하는 중에 version 확인이 실패하면(reserve() 가 먼저 교체) 추가한 새 가격 항목이 남는다.
+                // 저장된 가격과 다르면 제거한다. (같은 가격이면 저장된 item 의 항목이므로 그대로 둔다)
+                if (!replaced) {
+                    Item current = store.get(itemId);
+                    if (current == null || !Objects.equals(current.getPrice(), updatedItem.getPrice())) {
+                        removeFromIndex(updatedItem);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 재고 예약 : lock 없이 CAS 반복
+     * 현재 객체를 읽고, 수량을 줄인 새 객체로 교체한다. 그 사이 다른 스레드가 먼저 교체했으면 다시 읽어서 반복한다.
+     * 가격은 바뀌지 않으므로 price 인덱스는 수정하지 않는다.
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        while (true) {
+            Item current = store.get(itemId);
+            if (current == null || current.getQuantity() == null || current.getQuantity() < quantity) {
+                return false;
+            }
+            if (replace(itemId, current, withQuantity(current, current.getQuantity() - quantity))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        while (true) {
+            Item current = store.get(itemId);
+            if (current == null) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            Integer released = current.getQuantity() == null ? null : current.getQuantity() + quantity;
+            if (replace(itemId, current, withQuantity(current, released))) {
+                return;
+            }
+        }
     }
 
     @Override
     public Optional<Item> findById(Long id) {
-        return Optional.ofNullable(store.get(id));
+        // 저장된 객체 대신 복사본을 반환한다. (호출한 쪽이 수정해도 저장소와 인덱스에 영향이 없다)
+        return Optional.ofNullable(store.get(id)).map(MemoryItemRepository::copyOf);
     }
 
     @Override
     public List<Item> findAll(ItemSearchCondition cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
+
+        if (cond.getAfterId() != null || cond.getPageSize() != null) {
+            return findPage(itemName, maxPrice, cond.getAfterId(), cond.getPageSize());
+        }
+
+        if (maxPrice != null) {
+            return findAllByPriceIndex(itemName, maxPrice);
+        }
+
+        // 가격 조건이 없으면 전체 스캔
         return store.values().stream()
                 .filter(item -> {
                     // itemName 이 공백이면, 해당 조건 무시
@@ -52,19 +159,176 @@ public class MemoryItemRepository implements ItemRepository {
                     }
                     // itemName 이 포함 되는 item 필터링
                     return item.getItemName().contains(itemName);
-                }).filter(item -> {
-                    // maxPrice 가 null 또는 공백 이면, 해당 조건 무시
-                    if (maxPrice == null) {
-                        return true;
-                    }
-                    // maxPrice 이하의 가격을 가진 item 필터링
-                    return item.getPrice() <= maxPrice;
                 })
+                .map(MemoryItemRepository::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 한 번의 순회로 집계한다.
+     * List 나 Stream 을 만들지 않고, ItemAggregate.add() 는 저장된 Integer 를 그대로 사용하므로 순회 중 객체를 생성하지 않는다.
+     */
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        Long afterId = cond.getAfterId();
+
+        ItemAggregate aggregate = new ItemAggregate();
+        for (Item item : afterId == null ? store.values() : store.tailMap(afterId, false).values()) {
+            if (maxPrice != null && (item.getPrice() == null || item.getPrice() > maxPrice)) {
+                continue;
+            }
+            if (ObjectUtils.isEmpty(itemName) || item.getItemName().contains(itemName)) {
+                aggregate.add(item);
+            }
+        }
+        return aggregate;
+    }
+
+    /**
+     * keyset 페이징
+     * id 순으로 정렬된 저장소에서 afterId 다음 위치부터 읽고, pageSize 건을 찾으면 멈춘다.
+     * 가격 조건이 있어도 price 인덱스는 id 순이 아니므로 사용하지 않는다.
+     */
+    private List<Item> findPage(String itemName, Integer maxPrice, Long afterId, Integer pageSize) {
+        Collection<Item> items = afterId == null ? store.values() : store.tailMap(afterId, false).values();
+        int limit = pageSize == null ? Integer.MAX_VALUE : pageSize;
+
+        List<Item> result = new ArrayList<>();
+        for (Item item : items) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (maxPrice != null && (item.getPrice() == null || item.getPrice() > maxPrice)) {
+                continue;
+            }
+            if (ObjectUtils.isEmpty(itemName) || item.getItemName().contains(itemName)) {
+                result.add(copyOf(item));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * price <= maxPrice 범위의 인덱스만 읽는다.
+     * 인덱스는 price 순이므로 결과는 id 별 TreeMap 에 모아서 다시 id 순으로 만든다.
+     */
+    private List<Item> findAllByPriceIndex(String itemName, int maxPrice) {
+        // id 별로 하나만 남긴다.
+        // 순회 중에 update() 로 가격이 바뀌면 이전 가격 항목과 새 가격 항목이 각각 그 시점의 저장된 가격과 같아서 두 번 찾을 수 있다.
+        Map<Long, Item> result = new TreeMap<>();
+        for (PriceEntry entry : priceIndex.headSet(new PriceEntry(maxPrice, Long.MAX_VALUE), true)) {
+            Item item = store.get(entry.id);
+            // 수정 중에는 이전 가격과 새 가격이 잠시 함께 인덱스에 있으므로 현재 저장된 가격과 같은 항목만 사용한다.
+            if (item == null || item.getPrice() == null || item.getPrice() != entry.price) {
+                continue;
+            }
+            if (ObjectUtils.isEmpty(itemName) || item.getItemName().contains(itemName)) {
+                // 두 번 찾으면 나중에 읽은(더 최근의) item 을 사용한다.
+                result.put(item.getId(), item);
+            }
+        }
+        return result.values().stream()
+                .map(MemoryItemRepository::copyOf)
                 .collect(Collectors.toList());
     }
 
     public void clearStore() {
         store.clear();
+        priceIndex.clear();
+    }
+
+    /**
+     * price 인덱스 항목 수 (테스트에서 인덱스가 저장소와 어긋나지 않는지 확인할 때 사용)
+     */
+    int priceIndexSize() {
+        return priceIndex.size();
+    }
+
+    private static void addToIndex(Item item) {
+        // price 가 null 인 item 은 maxPrice 조건을 만족할 수 없으므로 인덱스에 넣지 않는다.
+        if (item.getPrice() != null) {
+            priceIndex.add(new PriceEntry(item.getPrice(), item.getId()));
+        }
+    }
+
+    private static void removeFromIndex(Item item) {
+        if (item.getPrice() != null) {
+            priceIndex.remove(new PriceEntry(item.getPrice(), item.getId()));
+        }
+    }
+
+    private static Object lockFor(Long itemId) {
+        return locks[itemId.hashCode() & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * expected 가 저장된 객체 그대로일 때만 교체한다.
+     * ConcurrentMap.replace(key, old, new) 는 equals() 로 비교하는데, Item(@Data) 은 값으로 비교하므로 같은 값의 다른 객체도 같다고 본다.
+     * 저장소의 객체는 교체될 때마다 version 이 증가하므로 값이 같으면 같은 시점의 객체이다. (ABA 가 생기지 않는다)
+     */
+    private static boolean replace(Long itemId, Item expected, Item updated) {
+        return store.replace(itemId, expected, updated);
+    }
+
+    private static Item withQuantity(Item item, Integer quantity) {
+        Item updated = copyOf(item);
+        updated.setQuantity(quantity);
+        updated.setVersion(item.getVersion() + 1);
+        return updated;
+    }
+
+    private static Item copyOf(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+
+    /**
+     * price 인덱스 항목 (price, id)
+     */
+    private static final class PriceEntry implements Comparable<PriceEntry> {
+
+        private final int price;
+        private final long id;
+
+        private PriceEntry(int price, long id) {
+            this.price = price;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(PriceEntry other) {
+            int result = Integer.compare(price, other.price);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
     }
 
 }
+/* 동시성 */
+// HashMap, ++sequence 는 여러 스레드가 동시에 접근하면 ID 가 중복되거나 Map 내부 구조가 깨질 수 있다.
+// 톰캣은 요청마다 다른 스레드에서 처리하므로 메모리 저장소도 동시성을 고려해야 한다.
+// AtomicLong : CAS 기반으로 락 없이 ID 를 발급한다.
+// ConcurrentSkipListMap : 락 없이 동시에 읽고 쓸 수 있고, id 순서를 유지한다. (findAll 결과가 DB 처럼 id 순)
+
+// 저장소의 Item 은 변경하지 않는다 (copy-on-write)
+// save() 는 복사본을 저장하고, update() 는 새 객체로 교체하므로 저장된 객체의 필드는 변경되지 않는다.
+// 따라서 조회 결과를 읽는 중에 다른 스레드의 update() 로 값이 바뀌는 일이 없다.
+// 조회(findById, findAll) 도 복사본을 반환한다. 저장된 객체를 그대로 넘기면 호출한 쪽의 setter 가 저장소를 바꾸고,
+// price 를 바꾸면 인덱스와도 어긋난다. 값 4개짜리 객체라 복사 비용은 크지 않다.
+
+/* price 인덱스 */
+// 전체 스캔은 조건에 맞는 item 이 몇 개 없어도 모든 item 을 확인해야 한다. O(n)
+// maxPrice 검색은 정렬된 인덱스에서 price <= maxPrice 인 범위만 읽는다. O(log n + 결과 수)
+// 인덱스는 조회 대상을 좁히는 용도이고, 최종 값은 항상 저장소의 item 으로 확인한다.
+
+/* keyset 페이징 */
+// store 가 id 순으로 정렬되어 있으므로 tailMap(afterId) 로 다음 페이지의 시작 위치를 O(log n) 에 찾는다.
+// 이후 pageSize 건을 채울 때까지만 읽으므로 전체 item 수와 상관없이 한 페이지 조회 비용이 일정하다.
+
+/* 재고 예약 (CAS) */
+// 인기 상품의 예약은 같은 id 에 몰리므로, id 별 lock 을 사용하면 예약 요청이 모두 한 lock 앞에서 차례로 기다린다.
+// reserve() 는 읽기 -> 새 객체 생성 -> replace(id, 읽은 객체, 새 객체) 를 반복하고, 실패한 스레드만 다시 시도한다.
+// 경쟁이 심해도 매 순간 최소 한 스레드는 성공하고(lock-free), 스레드가 잠들거나 깨어나는 비용이 없다.
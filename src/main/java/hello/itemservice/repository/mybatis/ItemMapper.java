@@ -1,25 +1,48 @@
 package hello.itemservice.repository.mybatis;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Mapper
 public interface ItemMapper {
 
     void save(Item item);
 
-    void update(@Param("id") Long id, @Param("updateParam") ItemUpdateDto updateParam);
+    int update(@Param("id") Long id, @Param("updateParam") ItemUpdateDto updateParam);
+
+    int reserve(@Param("id") Long id, @Param("quantity") int quantity);
+
+    int release(@Param("id") Long id, @Param("quantity") int quantity);
+
+    void insertTrigram(@Param("trigram") String trigram, @Param("itemId") Long itemId);
+
+    void deleteTrigrams(@Param("itemId") Long itemId);
 
     Optional<Item> findById(Long id);
 
+    // updateAll 의 update count 가 SUCCESS_NO_INFO 인 id 확인용
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
     List<Item> findAll(ItemSearchCondition itemSearch);
 
+    List<ItemSummary> findSummaries(ItemSearchCondition itemSearch);
+
+    // 트랜잭션(SqlSession) 이 유지되는 동안만 읽을 수 있다.
+    Cursor<Item> findAllCursor(ItemSearchCondition itemSearch);
+
+    ItemAggregate aggregate(ItemSearchCondition itemSearch);
+
 }
 // @Mapper : MyBatis Mapping XML 을 호출해주는 Mapper Interface
 // xml 파일의 해당 SQL 을 실행하고 결과를 반환한다.
@@ -1,33 +1,160 @@
 package hello.itemservice.repository.mybatis;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemTrigrams;
+import hello.itemservice.repository.ItemUpdateCounts;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class MyBatisItemRepository implements ItemRepository {
 
+    private static final int BATCH_SIZE = 500;
+
     private final ItemMapper itemMapper;
+    private final SqlSessionFactory sqlSessionFactory;
 
+    /**
+     * item_trigram 도 함께 추가하므로 트랜잭션 안에서 실행한다.
+     */
     @Override
+    @Transactional
     public Item save(Item item) {
         log.info("itemMapper class={}", itemMapper.getClass());
         itemMapper.save(item);
+        item.setVersion(0L); // 컬럼 기본값
+        insertTrigrams(itemMapper, item.getId(), item.getItemName());
         return item;
     }
 
+    /**
+     * 여러 Item 저장 (ExecutorType.BATCH)
+     * BATCH 실행기는 INSERT 를 모아두었다가 flushStatements() 시점에 executeBatch() 로 한 번에 전송한다.
+     * useGeneratedKeys 설정으로 flush 후 각 item 에 생성된 id 가 입력된다.
+     */
+    @Override
+    @Transactional
+    public List<Item> saveAll(List<Item> items) {
+        // openSession() 으로 연 세션도 스프링 트랜잭션의 커넥션을 사용한다. (SpringManagedTransaction)
+        try (SqlSession batchSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            ItemMapper batchMapper = batchSession.getMapper(ItemMapper.class);
+            for (int i = 0; i < items.size(); i++) {
+                batchMapper.save(items.get(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    batchSession.flushStatements();
+                }
+            }
+            batchSession.flushStatements();
+
+            // flush 후에 id 가 채워지므로 trigram 은 마지막에 한 번에 추가한다.
+            for (Item item : items) {
+                item.setVersion(0L); // 컬럼 기본값
+                insertTrigrams(batchMapper, item.getId(), item.getItemName());
+            }
+            batchSession.flushStatements();
+        }
+        return items;
+    }
+
     @Override
+    @Transactional
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        itemMapper.update(itemId, updateParam);
+        updateParam.checkUpdated(itemId, itemMapper.update(itemId, updateParam));
+        itemMapper.deleteTrigrams(itemId);
+        insertTrigrams(itemMapper, itemId, updateParam.getItemName());
+    }
+
+    /**
+     * 여러 Item 수정 (ExecutorType.BATCH)
+     * flushStatements() 가 반환하는 BatchResult 의 update count 로 itemId 별 성공 여부를 만든다.
+     * version 을 지정한 item 이 수정되지 않았으면 OptimisticLockingFailureException 을 던진다.
+     */
+    @Override
+    @Transactional
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        List<Long> itemIds = new ArrayList<>(updateParams.size());
+        List<Integer> updateCounts = new ArrayList<>(updateParams.size());
+
+        try (SqlSession batchSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            ItemMapper batchMapper = batchSession.getMapper(ItemMapper.class);
+            for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                batchMapper.update(entry.getKey(), entry.getValue());
+                itemIds.add(entry.getKey());
+                if (itemIds.size() % BATCH_SIZE == 0) {
+                    addUpdateCounts(batchSession.flushStatements(), updateCounts);
+                }
+            }
+            addUpdateCounts(batchSession.flushStatements(), updateCounts);
+
+            // 같은 update 문만 사용하므로 update count 는 추가한 순서와 같다.
+            // SUCCESS_NO_INFO 는 ItemUpdateCounts 가 itemMapper 로 다시 확인한다. (같은 트랜잭션의 커넥션)
+            Map<Long, Boolean> result = ItemUpdateCounts.updated(itemIds,
+                    updateCounts.stream().mapToInt(Integer::intValue).toArray(), updateParams,
+                    itemMapper::findExistingIds);
+
+            // 수정된 item 의 trigram 교체 : 같은 문장끼리 batch 로 묶이도록 delete 를 모두 추가한 후 insert 를 추가한다.
+            for (Long itemId : itemIds) {
+                if (result.get(itemId)) {
+                    batchMapper.deleteTrigrams(itemId);
+                }
+            }
+            for (Long itemId : itemIds) {
+                if (result.get(itemId)) {
+                    insertTrigrams(batchMapper, itemId, updateParams.get(itemId).getItemName());
+                }
+            }
+            batchSession.flushStatements();
+            return result;
+        }
+    }
+
+    private static void insertTrigrams(ItemMapper mapper, Long itemId, String itemName) {
+        for (String trigram : ItemTrigrams.of(itemName)) {
+            mapper.insertTrigram(trigram, itemId);
+        }
+    }
+
+    private static void addUpdateCounts(List<BatchResult> batchResults, List<Integer> updateCounts) {
+        for (BatchResult batchResult : batchResults) {
+            for (int count : batchResult.getUpdateCounts()) {
+                updateCounts.add(count);
+            }
+        }
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return itemMapper.reserve(itemId, quantity) > 0;
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        ItemStock.checkReleased(itemId, itemMapper.release(itemId, quantity));
     }
 
     @Override
@@ -39,4 +166,32 @@ public class MyBatisItemRepository implements ItemRepository {
     public List<Item> findAll(ItemSearchCondition condition) {
         return itemMapper.findAll(condition);
     }
+
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCondition condition) {
+        return itemMapper.findSummaries(condition);
+    }
+
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition condition) {
+        return itemMapper.aggregate(condition);
+    }
+
+    /**
+     * Cursor 로 fetchSize 단위씩 읽는다.
+     * SqlSessionTemplate 은 트랜잭션이 없으면 매퍼 호출 직후 세션을 닫으므로 트랜잭션 안에서 읽어야 한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(ItemSearchCondition condition, Consumer<Item> action) {
+        try (Cursor<Item> cursor = itemMapper.findAllCursor(condition)) {
+            cursor.forEach(action);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
+// ExecutorType.BATCH 를 SqlSessionTemplate 으로 사용하지 않는 이유
+// 같은 트랜잭션 안에서 SIMPLE 실행기(itemMapper) 와 BATCH 실행기를 함께 사용하면
+// "Cannot change the ExecutorType when there is an existing transaction" 예외가 발생한다.
+// sqlSessionFactory.openSession(ExecutorType.BATCH) 로 연 세션은 트랜잭션 동기화에 등록되지 않으므로 함께 사용할 수 있다.
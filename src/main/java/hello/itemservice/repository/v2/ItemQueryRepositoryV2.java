@@ -1,42 +1,170 @@
 package hello.itemservice.repository.v2;
 
+import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.SimpleTemplate;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.itemservice.domain.Item;
 import hello.itemservice.domain.QItem;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.jpa.JpaItemBatches;
+import hello.itemservice.repository.jpa.JpaItemStreams;
+import hello.itemservice.repository.jpa.JpaItemTrigrams;
+import hello.itemservice.repository.jpa.JpaItemUpdates;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Repository
 public class ItemQueryRepositoryV2 {
 
+    // streamAll() 에서 한 번에 가져올 row 수
+    private static final int FETCH_SIZE = 100;
+
+    private final EntityManager entityManager;
     private final JPAQueryFactory queryFactory;
 
     public ItemQueryRepositoryV2(EntityManager entityManager) {
+        this.entityManager = entityManager;
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
     // Querydsl 이용해서 복잡한 쿼리 문제 해결결
 
+   /**
+     * 조회 결과(id 목록)를 쿼리 캐시에 저장한다. (l2cache 프로필에서만 동작, 그 외에는 힌트가 무시된다)
+     * item 테이블이 변경되면 Hibernate 가 쿼리 캐시 결과를 무효화한다.
+     */
    public List<Item> findAll(ItemSearchCondition condition) {
+        return findAllQuery(condition)
+                .setHint(QueryHints.HINT_CACHEABLE, true)
+                .fetch();
+    }
+
+    /**
+     * findAll() 과 같은 조건을 Stream(ScrollableResults) 으로 읽는다.
+     * 트랜잭션 안에서 호출해야 한다. 새로 읽은 엔티티는 action 호출 후 detach 한다. (JpaItemStreams)
+     */
+    public void streamAll(ItemSearchCondition condition, Consumer<Item> action) {
+        try (Stream<Item> items = findAllQuery(condition)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .stream()) {
+            JpaItemStreams.forEach(entityManager, items, action);
+        }
+    }
+
+    /**
+     * 목록 화면용 조회 : 엔티티 대신 ItemSummary 로 바로 조회 (영속성 컨텍스트, 스냅샷 없음)
+     */
+    public List<ItemSummary> findSummaries(ItemSearchCondition condition) {
+        return findAllQuery(Projections.constructor(ItemSummary.class,
+                        QItem.item.id, QItem.item.itemName, QItem.item.price, QItem.item.quantity), condition)
+                .fetch();
+    }
+
+    /**
+     * 집계 쿼리 (count, sum, min, max) : DB 에서 계산하고 결과 1 row 만 조회한다.
+     */
+    public ItemAggregate aggregate(ItemSearchCondition condition) {
         return queryFactory
-                .select(QItem.item)
+                .select(Projections.constructor(ItemAggregate.class,
+                        QItem.item.count(),
+                        QItem.item.price.castToNum(Long.class).multiply(QItem.item.quantity).sum().coalesce(0L),
+                        QItem.item.price.min(),
+                        QItem.item.price.max()))
                 .from(QItem.item)
                 .where(
                         maxPrice(condition.getMaxPrice()),
-                        likeItemName(condition.getItemName()))
-                .fetch();
+                        likeItemName(condition.getItemName()),
+                        afterId(condition.getAfterId()))
+                .fetchOne();
+    }
+
+    /**
+     * ItemServiceV2.update : 조회 없이 update 한 번으로 수정 (version 확인, 1 증가, JpaItemUpdates)
+     * Querydsl update 는 2차 캐시의 Item 영역 전체를 비우므로 사용하지 않는다.
+     * @return 수정된 row 수 (없는 id 이거나 version 이 다르면 0)
+     */
+    public long update(Long itemId, ItemUpdateDto updateParam) {
+        return JpaItemUpdates.update(entityManager, itemId, updateParam);
+    }
+
+    /**
+     * ItemServiceV2.updateAll : chunk 단위 조회 후 변경 감지 (JPA 리포지토리와 같은 JpaItemBatches 사용)
+     * @param findAllById chunk 조회 (ItemRepositoryV2.findAllById)
+     */
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams,
+                                        Function<List<Long>, List<Item>> findAllById) {
+        return JpaItemBatches.updateAll(entityManager, updateParams, findAllById);
+    }
+
+    /**
+     * ItemServiceV2.reserve : 재고 확인(quantity >= n) 과 차감을 update 한 번으로 실행한다.
+     * @return 예약 성공 여부 (재고가 부족하거나 없는 id 이면 false)
+     */
+    public boolean reserve(Long itemId, int quantity) {
+        return JpaItemUpdates.reserve(entityManager, itemId, quantity) > 0;
+    }
+
+    /**
+     * ItemServiceV2.release
+     * @return 수정된 row 수 (없는 id 이면 0)
+     */
+    public long release(Long itemId, int quantity) {
+        return JpaItemUpdates.release(entityManager, itemId, quantity);
+    }
+
+    /**
+     * ItemServiceV2 의 save, update 후에 item_trigram 갱신 (같은 트랜잭션)
+     */
+    public void insertTrigrams(Map<Long, String> itemNames) {
+        JpaItemTrigrams.insert(entityManager, itemNames);
+    }
+
+    public void replaceTrigrams(Map<Long, String> itemNames) {
+        JpaItemTrigrams.replace(entityManager, itemNames);
+    }
+
+    private JPAQuery<Item> findAllQuery(ItemSearchCondition condition) {
+        return findAllQuery(QItem.item, condition);
+    }
+
+    private <T> JPAQuery<T> findAllQuery(Expression<T> select, ItemSearchCondition condition) {
+        JPAQuery<T> query = queryFactory
+                .select(select)
+                .from(QItem.item)
+                .where(
+                        maxPrice(condition.getMaxPrice()),
+                        likeItemName(condition.getItemName()),
+                        afterId(condition.getAfterId()));
+
+        // keyset 페이징
+        if (condition.getPageSize() != null) {
+            query.orderBy(QItem.item.id.asc()).limit(condition.getPageSize());
+        }
+        return query;
     }
 
     private BooleanExpression likeItemName(String itemName) {
         if (StringUtils.hasText(itemName)) {
-            return QItem.item.itemName.like("%" + itemName + "%");
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다.
+            BooleanExpression candidate = JpaItemTrigrams.candidate(itemName);
+            BooleanExpression like = QItem.item.itemName.like("%" + itemName + "%");
+            return candidate == null ? like : candidate.and(like);
         }
         return null;
     }
@@ -47,4 +175,11 @@ public class ItemQueryRepositoryV2 {
         }
         return null;
     }
+
+    private BooleanExpression afterId(Long afterId) {
+        if (afterId != null) {
+            return QItem.item.id.gt(afterId);
+        }
+        return null;
+    }
 }
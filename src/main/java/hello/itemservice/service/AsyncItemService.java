@@ -0,0 +1,72 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * ItemService 비동기 호출 (bulkhead)
+ *
+ * 요청 스레드(Tomcat) 대신 전용 executor 에서 ItemService 를 호출하고 CompletableFuture 로 결과를 돌려준다.
+ * executor 의 스레드 수는 커넥션 풀 크기와 같고, 대기열 크기는 제한되어 있다. (AsyncItemServiceConfig)
+ * 대기열이 가득 차면 호출 시점에 바로 RejectedExecutionException 이 발생한다. (ItemController 에서 503 응답)
+ */
+public class AsyncItemService {
+
+    private final ItemService itemService;
+    private final Executor executor;
+
+    public AsyncItemService(ItemService itemService, Executor executor) {
+        this.itemService = itemService;
+        this.executor = executor;
+    }
+
+    /**
+     * 빈 종료 시 호출 : executor 가 ThreadPoolTaskExecutor 이면 대기 중인 작업을 마치고 종료한다.
+     */
+    public void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor) {
+            ((ThreadPoolTaskExecutor) executor).shutdown();
+        }
+    }
+
+    public CompletableFuture<Item> save(Item item) {
+        return CompletableFuture.supplyAsync(() -> itemService.save(item), executor);
+    }
+
+    public CompletableFuture<Void> update(Long itemId, ItemUpdateDto updateParam) {
+        return CompletableFuture.runAsync(() -> itemService.update(itemId, updateParam), executor);
+    }
+
+    public CompletableFuture<Optional<Item>> findById(Long id) {
+        return CompletableFuture.supplyAsync(() -> itemService.findById(id), executor);
+    }
+
+    public CompletableFuture<List<Item>> findItems(ItemSearchCondition itemSearch) {
+        return CompletableFuture.supplyAsync(() -> itemService.findItems(itemSearch), executor);
+    }
+
+    public CompletableFuture<List<ItemSummary>> findItemSummaries(ItemSearchCondition itemSearch) {
+        return CompletableFuture.supplyAsync(() -> itemService.findItemSummaries(itemSearch), executor);
+    }
+
+    public CompletableFuture<ItemAggregate> aggregate(ItemSearchCondition itemSearch) {
+        return CompletableFuture.supplyAsync(() -> itemService.aggregate(itemSearch), executor);
+    }
+}
+/* bulkhead */
+// 컨트롤러에서 ItemService 를 직접 호출하면, DB 가 느려질 때 JDBC 를 기다리는 요청마다 Tomcat 워커 스레드를 하나씩 점유한다.
+// 워커 스레드(기본 200) 가 모두 DB 를 기다리면 정적 리소스, 홈 화면 같은 DB 와 상관없는 요청도 처리하지 못한다.
+// 어차피 동시에 DB 를 사용할 수 있는 수는 커넥션 풀 크기로 제한되므로, 그 수만큼의 전용 스레드에서만 ItemService 를 호출한다.
+// 나머지 요청은 크기가 정해진 대기열에서 기다리고, 대기열도 가득 차면 바로 거절(503) 해서 대기가 끝없이 쌓이지 않게 한다.
+
+// 트랜잭션
+// @Transactional 은 호출한 스레드에 묶이므로, ItemService 의 트랜잭션은 executor 스레드에서 시작하고 끝난다.
@@ -0,0 +1,335 @@
+package hello.itemservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * ItemService 데코레이터 : findById() 결과와 검색 결과를 메모리(Caffeine)에 캐시한다.
+ * 저장소 구현(메모리, JdbcTemplate, MyBatis, JPA)과 관계없이 어떤 ItemService 든 감쌀 수 있다.
+ *
+ * findById() 캐시
+ * - 제거 정책 : W-TinyLFU (자주 조회되는 item 을 우선 남긴다)
+ * - 크기 제한 : item 별 추정 크기(byte) 의 합 (maximumWeight)
+ * - 만료 : 저장 후 expireAfterWrite 가 지나면 다시 조회한다.
+ * - 무효화 : save, update, updateAll, reserve, release 후에 해당 id 를 캐시에서 제거한다.
+ *
+ * 검색 결과 캐시 (findItems, findItemSummaries)
+ * - key : 정규화한 검색 조건 + 쓰기 버전
+ * - 크기 제한 : 캐시된 결과 row 수의 합 (searchMaximumRows)
+ * - 무효화 : save, update, updateAll 마다 쓰기 버전을 증가시킨다. 이전 버전의 결과는 더 이상 조회되지 않고 제거 정책으로 정리된다.
+ *   reserve, release 는 수량만 바꾸므로 버전은 그대로 두고, 그 item 을 포함하는 결과만 제거한다.
+ * - refresh-ahead : 저장 후 searchRefreshAfterWrite 가 지난 결과를 조회하면 이전 결과를 바로 반환하고, 백그라운드에서 다시 조회한다.
+ */
+@Slf4j
+public class CachingItemService implements ItemService {
+
+    private final ItemService target;
+    private final Cache<Long, Item> cache;
+
+    // 검색 결과 캐시와 쓰기 버전
+    private final LoadingCache<SearchKey, SearchResult> searchCache;
+    private final AtomicLong writeVersion = new AtomicLong();
+
+    // 실행 중인 검색 조회, reserve / release 는 조회 중에 수량이 바뀐 id 를 여기에 알린다.
+    private final Set<SearchLoad> loadingSearches = ConcurrentHashMap.newKeySet();
+    // 조회 중에 수량이 바뀐 검색 결과 (조회한 호출에만 사용하고 캐시에서 제거한다)
+    private final Set<SearchKey> staleSearches = ConcurrentHashMap.newKeySet();
+
+    public CachingItemService(ItemService target, long maximumWeight, Duration expireAfterWrite) {
+        this(target, maximumWeight, expireAfterWrite, 100_000, Duration.ofMinutes(5), Duration.ofMinutes(1));
+    }
+
+    public CachingItemService(ItemService target, long maximumWeight, Duration expireAfterWrite,
+                              long searchMaximumRows, Duration searchExpireAfterWrite, Duration searchRefreshAfterWrite) {
+        this.target = target;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Long id, Item item) -> weigh(item))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        // refresh 는 Caffeine 의 기본 executor (ForkJoinPool.commonPool) 에서 실행된다.
+        this.searchCache = Caffeine.newBuilder()
+                .maximumWeight(searchMaximumRows)
+                .weigher((SearchKey key, SearchResult result) -> 1 + result.getRows().size())
+                .expireAfterWrite(searchExpireAfterWrite)
+                .refreshAfterWrite(searchRefreshAfterWrite)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public SearchResult load(SearchKey key) {
+                        SearchResult result = search(key);
+                        if (result.isStale()) {
+                            staleSearches.add(key);
+                        }
+                        return result;
+                    }
+
+                    @Override
+                    public SearchResult reload(SearchKey key, SearchResult oldValue) {
+                        // 백그라운드 refresh 중에 수량이 바뀌었으면 저장하지 않는다. (null 을 반환하면 캐시에서 제거된다)
+                        SearchResult result = search(key);
+                        return result.isStale() ? null : result;
+                    }
+                });
+    }
+
+    @Override
+    public Item save(Item item) {
+        try {
+            Item savedItem = target.save(item);
+            cache.invalidate(savedItem.getId());
+            return savedItem;
+        } finally {
+            writeVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        try {
+            target.update(itemId, updateParam);
+        } finally {
+            // 수정이 실패해도(일부만 반영, 롤백) 캐시에는 이전 값이 남지 않도록 항상 제거한다.
+            cache.invalidate(itemId);
+            writeVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        try {
+            return target.reserve(itemId, quantity);
+        } finally {
+            invalidateQuantity(itemId);
+        }
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        try {
+            target.release(itemId, quantity);
+        } finally {
+            invalidateQuantity(itemId);
+        }
+    }
+
+    @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        try {
+            return target.updateAll(updateParams);
+        } finally {
+            cache.invalidateAll(updateParams.keySet());
+            writeVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        if (id == null) {
+            return target.findById(null);
+        }
+        // 없는 id 는 캐시하지 않는다. (loader 가 null 을 반환하면 저장하지 않음)
+        Item item = cache.get(id, key -> target.findById(key).map(CachingItemService::copy).orElse(null));
+        // 호출한 쪽에서 수정해도 캐시된 값이 바뀌지 않도록 복사본을 반환한다.
+        return Optional.ofNullable(item).map(CachingItemService::copy);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Item> findItems(ItemSearchCondition itemSearch) {
+        List<Item> items = (List<Item>) cachedSearch(SearchKind.ITEMS, itemSearch);
+        // Item 은 수정 가능한 객체이므로 복사본을 반환한다.
+        return items.stream().map(CachingItemService::copy).collect(Collectors.toList());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ItemSummary> findItemSummaries(ItemSearchCondition itemSearch) {
+        // ItemSummary 는 불변 객체이므로 캐시된 결과(수정 불가 List) 를 그대로 반환한다.
+        return (List<ItemSummary>) cachedSearch(SearchKind.SUMMARIES, itemSearch);
+    }
+
+    @Override
+    public void streamItems(ItemSearchCondition itemSearch, Consumer<Item> action) {
+        target.streamItems(itemSearch, action);
+    }
+
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition itemSearch) {
+        return target.aggregate(itemSearch);
+    }
+
+    /**
+     * hit, miss, 제거 건수 (캐시 크기를 정할 때 참고)
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 검색 결과 캐시의 hit, miss, refresh(load) 건수
+     */
+    public CacheStats searchStats() {
+        return searchCache.stats();
+    }
+
+    /**
+     * 수량만 바뀐 item 의 무효화
+     * 검색 조건(itemName, maxPrice, afterId, pageSize) 은 수량과 관계없으므로 검색 결과에 포함되는 item 은 바뀌지 않는다.
+     * 따라서 쓰기 버전은 그대로 두고, 이 item 을 포함하는 검색 결과만 제거한다. (다른 검색 결과는 계속 사용한다)
+     */
+    private void invalidateQuantity(Long itemId) {
+        cache.invalidate(itemId);
+        // 지금 조회 중인 검색은 변경 전 수량을 읽었을 수 있다. 조회가 끝난 뒤 결과에 이 id 가 있으면 제거된다.
+        loadingSearches.forEach(load -> load.changedIds.add(itemId));
+        searchCache.asMap().values().removeIf(result -> result.contains(itemId));
+    }
+
+    private List<?> cachedSearch(SearchKind kind, ItemSearchCondition cond) {
+        SearchKey key = SearchKey.of(kind, cond, writeVersion.get());
+        List<?> rows = searchCache.get(key).getRows();
+        if (staleSearches.remove(key)) {
+            searchCache.invalidate(key);
+        }
+        return rows;
+    }
+
+    private SearchResult search(SearchKey key) {
+        SearchLoad load = new SearchLoad();
+        loadingSearches.add(load);
+        try {
+            ItemSearchCondition cond = key.toCondition();
+            if (key.getKind() == SearchKind.ITEMS) {
+                List<Item> items = target.findItems(cond);
+                return SearchResult.of(items.stream().map(CachingItemService::copy).collect(Collectors.toList()),
+                        items.stream().mapToLong(Item::getId), load.changedIds);
+            }
+            List<ItemSummary> summaries = target.findItemSummaries(cond);
+            return SearchResult.of(summaries, summaries.stream().mapToLong(ItemSummary::getId), load.changedIds);
+        } finally {
+            loadingSearches.remove(load);
+        }
+    }
+
+    /**
+     * item 하나가 힙에서 차지하는 크기(byte) 추정값
+     * Item(헤더 + 필드) + Long + Integer 2개 + String(헤더 + byte[])
+     */
+    static int weigh(Item item) {
+        int nameLength = item.getItemName() == null ? 0 : item.getItemName().length();
+        return 32 + 16 + 16 * 2 + 40 + nameLength * 2;
+    }
+
+    private static Item copy(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+
+    private enum SearchKind {
+        ITEMS, SUMMARIES
+    }
+
+    /**
+     * 실행 중인 검색 조회 하나 (객체 자체로 구분한다)
+     */
+    private static final class SearchLoad {
+        private final Set<Long> changedIds = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * 검색 결과 캐시의 값
+     * ids : 결과에 포함된 item id (정렬), reserve / release 시 이 결과가 그 item 을 포함하는지 이진 탐색으로 확인한다.
+     * stale : 조회 중에 결과에 포함된 item 의 수량이 바뀌었다.
+     */
+    @Value
+    private static class SearchResult {
+        List<?> rows;
+        long[] ids;
+        boolean stale;
+
+        static SearchResult of(List<?> rows, LongStream ids, Set<Long> changedIds) {
+            long[] sortedIds = ids.sorted().toArray();
+            boolean stale = changedIds.stream().anyMatch(id -> Arrays.binarySearch(sortedIds, id) >= 0);
+            return new SearchResult(List.copyOf(rows), sortedIds, stale);
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+    }
+
+    /**
+     * 검색 결과 캐시의 key
+     * ItemSearchCondition 은 수정 가능한 객체(@Data) 이므로 값을 복사해서 불변 key 로 만든다.
+     */
+    @Value
+    private static class SearchKey {
+        SearchKind kind;
+        String itemName;
+        Integer maxPrice;
+        Long afterId;
+        Integer pageSize;
+        long version;
+
+        static SearchKey of(SearchKind kind, ItemSearchCondition cond, long version) {
+            // 정규화 : 빈 문자열 검색어는 검색어 없음(null) 과 같은 결과이므로 같은 key 로 만든다.
+            String itemName = "".equals(cond.getItemName()) ? null : cond.getItemName();
+            return new SearchKey(kind, itemName, cond.getMaxPrice(), cond.getAfterId(), cond.getPageSize(), version);
+        }
+
+        ItemSearchCondition toCondition() {
+            return new ItemSearchCondition(itemName, maxPrice, afterId, pageSize);
+        }
+    }
+}
+/* 읽기 캐시와 무효화 순서 */
+// 쓰기는 먼저 저장소에 반영(커밋)하고, 그 다음 캐시에서 제거한다.
+// Cache.get(id, loader) 는 같은 id 의 loader 가 실행 중이면 invalidate() 가 loader 가 끝날 때까지 기다린다.
+// 따라서 수정 전 값을 읽어온 loader 의 결과는 그 뒤의 invalidate() 로 제거되고, 오래된 값이 남지 않는다.
+
+// 주의
+// 같은 DB 를 다른 어플리케이션(서버)이 수정하면 이 캐시는 알 수 없다. expireAfterWrite 가 지나야 새 값을 읽는다.
+// 여러 서버로 운영할 때는 expireAfterWrite 를 허용 가능한 지연 시간으로 설정한다.
+
+/* 검색 결과 캐시의 쓰기 버전 */
+// 어떤 item 이 수정되었을 때 그 item 을 포함하는 검색 결과를 찾아서 제거하기는 어렵다. (새로 저장된 item 이 포함될 검색 조건도 알 수 없다)
+// 대신 쓰기마다 버전을 증가시키고, 버전을 key 에 포함시켜서 이전 결과를 한 번에 무효화한다. (O(1))
+// 쓰기 전 버전으로 조회를 시작한 결과는 이전 버전 key 에 저장되므로, 쓰기 후의 조회에는 사용되지 않는다.
+// 이전 버전의 결과는 다시 조회되지 않으므로 W-TinyLFU 에 의해 먼저 제거되고, refresh 대상도 아니다.
+
+// refresh-ahead
+// refreshAfterWrite 가 지난 결과를 조회하면 기존 결과를 바로 반환하고 백그라운드에서 다시 조회해서 교체한다.
+// 자주 조회되는 검색 조건은 expireAfterWrite 에 도달하기 전에 계속 갱신되므로, 조회 요청이 DB 조회를 기다리지 않는다.
+// 쓰기가 잦으면 버전이 자주 바뀌므로 캐시 효과가 줄어든다. (읽기가 대부분인 목록 화면에 적합)
+
+/* 재고 예약, 반환 (reserve, release) */
+// 인기 상품의 예약은 수정보다 훨씬 잦다. 예약마다 버전을 올리면 그 상품과 관계없는 검색 결과까지 모두 다시 조회하게 된다.
+// 수량은 검색 조건에 쓰이지 않으므로 결과의 구성은 그대로이고, 그 item 을 포함하는 결과의 수량만 틀려진다.
+// 그래서 버전 대신 각 결과의 정렬된 id 배열을 이진 탐색해서 그 item 을 포함하는 결과만 제거한다. O(결과 수 * log 결과 크기)
+// 예약 직전에 시작한 조회는 아직 캐시에 없어서 찾을 수 없으므로, 실행 중인 조회(loadingSearches) 에 바뀐 id 를 알린다.
+// 조회가 끝났을 때 결과에 그 id 가 있으면 그 결과는 조회한 호출에만 반환하고 캐시에서 제거한다. (백그라운드 refresh 는 저장하지 않음)
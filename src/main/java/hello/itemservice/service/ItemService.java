@@ -1,11 +1,15 @@
 package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * ItemService interface
@@ -18,7 +22,38 @@ public interface ItemService {
 
     void update(Long itemId, ItemUpdateDto updateParam);
 
+    /**
+     * 여러 item 을 한 번에 수정
+     * @return itemId 별 수정 성공 여부
+     */
+    Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams);
+
+    /**
+     * 재고 예약 (주문) : 재고가 부족하면 false
+     */
+    boolean reserve(Long itemId, int quantity);
+
+    /**
+     * 재고 반환 (주문 취소)
+     */
+    void release(Long itemId, int quantity);
+
     Optional<Item> findById(Long id);
 
     List<Item> findItems(ItemSearchCondition itemSearch);
+
+    /**
+     * 목록 화면용 조회 (엔티티 대신 읽기 전용 ItemSummary)
+     */
+    List<ItemSummary> findItemSummaries(ItemSearchCondition itemSearch);
+
+    /**
+     * 검색 결과를 List 로 모으지 않고 한 건씩 action 에 전달 (대량 조회, 내보내기 용)
+     */
+    void streamItems(ItemSearchCondition itemSearch, Consumer<Item> action);
+
+    /**
+     * 검색 조건에 맞는 상품의 집계 (상품 수, 재고 금액 합계, 최저/최고 가격)
+     */
+    ItemAggregate aggregate(ItemSearchCondition itemSearch);
 }
@@ -2,17 +2,24 @@ package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * ItemService interface 의 구현체
  * 대부분의 기능을 단순히 repository 에 위임한다.
+ * 조회는 읽기 전용 트랜잭션으로 실행한다. (ReplicaDataSourceConfig 를 사용하면 replica 로 라우팅)
  */
 @Service
 @RequiredArgsConstructor
@@ -31,12 +38,53 @@ public class ItemServiceV1 implements ItemService {
     }
 
     @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return itemRepository.updateAll(updateParams);
+    }
+
+    /**
+     * 수량은 리포지토리 호출 전에 확인한다. (ItemServiceV2 와 같다)
+     * @Repository 안에서 던진 IllegalArgumentException 은 스프링의 예외 변환으로 InvalidDataAccessApiUsageException 이 된다.
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return itemRepository.reserve(itemId, quantity);
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        itemRepository.release(itemId, quantity);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         return itemRepository.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Item> findItems(ItemSearchCondition cond) {
         return itemRepository.findAll(cond);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findItemSummaries(ItemSearchCondition cond) {
+        return itemRepository.findSummaries(cond);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamItems(ItemSearchCondition cond, Consumer<Item> action) {
+        itemRepository.streamAll(cond, action);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ItemAggregate aggregate(ItemSearchCondition cond) {
+        return itemRepository.aggregate(cond);
+    }
 }
@@ -1,7 +1,10 @@
 package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemStock;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import hello.itemservice.repository.v2.ItemQueryRepositoryV2;
 import hello.itemservice.repository.v2.ItemRepositoryV2;
@@ -9,8 +12,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -27,24 +33,64 @@ public class ItemServiceV2 implements ItemService {
 
     @Override
     public Item save(Item item) {
-        return itemRepositoryV2.save(item);
+        Item savedItem = itemRepositoryV2.save(item);
+        // item_name 검색용 trigram 색인 (같은 트랜잭션)
+        itemQueryRepositoryV2.insertTrigrams(Collections.singletonMap(savedItem.getId(), savedItem.getItemName()));
+        return savedItem;
     }
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setQuantity(updateParam.getQuantity());
-        findItem.setPrice(updateParam.getPrice());
+        // 조회 후 변경 감지 대신 update 한 번으로 수정한다. (version 확인)
+        updateParam.checkUpdated(itemId, itemQueryRepositoryV2.update(itemId, updateParam));
+        itemQueryRepositoryV2.replaceTrigrams(Collections.singletonMap(itemId, updateParam.getItemName()));
     }
 
     @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        // id in (...) 로 chunk 단위 조회 후 변경 감지 (JpaItemBatches)
+        return itemQueryRepositoryV2.updateAll(updateParams, itemRepositoryV2::findAllById);
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        return itemQueryRepositoryV2.reserve(itemId, quantity);
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        ItemStock.checkQuantity(quantity);
+        ItemStock.checkReleased(itemId, itemQueryRepositoryV2.release(itemId, quantity));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         return itemRepositoryV2.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Item> findItems(ItemSearchCondition condition) {
         return itemQueryRepositoryV2.findAll(condition);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findItemSummaries(ItemSearchCondition condition) {
+        return itemQueryRepositoryV2.findSummaries(condition);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamItems(ItemSearchCondition condition, Consumer<Item> action) {
+        itemQueryRepositoryV2.streamAll(condition, action);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ItemAggregate aggregate(ItemSearchCondition condition) {
+        return itemQueryRepositoryV2.aggregate(condition);
+    }
 }
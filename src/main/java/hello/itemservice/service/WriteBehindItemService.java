@@ -0,0 +1,372 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * ItemService 데코레이터 : 수정(update, updateAll) 을 메모리에 모아두었다가 한 번에 저장한다. (write-behind)
+ *
+ * - 병합 : itemId 별로 마지막 ItemUpdateDto 만 남긴다. 짧은 시간에 같은 item 을 여러 번 수정하면 저장은 한 번만 한다.
+ * - flush : 모인 수정이 maxBatchSize 건이 되거나 flushInterval 이 지나면 updateAll() 로 저장한다. (maxBatchSize 건씩 하나의 트랜잭션)
+ * - 조회 : findById() 는 아직 저장하지 않은 수정을 반영해서 반환한다. version 도 그 수정이 저장된 후의 값(저장소 version + 1) 이다.
+ *
+ * 내구성 (호출한 쪽과의 약속)
+ * - update(), updateAll() 이 반환되면 수정은 "접수" 된 것이고, 저장(커밋) 된 것이 아니다.
+ * - 정상 종료(close) 시에는 남은 수정을 모두 저장한다.
+ * - 비정상 종료(kill -9, OOM, 장애) 시에는 마지막 flush 이후의 수정(최대 flushInterval 또는 maxBatchSize 건) 을 잃는다.
+ * - 없는 itemId 의 수정은 flush 시점에 버려지고 로그만 남는다. (updateAll() 의 반환값은 모두 true = 접수)
+ * - version 을 지정한 수정은 접수할 때 findById() 의 version 과 비교하고, 다르면 바로 OptimisticLockingFailureException 을 던진다. (409)
+ *   접수한 수정은 flush 시점에 저장소의 version (버퍼의 수정이 저장되기 전) 과 다시 비교하고, 다르면(다른 서버의 수정) 버려지고 로그만 남는다.
+ *   버퍼 안에서 병합되는 수정은 한 번의 저장이므로 version 도 한 번만 증가한다.
+ * - reserve(), release() 는 같은 item 의 버퍼에 있는 수정을 먼저 저장하고 바로 실행한다. (수량은 저장소 기준)
+ * - 검색(findItems, findItemSummaries, streamItems, aggregate) 은 저장소의 값을 사용하므로 최대 flushInterval 만큼 늦게 반영된다.
+ * - 버퍼는 이 서버의 메모리에만 있으므로 다른 서버는 flush 전까지 이전 값을 읽는다.
+ * 잃어도 다음 수정으로 덮어쓰는 데이터(ex 재고 피드) 에만 사용한다.
+ */
+@Slf4j
+public class WriteBehindItemService implements ItemService, AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final ItemService target;
+    private final int maxBatchSize;
+
+    // 아직 저장하지 않은 수정 (itemId -> 마지막 수정)
+    private final ConcurrentHashMap<Long, ItemUpdateDto> pending = new ConcurrentHashMap<>();
+    // 저장 중인 수정 : 커밋 전까지 findById() 가 이 값을 읽는다.
+    private final ConcurrentHashMap<Long, ItemUpdateDto> flushing = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private volatile boolean closed;
+
+    public WriteBehindItemService(ItemService target, int maxBatchSize, Duration flushInterval) {
+        this.target = target;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Item save(Item item) {
+        // 새 item 은 id 를 바로 돌려줘야 하므로 모으지 않는다.
+        return target.save(item);
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        pending.put(itemId, accept(itemId, updateParam));
+        afterWrite();
+    }
+
+    /**
+     * 모두 접수만 하고 true 를 반환한다. 실제 저장 결과는 flush 시점에 로그로 남는다.
+     * version 이 다른 수정이 하나라도 있으면 아무것도 접수하지 않고 예외를 던진다.
+     */
+    @Override
+    public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        Map<Long, ItemUpdateDto> accepted = new LinkedHashMap<>();
+        updateParams.forEach((itemId, updateParam) -> accepted.put(itemId, accept(itemId, updateParam)));
+
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        accepted.forEach((itemId, updateParam) -> {
+            pending.put(itemId, updateParam);
+            result.put(itemId, true);
+        });
+        afterWrite();
+        return result;
+    }
+
+    /**
+     * 예약 결과를 바로 돌려줘야 하므로 모으지 않는다.
+     * 버퍼의 수정은 quantity 를 절대값으로 저장하므로, 같은 item 의 수정이 버퍼에 있으면 먼저 저장한 뒤 예약한다.
+     * (예약 후에 flush 되면 예약한 수량을 덮어쓴다)
+     */
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        flushItem(itemId);
+        return target.reserve(itemId, quantity);
+    }
+
+    @Override
+    public void release(Long itemId, int quantity) {
+        flushItem(itemId);
+        target.release(itemId, quantity);
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        if (id == null) {
+            return target.findById(null);
+        }
+        ItemUpdateDto before = buffered(id);
+        Optional<Item> item = target.findById(id);
+        // 조회하는 동안 flush 가 커밋되었으면 저장소의 값이 이미 최신이므로, 조회 후의 버퍼를 먼저 확인한다.
+        ItemUpdateDto after = buffered(id);
+        ItemUpdateDto updateParam = after != null ? after : before;
+        if (updateParam == null) {
+            return item;
+        }
+        // 저장소가 보관 중인 객체(메모리 저장소) 를 바꾸지 않도록 새 객체에 반영한다.
+        return item.map(found -> {
+            Item buffered = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+            buffered.setId(found.getId());
+            // 버퍼의 수정이 저장되면 version 이 1 증가하므로, 그 값을 반환한다.
+            // 이 version 으로 다시 수정하면 flush 후에도 저장소의 version 과 같다.
+            // 접수할 때 확인한 수정은 저장 전 version 을 가지고 있으므로 조회 중에 flush 가 커밋되어도 같은 값이다.
+            Long baseVersion = updateParam.getVersion() != null ? updateParam.getVersion() : found.getVersion();
+            buffered.setVersion(baseVersion + 1);
+            return buffered;
+        });
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCondition itemSearch) {
+        return target.findItems(itemSearch);
+    }
+
+    @Override
+    public List<ItemSummary> findItemSummaries(ItemSearchCondition itemSearch) {
+        return target.findItemSummaries(itemSearch);
+    }
+
+    @Override
+    public void streamItems(ItemSearchCondition itemSearch, Consumer<Item> action) {
+        target.streamItems(itemSearch, action);
+    }
+
+    @Override
+    public ItemAggregate aggregate(ItemSearchCondition itemSearch) {
+        return target.aggregate(itemSearch);
+    }
+
+    /**
+     * 지금까지 접수한 수정을 저장한다. (호출 시점에 있던 수정까지, maxBatchSize 건씩 하나의 트랜잭션)
+     * @return 저장한 수정 건수
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            int flushed = 0;
+            // 계속 들어오는 수정 때문에 끝나지 않도록 시작 시점의 건수만큼만 저장한다.
+            int remaining = pending.size();
+            while (remaining > 0) {
+                Map<Long, ItemUpdateDto> batch = drain(Math.min(remaining, maxBatchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                remaining -= batch.size();
+                flushed += write(batch);
+            }
+            return flushed;
+        }
+    }
+
+    /**
+     * 아직 저장하지 않은 수정 건수 (모니터링용)
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 빈 종료 시 호출 : 주기적인 flush 를 멈추고 남은 수정을 모두 저장한다.
+     * 저장하지 못한 수정은 잃어버리므로 itemId 를 error 로그로 남긴다.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int flushed = flush();
+        log.info("write-behind closed, flushed={}", flushed);
+        if (!pending.isEmpty()) {
+            log.error("write-behind lost {} updates on shutdown, itemIds={}", pending.size(), pending.keySet());
+        }
+    }
+
+    private void afterWrite() {
+        if (closed) {
+            // 종료 중에 들어온 수정은 바로 저장한다.
+            flush();
+            return;
+        }
+        if (pending.size() >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * itemId 의 수정만 저장한다. (reserve, release 전)
+     * flushLock 을 잡으므로 저장 중(flushing) 인 수정도 커밋이 끝난 뒤에 반환한다.
+     * 저장에 실패해서 pending 에 다시 들어가면 예약하지 않고 예외를 던진다.
+     */
+    private void flushItem(Long itemId) {
+        if (buffered(itemId) == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            ItemUpdateDto updateParam = pending.get(itemId);
+            if (updateParam == null) {
+                return;
+            }
+            flushing.put(itemId, updateParam);
+            pending.remove(itemId, updateParam);
+            write(Collections.singletonMap(itemId, updateParam));
+            if (pending.get(itemId) == updateParam) {
+                throw new IllegalStateException("write-behind update is not saved, itemId=" + itemId);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 예외가 나가면 scheduleWithFixedDelay 가 중단되므로 여기서 막는다.
+            log.error("write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * pending 에서 최대 limit 건을 꺼내 flushing 으로 옮긴다.
+     * flushing 에 먼저 넣고 pending 에서 제거하므로, findById() 는 항상 둘 중 하나에서 수정을 찾는다.
+     */
+    private Map<Long, ItemUpdateDto> drain(int limit) {
+        Map<Long, ItemUpdateDto> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<Long, ItemUpdateDto>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < limit) {
+            Map.Entry<Long, ItemUpdateDto> entry = iterator.next();
+            flushing.put(entry.getKey(), entry.getValue());
+            // 그 사이 새 수정이 들어왔으면 pending 에 남겨서 다음 flush 에 저장한다.
+            pending.remove(entry.getKey(), entry.getValue());
+            batch.put(entry.getKey(), entry.getValue());
+        }
+        return batch;
+    }
+
+    /**
+     * batch 를 하나의 트랜잭션(updateAll) 으로 저장한다.
+     * 실패(롤백) 하면 한 건씩 다시 저장해서, 저장할 수 없는 수정 하나가 나머지를 막지 않게 한다.
+     */
+    private int write(Map<Long, ItemUpdateDto> batch) {
+        try {
+            target.updateAll(batch).forEach((itemId, updated) -> {
+                if (!updated) {
+                    log.warn("write-behind dropped update, item not found itemId={}", itemId);
+                }
+            });
+            return batch.size();
+        } catch (RuntimeException e) {
+            log.warn("write-behind batch failed, retrying one by one size={}", batch.size(), e);
+            return writeOneByOne(batch);
+        } finally {
+            batch.forEach(flushing::remove);
+        }
+    }
+
+    private int writeOneByOne(Map<Long, ItemUpdateDto> batch) {
+        int written = 0;
+        for (Map.Entry<Long, ItemUpdateDto> entry : batch.entrySet()) {
+            try {
+                target.update(entry.getKey(), entry.getValue());
+                written++;
+            } catch (NoSuchElementException e) {
+                log.warn("write-behind dropped update, item not found itemId={}", entry.getKey());
+            } catch (OptimisticLockingFailureException e) {
+                // 다시 저장해도 version 이 맞지 않으므로 버린다.
+                log.warn("write-behind dropped update, version conflict itemId={}, version={}",
+                        entry.getKey(), entry.getValue().getVersion());
+            } catch (RuntimeException e) {
+                // 다음 flush 에 다시 저장한다. (그 사이 새 수정이 들어왔으면 새 수정을 유지)
+                pending.putIfAbsent(entry.getKey(), entry.getValue());
+                log.error("write-behind update failed, will retry itemId={}", entry.getKey(), e);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 접수할 수정 (버퍼에 넣을 복사본)
+     * version 을 지정했으면 findById() 의 version (버퍼의 수정 포함) 과 지금 비교한다.
+     * 버퍼에는 flush 시점에 비교할 저장 전 version 을 넣는다. (같은 item 의 수정이 버퍼에 있으면 그 수정의 version)
+     */
+    private ItemUpdateDto accept(Long itemId, ItemUpdateDto updateParam) {
+        ItemUpdateDto accepted = copy(updateParam);
+        if (updateParam.getVersion() == null) {
+            return accepted;
+        }
+        Item stored = target.findById(itemId).orElseThrow(() -> new NoSuchElementException("item not found: " + itemId));
+        ItemUpdateDto previous = buffered(itemId);
+        long baseVersion = previous != null && previous.getVersion() != null ? previous.getVersion() : stored.getVersion();
+        // 버퍼에 수정이 있으면 findById() 와 같이 그 수정이 저장된 후의 version 과 비교한다.
+        updateParam.checkVersion(itemId, previous != null ? baseVersion + 1 : baseVersion);
+        accepted.setVersion(baseVersion);
+        return accepted;
+    }
+
+    private ItemUpdateDto buffered(Long itemId) {
+        ItemUpdateDto updateParam = pending.get(itemId);
+        return updateParam != null ? updateParam : flushing.get(itemId);
+    }
+
+    /**
+     * 호출한 쪽이 ItemUpdateDto 를 재사용(수정) 해도 버퍼의 값이 바뀌지 않도록 복사한다.
+     */
+    private static ItemUpdateDto copy(ItemUpdateDto updateParam) {
+        return new ItemUpdateDto(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity(),
+                updateParam.getVersion());
+    }
+}
+/* write-behind 와 트랜잭션 횟수 */
+// 재고 피드처럼 같은 item 을 짧은 시간에 여러 번 수정하면, 수정마다 트랜잭션(커넥션 획득, UPDATE, 커밋) 을 실행한다.
+// 버퍼에 마지막 값만 남기면 flushInterval 동안의 N 번 수정이 1 번의 UPDATE 가 되고,
+// 서로 다른 item 의 수정도 updateAll() 의 JDBC batch 로 묶어서 maxBatchSize 건당 커밋 한 번으로 줄어든다.
+
+// flushing 맵
+// pending 에서 꺼낸 수정을 커밋하기 전에 findById() 가 저장소를 읽으면 이전 값을 읽는다.
+// 커밋이 끝날 때까지 flushing 에 남겨두고 findById() 가 함께 확인해서, 접수한 수정이 잠깐 사라져 보이는 구간을 없앤다.
+
+// version
+// 버퍼의 수정을 반영한 findById() 가 저장소의 version 을 그대로 반환하면, 수정 -> 조회(v) -> flush(v + 1) -> 조회한 v 로 다시 수정 순서에서
+// 두 번째 수정은 flush 시점에 version 이 달라서 로그만 남기고 버려진다. (호출한 쪽은 성공으로 알고 있다)
+// 그래서 findById() 는 저장될 version(v + 1) 을 반환하고, update() 는 그 값과 접수 시점에 비교해서 틀리면 바로 409 로 알린다.
+// 버퍼에는 저장 전 version(v) 을 넣어서 flush 시점의 비교(다른 서버의 수정 확인) 는 그대로 동작한다.
+// version 없이 접수한 수정이 커밋되는 중(flushing) 에 조회하면 잠깐 version 이 1 크게 보일 수 있다. 이 값으로 수정하면 409 이고 다시 조회하면 된다.
+
+// 종료 순서
+// 스프링 빈으로 사용하면 빈 종료 시 close() 가 호출된다. (WriteBehindConfig)
+// ItemService 빈은 저장소, DataSource 에 의존하므로 그보다 먼저 종료되고, close() 의 flush 는 DB 가 살아있을 때 실행된다.
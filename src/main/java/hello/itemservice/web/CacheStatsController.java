@@ -0,0 +1,68 @@
+package hello.itemservice.web;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hibernate 2차 캐시, 쿼리 캐시의 hit / miss 통계 (l2cache 프로필)
+ * 캐시 크기(application.conf) 를 정할 때 참고한다.
+ */
+@Profile("l2cache")
+@RestController
+@RequiredArgsConstructor
+public class CacheStatsController {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @GetMapping("/cache/stats")
+    public Map<String, Object> stats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("secondLevelCache", counts(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount()));
+        result.put("queryCache", counts(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()));
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region != null) {
+                Map<String, Object> regionCounts = counts(region.getHitCount(), region.getMissCount(), region.getPutCount());
+                regionCounts.put("elementCountInMemory", region.getElementCountInMemory());
+                regions.put(regionName, regionCounts);
+            }
+        }
+        result.put("regions", regions);
+        return result;
+    }
+
+    private static Map<String, Object> counts(long hit, long miss, long put) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("hit", hit);
+        counts.put("miss", miss);
+        counts.put("put", put);
+        counts.put("hitRatio", hit + miss == 0 ? 0.0 : (double) hit / (hit + miss));
+        return counts;
+    }
+}
+/* 2차 캐시 무효화 */
+// Item 은 READ_WRITE 전략을 사용한다.
+// 수정 시 트랜잭션 동안 캐시 항목에 soft lock 을 걸어두고, 커밋 후에 새 값으로 교체한다. (롤백되면 lock 만 해제)
+// 따라서 다른 트랜잭션이 커밋 전의 값을 캐시에서 읽지 않는다.
+
+// 쿼리 캐시는 결과 엔티티의 id 목록만 저장하고, 엔티티는 2차 캐시에서 다시 찾는다.
+// item 테이블에 INSERT, UPDATE 가 커밋되면 default-update-timestamps-region 의 시각이 바뀌고,
+// 그보다 먼저 저장된 쿼리 결과는 사용하지 않는다. (새로 저장한 item 이 검색 결과에서 빠지지 않는다)
+
+// 주의 : JPA(Hibernate) 를 거치지 않는 변경 (JdbcTemplate, MyBatis, 다른 어플리케이션) 은 캐시가 알지 못한다.
+// 같은 DB 를 다른 방식으로 변경하는 환경에서는 l2cache 프로필을 사용하지 않는다.
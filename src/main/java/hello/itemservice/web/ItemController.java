@@ -3,37 +3,70 @@ package hello.itemservice.web;
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemSearchCondition;
 import hello.itemservice.repository.ItemUpdateDto;
-import hello.itemservice.service.ItemService;
+import hello.itemservice.service.AsyncItemService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 상품을 CRUD 하는 컨트롤러
  */
+@Slf4j
 @Controller
 @RequestMapping("/items")
 @RequiredArgsConstructor
 public class ItemController {
 
-    private final ItemService itemService;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
 
+    // 요청 스레드 대신 전용 executor 에서 ItemService 를 호출한다. (bulkhead)
+    private final AsyncItemService asyncItemService;
+
+    /**
+     * 상품 목록 (keyset 페이징)
+     * 다음 페이지 링크는 현재 페이지의 마지막 id 를 afterId 로 전달한다.
+     */
     @GetMapping
-    public String items(@ModelAttribute("itemSearch") ItemSearchCondition itemSearch, Model model) {
-        List<Item> items = itemService.findItems(itemSearch);
-        model.addAttribute("items", items);
-        return "items";
+    public DeferredResult<String> items(@ModelAttribute("itemSearch") ItemSearchCondition itemSearch, Model model) {
+        int pageSize = itemSearch.getPageSize() == null
+                ? DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(itemSearch.getPageSize(), MAX_PAGE_SIZE));
+        itemSearch.setPageSize(pageSize);
+
+        // 다음 페이지가 있는지 확인하기 위해 한 건 더 조회한다.
+        ItemSearchCondition pageCondition = new ItemSearchCondition(
+                itemSearch.getItemName(), itemSearch.getMaxPrice(), itemSearch.getAfterId(), pageSize + 1);
+        // 목록 화면은 조회만 하므로 엔티티 대신 ItemSummary 로 조회한다.
+        return deferred(asyncItemService.findItemSummaries(pageCondition).thenApply(items -> {
+            boolean hasNext = items.size() > pageSize;
+            if (hasNext) {
+                items = items.subList(0, pageSize);
+            }
+            model.addAttribute("items", items);
+            model.addAttribute("nextAfterId", hasNext ? items.get(pageSize - 1).getId() : null);
+            return "items";
+        }));
     }
 
     @GetMapping("/{itemId}")
-    public String item(@PathVariable long itemId, Model model) {
-        Item item = itemService.findById(itemId).get();
-        model.addAttribute("item", item);
-        return "item";
+    public DeferredResult<String> item(@PathVariable long itemId, Model model) {
+        return deferred(asyncItemService.findById(itemId).thenApply(item -> {
+            model.addAttribute("item", item.get());
+            return "item";
+        }));
     }
 
     @GetMapping("/add")
@@ -42,24 +75,70 @@ public class ItemController {
     }
 
     @PostMapping("/add")
-    public String addItem(@ModelAttribute Item item, RedirectAttributes redirectAttributes) {
-        Item savedItem = itemService.save(item);
-        redirectAttributes.addAttribute("itemId", savedItem.getId());
-        redirectAttributes.addAttribute("status", true);
-        return "redirect:/items/{itemId}";
+    public DeferredResult<String> addItem(@ModelAttribute Item item, RedirectAttributes redirectAttributes) {
+        return deferred(asyncItemService.save(item).thenApply(savedItem -> {
+            redirectAttributes.addAttribute("itemId", savedItem.getId());
+            redirectAttributes.addAttribute("status", true);
+            return "redirect:/items/{itemId}";
+        }));
     }
 
     @GetMapping("/{itemId}/edit")
-    public String editForm(@PathVariable Long itemId, Model model) {
-        Item item = itemService.findById(itemId).get();
-        model.addAttribute("item", item);
-        return "editForm";
+    public DeferredResult<String> editForm(@PathVariable Long itemId, Model model) {
+        return deferred(asyncItemService.findById(itemId).thenApply(item -> {
+            model.addAttribute("item", item.get());
+            return "editForm";
+        }));
     }
 
     @PostMapping("/{itemId}/edit")
-    public String edit(@PathVariable Long itemId, @ModelAttribute ItemUpdateDto updateParam) {
-        itemService.update(itemId, updateParam);
-        return "redirect:/items/{itemId}";
+    public DeferredResult<String> edit(@PathVariable Long itemId, @ModelAttribute ItemUpdateDto updateParam) {
+        return deferred(asyncItemService.update(itemId, updateParam).thenApply(v -> "redirect:/items/{itemId}"));
+    }
+
+    /**
+     * executor 의 대기열이 가득 차서 거절된 요청 : 503 (잠시 후 다시 시도)
+     * 호출 시점에 바로 발생한다. (요청 스레드에서 예외)
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> rejected(RejectedExecutionException e) {
+        log.warn("item service busy : {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Service busy, please retry");
+    }
+
+    /**
+     * 수정 폼을 연 후 다른 요청이 먼저 수정한 경우 : 409 (수정 폼을 다시 열어서 최신 값으로 수정)
+     * ItemUpdateDto.version (수정 폼의 hidden 필드) 이 저장된 version 과 다르면 발생한다.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> conflict(OptimisticLockingFailureException e) {
+        log.info("item update conflict : {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("Item was modified by another request, please reload and retry");
+    }
+
+    /**
+     * CompletableFuture 의 결과(뷰 이름) 를 DeferredResult 로 전달한다.
+     * 완료되면 스프링 MVC 가 요청을 다시 디스패치해서 뷰를 렌더링한다. (그 사이 요청 스레드는 반납된다)
+     * 예외는 CompletionException 을 벗겨서 전달하므로 기존과 같은 예외 처리를 받는다.
+     */
+    private static DeferredResult<String> deferred(CompletableFuture<String> view) {
+        DeferredResult<String> result = new DeferredResult<>();
+        view.whenComplete((viewName, e) -> {
+            if (e == null) {
+                result.setResult(viewName);
+            } else {
+                result.setErrorResult(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+        return result;
     }
 
 }
+/* 비동기 요청 처리 (DeferredResult) */
+// 핸들러는 DeferredResult 를 바로 반환하고, Tomcat 워커 스레드는 DB 조회를 기다리지 않고 반납된다.
+// AsyncItemService 의 executor 스레드에서 조회가 끝나면 setResult() 로 결과를 전달하고, 스프링 MVC 가 다시 디스패치해서 뷰를 렌더링한다.
+// Model, RedirectAttributes 는 다시 디스패치할 때까지 보관되므로 완료 콜백에서 값을 추가해도 된다.
+// 제한 시간(spring.mvc.async.request-timeout) 안에 완료되지 않으면 AsyncRequestTimeoutException 으로 503 응답한다.
@@ -0,0 +1,34 @@
+package hello.itemservice;
+
+import hello.itemservice.config.R2dbcConfig;
+import hello.itemservice.config.V2Config;
+import hello.itemservice.repository.ItemRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * R2DBC 저장소 + JSON API (/api/r2dbc/items) 로 실행 : gradle bootRunR2dbc
+ *
+ * R2DBC 의존성은 src/r2dbc 클래스패스에만 있으므로 ItemServiceApplication 대신 이 클래스로 실행한다.
+ * 화면(/items) 은 ItemServiceApplication 과 같은 V2Config(JDBC) 를 사용하고, 같은 DB 를 R2DBC 로도 접속한다.
+ */
+@Import({V2Config.class, R2dbcConfig.class})
+@SpringBootApplication(scanBasePackages = "hello.itemservice.web",
+        exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class}) // R2dbcConfig 참고
+public class R2dbcItemServiceApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(R2dbcItemServiceApplication.class, args);
+    }
+
+    @Bean
+    @Profile("local")
+    public TestDataInit testDataInit(ItemRepository itemRepository) {
+        return new TestDataInit(itemRepository);
+    }
+}
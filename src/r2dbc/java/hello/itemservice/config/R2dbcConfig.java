@@ -0,0 +1,84 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ReactiveItemRepository;
+import hello.itemservice.repository.r2dbc.R2dbcItemRepository;
+import hello.itemservice.web.ReactiveItemController;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * R2DBC 저장소 (R2dbcItemRepository) 와 JSON API (/api/r2dbc/items)
+ *
+ * ItemService 를 만들지 않으므로 다른 설정(JdbcTemplateV3Config, MyBatisConfig, V2Config ...) 과 함께 사용한다.
+ * ex) @Import({V2Config.class, R2dbcConfig.class}) (R2dbcItemServiceApplication)
+ * R2DBC 의존성과 H2 1.4.200 은 src/r2dbc 클래스패스에만 있다. (build.gradle 의 r2dbc 소스셋)
+ * 같은 DB 를 spring.datasource.url 그대로 R2DBC 로 접속하므로, 화면(/items, JDBC) 과 API(/api/r2dbc/items) 가 같은 데이터를 사용한다.
+ *
+ * - itemservice.r2dbc.pool.max-size : R2DBC 커넥션 풀 크기 (기본 10, HikariCP 기본값과 같다)
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class R2dbcConfig {
+
+    private static final String H2_JDBC_PREFIX = "jdbc:h2:";
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final Environment environment;
+
+    /**
+     * spring.datasource.url (jdbc:h2:...) 과 같은 DB 에 접속하는 R2DBC 커넥션 풀
+     * 임베디드 DB (테스트) 도 DataSourceProperties 가 만든 url(고유한 이름 포함) 을 그대로 사용한다.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory() {
+        String url = dataSourceProperties.determineUrl();
+        if (url == null || !url.startsWith(H2_JDBC_PREFIX)) {
+            throw new IllegalStateException("R2dbcConfig 는 H2 만 지원합니다. url=" + url);
+        }
+        int maxSize = environment.getProperty("itemservice.r2dbc.pool.max-size", Integer.class, DEFAULT_POOL_SIZE);
+        log.info("r2dbc connection pool url={}, maxSize={}", url, maxSize);
+
+        H2ConnectionConfiguration.Builder h2 = H2ConnectionConfiguration.builder()
+                .url(url.substring(H2_JDBC_PREFIX.length()))
+                .username(dataSourceProperties.determineUsername());
+        String password = dataSourceProperties.determinePassword();
+        if (password != null) {
+            h2.password(password);
+        }
+
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(h2.build()))
+                .initialSize(1)
+                .maxSize(maxSize)
+                .build());
+    }
+
+    @Bean
+    public ReactiveItemRepository reactiveItemRepository(ConnectionFactory connectionFactory) {
+        return new R2dbcItemRepository(connectionFactory);
+    }
+
+    @Bean
+    public ReactiveItemController reactiveItemController(ReactiveItemRepository reactiveItemRepository) {
+        return new ReactiveItemController(reactiveItemRepository);
+    }
+}
+/* R2DBC 자동 구성을 사용하지 않는 이유 (R2dbcItemServiceApplication 의 exclude) */
+// R2dbcAutoConfiguration : spring.r2dbc.url 이 없으면 임베디드 H2 (r2dbc:h2:mem:///testdb) 를 따로 만든다.
+//   스프링 부트의 SQL 초기화(schema.sql) 는 ConnectionFactory 빈이 있으면 DataSource 대신 그쪽에 실행하므로,
+//   R2dbcConfig 를 사용하지 않는 설정에서도 JDBC 쪽 DB 에 테이블이 생성되지 않는다.
+// R2dbcTransactionManagerAutoConfiguration : ReactiveTransactionManager 빈을 등록한다.
+//   트랜잭션 매니저 빈이 두 개가 되면 @Transactional 이 어떤 것을 사용할지 정하지 못해서 예외가 발생한다.
+//   R2dbcItemRepository 는 트랜잭션 매니저를 직접 만들어서 TransactionalOperator 로 사용한다.
+
+// 이 설정을 사용하면 schema.sql 은 R2DBC 커넥션으로 실행되지만, 같은 DB 이므로 결과는 같다.
@@ -0,0 +1,34 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * ItemRepository 의 논블로킹 버전
+ * 결과를 기다리는 동안 스레드를 점유하지 않고, 결과가 준비되면 Mono(0 ~ 1 건), Flux(0 ~ N 건) 로 전달한다.
+ * 구독(subscribe) 하기 전에는 아무 SQL 도 실행하지 않는다.
+ */
+public interface ReactiveItemRepository {
+
+    /**
+     * 저장 후 생성된 id 가 입력된 item
+     */
+    Mono<Item> save(Item item);
+
+    /**
+     * ItemRepository.update() 와 같은 update 한 번으로 수정한다. (version 확인, 1 증가)
+     * 수정된 row 가 없으면 에러 신호 : version 이 다르면 OptimisticLockingFailureException, 없는 id 이면 NoSuchElementException
+     */
+    Mono<Void> update(Long itemId, ItemUpdateDto updateParam);
+
+    /**
+     * 없으면 빈 Mono (Optional.empty() 대신)
+     */
+    Mono<Item> findById(Long id);
+
+    /**
+     * 검색 조건, keyset 페이징은 ItemRepository.findAll() 과 같다.
+     */
+    Flux<Item> findAll(ItemSearchCondition cond);
+}
@@ -0,0 +1,239 @@
+package hello.itemservice.repository.r2dbc;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemTrigrams;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.ReactiveItemRepository;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * R2DBC (DatabaseClient)
+ *
+ * JdbcTemplate 과 같은 SQL 을 사용하고, 검색 SQL 도 JdbcTemplateItemRepositoryV3 처럼 조건의 모양(ItemSearchShape) 마다 미리 만든다.
+ * 저장, 수정은 item_trigram 갱신과 함께 하나의 트랜잭션(TransactionalOperator) 으로 실행한다.
+ */
+@Slf4j
+public class R2dbcItemRepository implements ReactiveItemRepository {
+
+    private static final String COLUMNS = "id, item_name, price, quantity, version";
+
+    // R2DBC Statement 는 드라이버의 bind marker 를 그대로 사용한다. (H2 : $1, $2 ...)
+    private static final String INSERT_TRIGRAM_SQL = "insert into item_trigram (trigram, item_id) values ($1, $2)";
+    private static final String DELETE_TRIGRAM_SQL = "delete from item_trigram where item_id = :itemId";
+
+    private final DatabaseClient client;
+    private final TransactionalOperator transactionalOperator;
+
+    // 검색 조건의 모양(ItemSearchShape) 별 SQL : 생성 시점에 한 번만 만든다.
+    private final String[] findAllSql = new String[ItemSearchShape.SIZE];
+
+    public R2dbcItemRepository(ConnectionFactory connectionFactory) {
+        this.client = DatabaseClient.create(connectionFactory);
+        // 트랜잭션 매니저는 빈으로 등록하지 않는다. (R2dbcConfig 참고)
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+
+        for (int shape = 0; shape < ItemSearchShape.SIZE; shape++) {
+            findAllSql[shape] = findAllSql(shape);
+        }
+    }
+
+    @Override
+    public Mono<Item> save(Item item) {
+        String sql = "insert into item (item_name, price, quantity) values (:itemName, :price, :quantity)";
+
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql)
+                .filter(statement -> statement.returnGeneratedValues("id")); // 생성된 id 조회
+        spec = bindNullable(spec, "itemName", item.getItemName(), String.class);
+        spec = bindNullable(spec, "price", item.getPrice(), Integer.class);
+        spec = bindNullable(spec, "quantity", item.getQuantity(), Integer.class);
+
+        return spec
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .flatMap(id -> {
+                    item.setId(id);
+                    item.setVersion(0L); // 컬럼 기본값
+                    // 같은 트랜잭션에서 item_trigram 추가
+                    return insertTrigrams(id, item.getItemName());
+                })
+                .thenReturn(item)
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Void> update(Long itemId, ItemUpdateDto updateParam) {
+        // 조회 없이 update 한 번으로 수정한다. version 이 다르면(다른 요청이 먼저 수정) 영향받은 row 가 0 이다.
+        String sql = "update item set item_name = :itemName, price = :price, quantity = :quantity, version = version + 1"
+                + " where id = :id and version = coalesce(:version, version)";
+
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql);
+        spec = bindNullable(spec, "itemName", updateParam.getItemName(), String.class);
+        spec = bindNullable(spec, "price", updateParam.getPrice(), Integer.class);
+        spec = bindNullable(spec, "quantity", updateParam.getQuantity(), Integer.class);
+        spec = bindNullable(spec, "version", updateParam.getVersion(), Long.class);
+
+        return spec.bind("id", itemId)
+                .fetch()
+                .rowsUpdated()
+                // 수정된 row 가 없으면 에러 신호 (OptimisticLockingFailureException, NoSuchElementException)
+                .doOnNext(updated -> updateParam.checkUpdated(itemId, updated))
+                .flatMap(updated -> client.sql(DELETE_TRIGRAM_SQL)
+                        .bind("itemId", itemId)
+                        .then()
+                        .then(insertTrigrams(itemId, updateParam.getItemName())))
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Item> findById(Long id) {
+        String sql = "select " + COLUMNS + " from item where id = :id";
+
+        return client.sql(sql)
+                .bind("id", id)
+                .map(R2dbcItemRepository::item)
+                .one();
+    }
+
+    @Override
+    public Flux<Item> findAll(ItemSearchCondition cond) {
+        int shape = ItemSearchShape.of(cond);
+        String sql = findAllSql[shape];
+        log.debug("sql={}", sql);
+
+        // 모양에 있는 조건의 파라미터만 바인딩한다. (SQL 에 없는 이름을 바인딩하면 예외)
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql);
+        if (ItemSearchShape.has(shape, ItemSearchShape.NAME)) {
+            spec = spec.bind("itemName", cond.getItemName());
+            if (ItemSearchShape.trigramCount(shape) > 0) {
+                // Collection 은 in 목록으로 펼쳐진다. (:itemNameTrigrams -> $1, $2, ...)
+                spec = spec.bind("itemNameTrigrams", cond.getItemNameTrigrams());
+            }
+        }
+        if (ItemSearchShape.has(shape, ItemSearchShape.PRICE)) {
+            spec = spec.bind("maxPrice", cond.getMaxPrice());
+        }
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            spec = spec.bind("afterId", cond.getAfterId());
+        }
+        if (ItemSearchShape.has(shape, ItemSearchShape.PAGE)) {
+            spec = spec.bind("pageSize", cond.getPageSize());
+        }
+        return spec.map(R2dbcItemRepository::item).all();
+    }
+
+    /**
+     * item_trigram 추가 : 하나의 Statement 에 trigram 마다 바인딩을 추가해서 한 번에 실행한다. (JDBC batch 와 같다)
+     */
+    private Mono<Void> insertTrigrams(Long itemId, String itemName) {
+        Set<String> trigrams = ItemTrigrams.of(itemName);
+        if (trigrams.isEmpty()) {
+            return Mono.empty();
+        }
+        return client.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(INSERT_TRIGRAM_SQL);
+            boolean first = true;
+            for (String trigram : trigrams) {
+                // add() : 지금까지의 바인딩을 저장하고 다음 바인딩을 시작한다.
+                if (!first) {
+                    statement.add();
+                }
+                statement.bind(0, trigram).bind(1, itemId);
+                first = false;
+            }
+            return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+        }).then();
+    }
+
+    /**
+     * R2DBC 는 null 을 bind() 로 바인딩할 수 없으므로 bindNull() 로 타입을 알려준다.
+     */
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static Item item(Row row) {
+        Item item = new Item();
+        item.setId(row.get("id", Long.class));
+        item.setItemName(row.get("item_name", String.class));
+        item.setPrice(row.get("price", Integer.class));
+        item.setQuantity(row.get("quantity", Integer.class));
+        item.setVersion(row.get("version", Long.class));
+        return item;
+    }
+
+    /**
+     * JdbcTemplateItemRepositoryV3 의 findAllSql() 과 같은 동적 쿼리
+     */
+    private static String findAllSql(int shape) {
+        String sql = "select " + COLUMNS + " from item" + whereSql(shape);
+        if (ItemSearchShape.has(shape, ItemSearchShape.PAGE)) {
+            sql += " order by id limit :pageSize";
+        }
+        return sql;
+    }
+
+    private static String whereSql(int shape) {
+        String sql = "";
+
+        // 동적 쿼리
+        if (ItemSearchShape.hasWhere(shape)) {
+            sql += " where";
+        }
+
+        boolean andFlag = false;
+        if (ItemSearchShape.has(shape, ItemSearchShape.NAME)) {
+            // trigram 색인으로 후보를 줄이고, 후보만 like 로 확인한다.
+            int trigramCount = ItemSearchShape.trigramCount(shape);
+            if (trigramCount > 0) {
+                sql += " id in (select item_id from item_trigram where trigram in (:itemNameTrigrams)"
+                        + " group by item_id having count(*) = " + trigramCount + ") and";
+            }
+            sql += " item_name like concat('%', :itemName, '%')";
+            andFlag = true;
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.PRICE)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " price <= :maxPrice";
+            andFlag = true;
+        }
+
+        // keyset 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id > :afterId";
+        }
+        return sql;
+    }
+}
+/* R2DBC */
+// JDBC 는 SQL 을 실행하고 결과가 올 때까지 호출한 스레드가 기다린다. (요청 하나 = 스레드 하나)
+// R2DBC 는 결과를 Publisher(Mono, Flux) 로 돌려주므로, 결과를 기다리는 동안 스레드를 반납하고 같은 스레드로 다른 요청을 처리할 수 있다.
+// 동시에 열어둘 수 있는 검색 수는 스레드 수가 아니라 커넥션 풀 크기와 메모리로 제한된다.
+
+// 주의 : r2dbc-h2
+// H2 는 자바로 만든 임베디드 DB 이고, r2dbc-h2 는 H2 엔진(JDBC 구현) 을 R2DBC API 로 감싼 드라이버다.
+// 임베디드(mem, file) 모드에서는 SQL 실행 자체가 구독한 스레드에서 블로킹으로 일어난다.
+// 스레드를 오래 점유하는 네트워크 대기가 없으므로, H2 로 측정한 결과는 실제 네트워크 DB (r2dbc-postgresql 등) 보다 R2DBC 에 불리하다.
+
+// 트랜잭션
+// @Transactional 은 스레드(ThreadLocal) 에 트랜잭션을 묶으므로 리액티브 코드에서는 사용할 수 없다.
+// TransactionalOperator 는 구독 시점의 Reactor Context 에 커넥션을 묶고, 같은 체인 안의 DatabaseClient 호출이 그 커넥션을 사용한다.
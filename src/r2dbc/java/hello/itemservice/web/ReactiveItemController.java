@@ -0,0 +1,66 @@
+package hello.itemservice.web;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.ReactiveItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC 저장소를 사용하는 상품 JSON API (R2dbcConfig 에서 빈으로 등록)
+ *
+ * 스프링 MVC 는 Mono, Flux 반환값을 비동기 요청으로 처리한다. (DeferredResult 와 같다)
+ * 조회가 끝날 때까지 Tomcat 워커 스레드를 점유하지 않고, 완료되면 JSON 으로 응답한다.
+ */
+@ResponseBody
+@RequestMapping("/api/r2dbc/items")
+@RequiredArgsConstructor
+public class ReactiveItemController {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ReactiveItemRepository itemRepository;
+
+    /**
+     * 상품 목록 (keyset 페이징, ItemController 와 같은 조건)
+     * ex) /api/r2dbc/items?itemName=item&maxPrice=20000&afterId=100&pageSize=20
+     */
+    @GetMapping
+    public Flux<Item> items(ItemSearchCondition itemSearch) {
+        int pageSize = itemSearch.getPageSize() == null
+                ? DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(itemSearch.getPageSize(), MAX_PAGE_SIZE));
+        itemSearch.setPageSize(pageSize);
+        return itemRepository.findAll(itemSearch);
+    }
+
+    @GetMapping("/{itemId}")
+    public Mono<ResponseEntity<Item>> item(@PathVariable Long itemId) {
+        return itemRepository.findById(itemId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public Mono<Item> addItem(@RequestBody Item item) {
+        return itemRepository.save(item);
+    }
+
+    @PutMapping("/{itemId}")
+    public Mono<Void> edit(@PathVariable Long itemId, @RequestBody ItemUpdateDto updateParam) {
+        return itemRepository.update(itemId, updateParam);
+    }
+}
+/* @RestController 를 사용하지 않는 이유 */
+// ItemServiceApplication 은 hello.itemservice.web 패키지를 컴포넌트 스캔한다.
+// @RestController(@Component) 를 붙이면 R2dbcConfig 를 사용하지 않을 때도 빈으로 등록되어 ReactiveItemRepository 가 없다는 예외가 발생한다.
+// 스프링 MVC 는 타입에 @RequestMapping 이 있는 빈을 컨트롤러로 인식하므로, @ResponseBody + @RequestMapping 으로 같은 동작을 한다.
+
+// Flux 응답
+// Accept 가 application/json 이면 Flux 를 모두 모은 뒤 JSON 배열로 응답한다.
+// Accept 가 application/x-ndjson, text/event-stream 이면 한 건씩 바로 내려보낸다.
@@ -0,0 +1,107 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ReactiveItemRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 동시에 열린 검색 concurrency 건을 모두 끝내는 시간 : 요청당 스레드(JDBC) vs 논블로킹(R2DBC)
+ * 실행 : gradle jmhR2dbc -PjmhIncludes=ConcurrentSearchBenchmark (R2DBC 클래스패스, src/r2dbcJmh)
+ *
+ * - jdbcThreadPerRequest : 검색마다 스레드 하나 (Tomcat 워커 스레드와 같은 방식), JdbcTemplateItemRepositoryV3
+ * - r2dbc : concurrency 건을 한 번에 구독, R2dbcItemRepository (스레드를 만들지 않는다)
+ * 두 방식 모두 커넥션 풀 크기는 10 이므로, 동시에 실행되는 SQL 수는 같고 나머지는 커넥션을 기다린다.
+ * 차이는 기다리는 동안 점유하는 자원 : JDBC 는 대기 중인 검색마다 스레드(스택), R2DBC 는 대기열의 구독 객체
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentSearchBenchmark {
+
+    private static final int TABLE_SIZE = 10_000;
+    private static final int POOL_SIZE = 10;
+
+    @Param({"100", "1000"})
+    public int concurrency;
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+    ReactiveItemRepository reactiveItemRepository;
+    ExecutorService threadPerRequest;
+
+    // 목록 화면과 같은 모양 : 이름 검색 + keyset 페이징
+    ItemSearchCondition condition = new ItemSearchCondition("item-1", null, null, 20);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // spring.main.sources : RepositoryStack 의 설정 클래스에 R2dbcConfig 를 추가한다. (같은 H2 DB 를 R2DBC 로 접속)
+        // R2DBC 자동 구성은 제외한다. (R2dbcConfig 의 아래 설명 참고)
+        context = RepositoryStack.JDBC_TEMPLATE_V3.start(
+                "--spring.main.sources=hello.itemservice.config.R2dbcConfig",
+                "--spring.autoconfigure.exclude=" + R2dbcAutoConfiguration.class.getName()
+                        + "," + R2dbcTransactionManagerAutoConfiguration.class.getName(),
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--itemservice.r2dbc.pool.max-size=" + POOL_SIZE);
+        itemRepository = context.getBean(ItemRepository.class);
+        reactiveItemRepository = context.getBean(ReactiveItemRepository.class);
+
+        List<Item> items = new ArrayList<>(TABLE_SIZE);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            items.add(ItemStackState.newItem(i));
+        }
+        itemRepository.saveAll(items);
+
+        threadPerRequest = Executors.newFixedThreadPool(concurrency);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        threadPerRequest.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    public int jdbcThreadPerRequest() throws InterruptedException, ExecutionException {
+        List<Future<List<Item>>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(threadPerRequest.submit(() -> itemRepository.findAll(condition)));
+        }
+        int rows = 0;
+        for (Future<List<Item>> future : futures) {
+            rows += future.get().size();
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public int r2dbc() {
+        return Flux.range(0, concurrency)
+                // flatMap 의 동시 구독 수 = concurrency (모든 검색을 한 번에 연다)
+                .flatMap(i -> reactiveItemRepository.findAll(condition).count(), concurrency)
+                .reduce(0L, Long::sum)
+                .map(Long::intValue)
+                .block();
+    }
+}
+// 결과와 함께 확인할 것
+// jdbcThreadPerRequest 는 concurrency 만큼 스레드를 미리 만들어 둔다. (스레드 생성 비용은 측정에서 제외)
+// 스레드마다 스택 메모리(기본 1MB 예약) 가 필요하므로, 실제 서버에서는 Tomcat 의 max-threads(기본 200) 가 동시에 열 수 있는 검색 수의 한계가 된다.
+// r2dbc 는 스레드 수가 concurrency 와 상관없으므로, 같은 힙에서 더 많은 검색을 열어둘 수 있다. (-prof gc 의 할당량으로 대기 비용을 비교)
+// H2 임베디드 모드의 r2dbc-h2 는 SQL 을 블로킹으로 실행한다. (R2dbcItemRepository 참고) 처리 시간 자체는 JDBC 보다 느릴 수 있다.
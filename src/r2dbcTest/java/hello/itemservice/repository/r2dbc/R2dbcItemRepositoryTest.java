@@ -0,0 +1,89 @@
+package hello.itemservice.repository.r2dbc;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemUpdateDto;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * R2dbcItemRepository 테스트
+ * 스프링 없이 테스트마다 새 H2 메모리 DB 를 만들고 schema.sql (sql/schema.sql) 로 테이블을 생성한다.
+ * 실행 : gradle r2dbcTest (R2DBC 클래스패스, src/r2dbcTest)
+ * 검색 조건은 ItemRepositoryTest 와 같다.
+ */
+class R2dbcItemRepositoryTest {
+
+    R2dbcItemRepository itemRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        H2ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url("mem:r2dbc-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+                .username("sa")
+                .build());
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).populate(connectionFactory).block();
+        itemRepository = new R2dbcItemRepository(connectionFactory);
+    }
+
+    @Test
+    void save() {
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10)).block();
+
+        assertThat(savedItem.getId()).isNotNull();
+        assertThat(itemRepository.findById(savedItem.getId()).block()).isEqualTo(savedItem);
+    }
+
+    @Test
+    void updateItem() {
+        Long itemId = itemRepository.save(new Item("item1", 10000, 10)).block().getId();
+
+        itemRepository.update(itemId, new ItemUpdateDto("item2", 20000, 30)).block();
+
+        Item findItem = itemRepository.findById(itemId).block();
+        assertThat(findItem.getItemName()).isEqualTo("item2");
+        assertThat(findItem.getPrice()).isEqualTo(20000);
+        assertThat(findItem.getQuantity()).isEqualTo(30);
+        // trigram 도 새 이름으로 교체
+        test("item2", null, findItem);
+        test("item1", null);
+    }
+
+    @Test
+    void findItems() {
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10)).block();
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20)).block();
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30)).block();
+
+        test(null, null, item1, item2, item3);
+        test("", null, item1, item2, item3);
+        test("itemA", null, item1, item2);
+        test("itemB", null, item3);
+        test("A-", null, item1, item2);
+        test(null, 10000, item1);
+        test("itemA", 10000, item1);
+
+        // keyset 페이징
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, null, item1.getId(), 1)).collectList().block())
+                .containsExactly(item2);
+    }
+
+    @Test
+    void findByIdNotFound() {
+        assertThat(itemRepository.findById(-1L).blockOptional()).isEmpty();
+    }
+
+    void test(String itemName, Integer maxPrice, Item... items) {
+        List<Item> result = itemRepository.findAll(new ItemSearchCondition(itemName, maxPrice)).collectList().block();
+        assertThat(result).containsExactly(items);
+    }
+}
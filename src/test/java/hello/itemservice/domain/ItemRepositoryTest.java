@@ -1,22 +1,32 @@
 package hello.itemservice.domain;
 
+import hello.itemservice.repository.ItemAggregate;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.ColumnarItemRepository;
 import hello.itemservice.repository.memory.MemoryItemRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @Transactional
 @SpringBootTest // @SpringBootApplication 를 찾아서 설정으로 사용함
@@ -27,6 +37,10 @@ class ItemRepositoryTest {
     @Autowired
     ItemRepository itemRepository;
 
+    // JPA 리포지토리의 영속성 컨텍스트 확인용 (같은 트랜잭션의 EntityManager)
+    @Autowired
+    EntityManager entityManager;
+
     // 트랜젝션
 /*
     @Autowired
@@ -48,6 +62,9 @@ class ItemRepositoryTest {
         if (itemRepository instanceof MemoryItemRepository) {
             ((MemoryItemRepository) itemRepository).clearStore();
         }
+        if (itemRepository instanceof ColumnarItemRepository) {
+            ((ColumnarItemRepository) itemRepository).clearStore();
+        }
 
         // 트랜젝션 rollback
 //        transactionManager.rollback(status);
@@ -66,6 +83,77 @@ class ItemRepositoryTest {
         assertThat(findItem).isEqualTo(savedItem);
     }
 
+    @Test
+    void saveAll() {
+        // given
+        List<Item> items = List.of(
+                new Item("itemA", 10000, 10),
+                new Item("itemB", 20000, 20),
+                new Item("itemC", 30000, 30));
+
+        // when
+        itemRepository.saveAll(items);
+
+        // then
+        for (Item item : items) {
+            assertThat(item.getId()).isNotNull();
+            assertThat(itemRepository.findById(item.getId()).get().getItemName()).isEqualTo(item.getItemName());
+        }
+    }
+
+    @Test
+    void saveAllKeepsOtherManagedItems() {
+        // given : 같은 트랜잭션에서 조회해서 수정 중인 item (JPA 리포지토리에서만 영속 상태)
+        Long itemId = itemRepository.save(new Item("item1", 10000, 10)).getId();
+        Item managedItem = itemRepository.findById(itemId).get();
+        assumeTrue(entityManager.contains(managedItem));
+        managedItem.setPrice(11000);
+
+        // when : chunk(100) 보다 많이 저장해서 중간에 flush, detach 가 일어나게 한다.
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            items.add(new Item("bulk", 1000, 1));
+        }
+        itemRepository.saveAll(items);
+        managedItem.setQuantity(11);
+
+        // then : 저장한 item 만 detach 되고, 수정 중인 item 은 영속 상태로 남아서 두 변경이 모두 반영된다.
+        assertThat(entityManager.contains(managedItem)).isTrue();
+        assertThat(entityManager.contains(items.get(0))).isFalse();
+        entityManager.flush();
+        entityManager.clear();
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getPrice()).isEqualTo(11000);
+        assertThat(findItem.getQuantity()).isEqualTo(11);
+    }
+
+    @Test
+    void streamAllKeepsOtherManagedItems() {
+        // given : 같은 트랜잭션에서 조회해서 수정 중인 item (JPA 리포지토리에서만 영속 상태)
+        Long itemId = itemRepository.save(new Item("stream-1", 10000, 10)).getId();
+        Long otherId = itemRepository.save(new Item("stream-2", 20000, 20)).getId();
+        entityManager.flush();
+        entityManager.clear();
+        Item managedItem = itemRepository.findById(itemId).get();
+        assumeTrue(entityManager.contains(managedItem));
+        managedItem.setPrice(11000);
+
+        // when : 수정 중인 item 도 stream 결과에 포함된다.
+        List<Item> streamed = new ArrayList<>();
+        itemRepository.streamAll(new ItemSearchCondition("stream", null), streamed::add);
+        managedItem.setQuantity(11);
+
+        // then : stream 이 새로 읽은 item 만 detach 되고, 수정 중인 item 의 변경은 모두 반영된다.
+        assertThat(streamed).extracting(Item::getId).containsExactly(itemId, otherId);
+        assertThat(entityManager.contains(managedItem)).isTrue();
+        assertThat(entityManager.contains(streamed.get(1))).isFalse();
+        entityManager.flush();
+        entityManager.clear();
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getPrice()).isEqualTo(11000);
+        assertThat(findItem.getQuantity()).isEqualTo(11);
+    }
+
     @Test
     void updateItem() {
         // given
@@ -84,6 +172,88 @@ class ItemRepositoryTest {
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
 
+    @Test
+    void updateItemWithVersion() {
+        // given
+        Long itemId = itemRepository.save(new Item("item1", 10000, 10)).getId();
+        Long version = itemRepository.findById(itemId).get().getVersion();
+
+        // when : 같은 version 으로 두 번 수정하면 두 번째 수정은 이미 바뀐 version 과 비교한다.
+        itemRepository.update(itemId, new ItemUpdateDto("item2", 20000, 20, version));
+
+        // then
+        assertThatThrownBy(() -> itemRepository.update(itemId, new ItemUpdateDto("item3", 30000, 30, version)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getItemName()).isEqualTo("item2");
+        assertThat(findItem.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void reserveAndRelease() {
+        // given
+        Long itemId = itemRepository.save(new Item("item1", 10000, 10)).getId();
+
+        // when
+        assertThat(itemRepository.reserve(itemId, 7)).isTrue();
+        // 재고(3) 보다 많이 예약하면 실패하고 수량은 그대로이다.
+        assertThat(itemRepository.reserve(itemId, 4)).isFalse();
+        itemRepository.release(itemId, 2);
+
+        // then
+        assertThat(itemRepository.findById(itemId).get().getQuantity()).isEqualTo(5);
+        assertThat(itemRepository.reserve(itemId + 1000, 1)).isFalse();
+    }
+
+    @Test
+    void updateAll() {
+        // given
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        Item itemB = itemRepository.save(new Item("itemB", 20000, 20));
+        Long notExistId = Math.max(itemA.getId(), itemB.getId()) + 1000;
+
+        Map<Long, ItemUpdateDto> updateParams = new LinkedHashMap<>();
+        updateParams.put(itemA.getId(), new ItemUpdateDto("itemA2", 11000, 11));
+        updateParams.put(notExistId, new ItemUpdateDto("none", 0, 0));
+        updateParams.put(itemB.getId(), new ItemUpdateDto("itemB2", 22000, 22));
+
+        // when
+        Map<Long, Boolean> result = itemRepository.updateAll(updateParams);
+
+        // then
+        assertThat(result).containsEntry(itemA.getId(), true)
+                .containsEntry(itemB.getId(), true)
+                .containsEntry(notExistId, false);
+        assertThat(itemRepository.findById(itemA.getId()).get().getItemName()).isEqualTo("itemA2");
+        assertThat(itemRepository.findById(itemB.getId()).get().getPrice()).isEqualTo(22000);
+    }
+
+    @Test
+    void updateAllKeepsOtherManagedItems() {
+        // given : itemA 는 같은 트랜잭션에서 조회해서 수정 중, itemB 는 영속성 컨텍스트에 없다. (JPA 리포지토리에서만)
+        Long itemAId = itemRepository.save(new Item("itemA", 10000, 10)).getId();
+        Long itemBId = itemRepository.save(new Item("itemB", 20000, 20)).getId();
+        entityManager.flush();
+        entityManager.clear();
+        Item managedItem = itemRepository.findById(itemAId).get();
+        assumeTrue(entityManager.contains(managedItem));
+
+        // when
+        Map<Long, ItemUpdateDto> updateParams = new LinkedHashMap<>();
+        updateParams.put(itemAId, new ItemUpdateDto("itemA2", 11000, 11));
+        updateParams.put(itemBId, new ItemUpdateDto("itemB2", 22000, 22));
+        itemRepository.updateAll(updateParams);
+        managedItem.setQuantity(12);
+
+        // then : 새로 조회한 itemB 만 detach 되고, itemA 는 영속 상태로 남아서 이후 변경도 반영된다.
+        assertThat(entityManager.contains(managedItem)).isTrue();
+        assertThat(managedItem.getItemName()).isEqualTo("itemA2");
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(itemRepository.findById(itemAId).get().getQuantity()).isEqualTo(12);
+        assertThat(itemRepository.findById(itemBId).get().getItemName()).isEqualTo("itemB2");
+    }
+
     @Test
     void findItems() {
         // given
@@ -111,9 +281,91 @@ class ItemRepositoryTest {
         test("itemA", 10000, item1);
     }
 
+    @Test
+    void findItemsByNameAfterUpdate() {
+        // given
+        Item item1 = itemRepository.save(new Item("apple-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("apple-2", 20000, 20));
+        Item item3 = itemRepository.saveAll(List.of(new Item("banana", 30000, 30))).get(0);
+
+        // when : 이름을 바꾸면 trigram 색인도 새 이름으로 교체되어야 한다.
+        itemRepository.update(item2.getId(), new ItemUpdateDto("grape-2", 20000, 20));
+        item2.setItemName("grape-2");
+        item2.setVersion(1L); // 수정하면 version 이 1 증가한다.
+
+        // then
+        test("apple", null, item1);
+        test("grape", null, item2);
+        test("pple-", null, item1);
+        test("nana", null, item3);
+        // 3 글자 미만 검색어는 trigram 없이 like 로만 검색한다.
+        test("e-", null, item1, item2);
+    }
+
+    @Test
+    void findItemsAfterId() {
+        // given
+        Item item1 = new Item("itemA-1", 10000, 10);
+        Item item2 = new Item("itemA-2", 20000, 20);
+        Item item3 = new Item("itemB-1", 30000, 30);
+        Item item4 = new Item("itemA-3", 40000, 40);
+        itemRepository.saveAll(List.of(item1, item2, item3, item4));
+
+        // 첫 페이지 -> 다음 페이지
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, null, null, 2)))
+                .containsExactly(item1, item2);
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, null, item2.getId(), 2)))
+                .containsExactly(item3, item4);
+
+        // 검색 조건과 함께 사용
+        assertThat(itemRepository.findAll(new ItemSearchCondition("itemA", 30000, item1.getId(), 10)))
+                .containsExactly(item2);
+    }
+
+    @Test
+    void findSummaries() {
+        // given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        itemRepository.save(new Item("itemB-1", 30000, 30));
+
+        // when
+        List<ItemSummary> result = itemRepository.findSummaries(new ItemSearchCondition("itemA", null, null, 10));
+
+        // then
+        assertThat(result).containsExactly(ItemSummary.from(item1), ItemSummary.from(item2));
+    }
+
+    @Test
+    void aggregate() {
+        // given
+        itemRepository.save(new Item("itemA-1", 10000, 10));
+        itemRepository.save(new Item("itemA-2", 20000, 20));
+        itemRepository.save(new Item("itemB-1", 30000, 30));
+
+        // when
+        ItemAggregate itemA = itemRepository.aggregate(new ItemSearchCondition("itemA", null));
+        ItemAggregate none = itemRepository.aggregate(new ItemSearchCondition("itemC", null));
+
+        // then
+        assertThat(itemA.getItemCount()).isEqualTo(2);
+        assertThat(itemA.getTotalStockValue()).isEqualTo(10000L * 10 + 20000L * 20);
+        assertThat(itemA.getMinPrice()).isEqualTo(10000);
+        assertThat(itemA.getMaxPrice()).isEqualTo(20000);
+
+        assertThat(none.getItemCount()).isZero();
+        assertThat(none.getTotalStockValue()).isZero();
+        assertThat(none.getMinPrice()).isNull();
+    }
+
     void test(String itemName, Integer maxPrice, Item... items) {
         List<Item> result = itemRepository.findAll(new ItemSearchCondition(itemName, maxPrice));
         assertThat(result).containsExactly(items);
+
+        // streamAll() 은 findAll() 과 같은 결과를 한 건씩 전달해야 한다.
+        List<Item> streamed = new ArrayList<>();
+        itemRepository.streamAll(new ItemSearchCondition(itemName, maxPrice), streamed::add);
+        assertThat(streamed).containsExactly(items);
     }
 }
 // 테스트의 데이터베이스 분리
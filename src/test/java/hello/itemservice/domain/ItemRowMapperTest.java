@@ -0,0 +1,98 @@
+package hello.itemservice.domain;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @GenerateRowMapper 로 생성된 ItemRowMapper 테스트
+ * COLUMNS 와 mapRow 가 Item 의 JPA 매핑 (같은 테이블을 쓰는 JPA 리포지토리) 과 맞는지 확인한다.
+ */
+@Transactional
+@SpringBootTest
+class ItemRowMapperTest {
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void columnsMatchItemMapping() {
+        // JPA 가 매핑한 컬럼 : id + 각 프로퍼티의 컬럼
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(Item.class);
+        List<String> mappedColumns = new ArrayList<>(Arrays.asList(persister.getIdentifierColumnNames()));
+        for (String property : persister.getPropertyNames()) {
+            mappedColumns.addAll(Arrays.asList(persister.getPropertyColumnNames(property)));
+        }
+
+        // 생성된 COLUMNS 는 필드 선언 순서 (mapRow 의 컬럼 인덱스와 같은 순서)
+        List<String> columns = Arrays.asList(ItemRowMapper.COLUMNS.split(", "));
+        assertThat(columns).containsExactlyInAnyOrderElementsOf(mappedColumns);
+        assertThat(columns).hasSize(instanceFieldCount());
+        assertThat(columns.get(0)).isEqualTo("id");
+        assertThat(columns.get(1)).isEqualTo("item_name");
+    }
+
+    @Test
+    void mapRowMatchesJpa() {
+        // given
+        Item item = new Item("itemA", 10000, 10);
+        entityManager.persist(item);
+        entityManager.flush();
+        entityManager.clear();
+
+        // when
+        Item mapped = jdbcTemplate.queryForObject(
+                "select " + ItemRowMapper.COLUMNS + " from item where id = ?", ItemRowMapper.INSTANCE, item.getId());
+
+        // then : 모든 필드가 JPA 로 조회한 엔티티와 같다.
+        assertThat(mapped).isEqualTo(entityManager.find(Item.class, item.getId()));
+        assertThat(mapped.getVersion()).isEqualTo(0L);
+    }
+
+    @Test
+    void mapRowKeepsNull() {
+        // given : 래퍼 타입 컬럼은 null 이 0 으로 바뀌면 안된다.
+        jdbcTemplate.update("insert into item (item_name, price, quantity) values ('itemNull', null, null)");
+
+        // when
+        Item mapped = jdbcTemplate.queryForObject(
+                "select " + ItemRowMapper.COLUMNS + " from item where item_name = 'itemNull'", ItemRowMapper.INSTANCE);
+
+        // then
+        assertThat(mapped.getId()).isNotNull();
+        assertThat(mapped.getItemName()).isEqualTo("itemNull");
+        assertThat(mapped.getPrice()).isNull();
+        assertThat(mapped.getQuantity()).isNull();
+    }
+
+    private static int instanceFieldCount() {
+        int count = 0;
+        for (Field field : Item.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
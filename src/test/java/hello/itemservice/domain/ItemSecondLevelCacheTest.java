@@ -0,0 +1,93 @@
+package hello.itemservice.domain;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * l2cache 프로필 : 수정 후 2차 캐시에 수정 전 Item 이 남지 않는지 확인한다.
+ * 2차 캐시는 커밋 후에 갱신, 무효화되므로 @Transactional 없이 리포지토리 호출마다 커밋한다. (DB 는 컨텍스트마다 따로 생성된다)
+ */
+@SpringBootTest
+@ActiveProfiles({"test", "l2cache"})
+class ItemSecondLevelCacheTest {
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void updateEvictsCachedItem() {
+        // given : 조회로 2차 캐시에 올린다.
+        Long itemId = itemRepository.save(new Item("itemA", 10000, 10)).getId();
+        Long otherId = itemRepository.save(new Item("itemZ", 90000, 90)).getId();
+        itemRepository.findById(itemId);
+        itemRepository.findById(otherId);
+        Cache cache = entityManagerFactory.getCache();
+        assertThat(cache.contains(Item.class, itemId)).isTrue();
+        assertThat(cache.contains(Item.class, otherId)).isTrue();
+
+        // when : JpaItemRepositoryV3.update 는 조회 없는 update (JpaItemUpdates)
+        itemRepository.update(itemId, new ItemUpdateDto("itemB", 20000, 20));
+
+        // then : 수정한 item 만 제거되고, 다른 item 의 캐시는 남는다. (JPQL 벌크 update 는 영역 전체를 비운다)
+        assertThat(cache.contains(Item.class, itemId)).isFalse();
+        assertThat(cache.contains(Item.class, otherId)).isTrue();
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getItemName()).isEqualTo("itemB");
+        assertThat(findItem.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void reserveEvictsOnlyReservedItem() {
+        // given : 인기 상품(hot) 과 다른 상품을 캐시에 올린다.
+        Long hotId = itemRepository.save(new Item("hot", 10000, 10)).getId();
+        Long otherId = itemRepository.save(new Item("other", 20000, 20)).getId();
+        itemRepository.findById(hotId);
+        itemRepository.findById(otherId);
+        Cache cache = entityManagerFactory.getCache();
+
+        // when : 재고 예약 / 반환 (update ... where id = ? and quantity >= ?)
+        assertThat(itemRepository.reserve(hotId, 3)).isTrue();
+
+        // then : 예약한 item 만 제거되고, 다시 읽으면 예약 후 수량이다.
+        assertThat(cache.contains(Item.class, hotId)).isFalse();
+        assertThat(cache.contains(Item.class, otherId)).isTrue();
+        assertThat(itemRepository.findById(hotId).get().getQuantity()).isEqualTo(7);
+
+        itemRepository.release(hotId, 5);
+        assertThat(cache.contains(Item.class, hotId)).isFalse();
+        assertThat(cache.contains(Item.class, otherId)).isTrue();
+        assertThat(itemRepository.findById(hotId).get().getQuantity()).isEqualTo(12);
+
+        // 재고가 부족해서 수정되지 않으면 캐시도 그대로 둔다.
+        assertThat(itemRepository.reserve(hotId, 100)).isFalse();
+        assertThat(cache.contains(Item.class, hotId)).isTrue();
+    }
+
+    @Test
+    void updateAllRefreshesCachedItem() {
+        // given
+        Long itemId = itemRepository.save(new Item("itemA", 10000, 10)).getId();
+        itemRepository.findById(itemId);
+
+        // when : 변경 감지 update (READ_WRITE 전략은 커밋 후 캐시의 값을 새 값으로 바꾼다)
+        itemRepository.updateAll(Map.of(itemId, new ItemUpdateDto("itemC", 30000, 30)));
+
+        // then : 캐시에서 읽어도 수정 후 값이다.
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getItemName()).isEqualTo("itemC");
+        assertThat(findItem.getPrice()).isEqualTo(30000);
+    }
+}
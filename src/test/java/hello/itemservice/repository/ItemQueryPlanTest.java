@@ -0,0 +1,300 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.config.*;
+import hello.itemservice.domain.Item;
+import hello.itemservice.service.ItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 검색 SQL 의 실행 계획 확인 (H2 EXPLAIN)
+ *
+ * 구현체(설정) 마다 스프링 컨텍스트를 띄우고, 검색 조건의 모양(ConditionShape) 마다
+ * findItems, findItemSummaries, streamItems, aggregate 가 실제로 실행한 SQL 과 파라미터를 모아서 EXPLAIN 한다.
+ * 검색 조건으로 범위를 줄일 수 있는데 item, item_trigram 을 전체 스캔(tableScan) 하면 실패한다.
+ * afterId 가 없는데 PK 범위 조회(id > ?) 만으로 읽는 것도 실패로 본다. (id > 0 처럼 모든 row 를 읽는 조건이 전체 스캔을 가린다)
+ * 인덱스를 지우거나, 인덱스를 사용할 수 없는 SQL 로 바뀌면 여기서 먼저 확인된다.
+ */
+@Slf4j
+class ItemQueryPlanTest {
+
+    private static final int ITEM_COUNT = 1000;
+
+    // PK 범위 조회만으로 읽는 계획 : /* PUBLIC.PRIMARY_KEY_2: ID > ?5 */
+    private static final Pattern PK_RANGE_ONLY = Pattern.compile("PRIMARY_KEY_\\w*: (\\w+\\.)?ID > \\?\\d+\\s*\\*/");
+
+    /**
+     * SQL 을 실행하는 설정만 대상으로 한다. (메모리 저장소는 제외)
+     */
+    enum Stack {
+        JDBC_TEMPLATE_V1(JdbcTemplateV1Config.class),
+        JDBC_TEMPLATE_V2(JdbcTemplateV2Config.class),
+        JDBC_TEMPLATE_V3(JdbcTemplateV3Config.class),
+        MYBATIS(MyBatisConfig.class),
+        JPA_V1(JpaConfig.class), // JPQL 문자열
+        JPA_V2(SpringDataJpaConfig.class), // 스프링 데이터 JPA 쿼리 메소드 + 사용자 정의 리포지토리(Querydsl)
+        JPA_V3(QuerydslConfig.class), // Querydsl
+        V2(V2Config.class); // ItemQueryRepositoryV2 (Querydsl)
+
+        private final Class<?> configClass;
+
+        Stack(Class<?> configClass) {
+            this.configClass = configClass;
+        }
+    }
+
+    /**
+     * 검색 조건의 모양
+     * narrowing : 인덱스로 범위를 줄일 수 있는 조건이 있는지 (false 이면 전체 스캔이 정상이다)
+     */
+    enum ConditionShape {
+        NONE(null, null, null, null, false),
+        NAME("item-12", null, null, null, true), // trigram 후보 조건
+        SHORT_NAME("-1", null, null, null, false), // 3 글자 미만 : like 만 사용
+        PRICE(null, 2000, null, null, true),
+        NAME_PRICE("item-12", 2000, null, null, true),
+        PAGE(null, null, 500L, 20, true),
+        NAME_PAGE("item-12", null, 500L, 20, true),
+        PRICE_PAGE(null, 2000, 500L, 20, true);
+
+        private final String itemName;
+        private final Integer maxPrice;
+        private final Long afterId;
+        private final Integer pageSize;
+        private final boolean narrowing;
+
+        ConditionShape(String itemName, Integer maxPrice, Long afterId, Integer pageSize, boolean narrowing) {
+            this.itemName = itemName;
+            this.maxPrice = maxPrice;
+            this.afterId = afterId;
+            this.pageSize = pageSize;
+            this.narrowing = narrowing;
+        }
+
+        ItemSearchCondition condition() {
+            return new ItemSearchCondition(itemName, maxPrice, afterId, pageSize);
+        }
+    }
+
+    ConfigurableApplicationContext context;
+
+    @AfterEach
+    void afterEach() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Stack.class)
+    void noUnexpectedTableScan(Stack stack) throws SQLException {
+        context = start(stack);
+        ItemService itemService = context.getBean(ItemService.class);
+        CapturingDataSource dataSource = context.getBean(CapturingDataSource.class);
+
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items.add(new Item("item-" + i, 1000 + (i % 100) * 100, i % 50));
+        }
+        context.getBean(ItemRepository.class).saveAll(items);
+
+        List<String> violations = new ArrayList<>();
+        for (ConditionShape shape : ConditionShape.values()) {
+            dataSource.captured.clear();
+            itemService.findItems(shape.condition());
+            itemService.findItemSummaries(shape.condition());
+            itemService.streamItems(shape.condition(), item -> {
+            });
+            itemService.aggregate(shape.condition());
+            List<CapturedSql> statements = new ArrayList<>(dataSource.captured);
+            assertThat(statements).as("%s %s", stack, shape).isNotEmpty();
+
+            for (CapturedSql statement : statements) {
+                String plan = explain(dataSource, statement);
+                log.info("stack={}, shape={}\nsql={}\nplan={}", stack, shape, statement.sql, plan);
+                if (shape.narrowing && plan.contains(".tableScan")) {
+                    violations.add(stack + " " + shape + "\n" + statement.sql + "\n" + plan);
+                }
+                if (shape.narrowing && shape.afterId == null && PK_RANGE_ONLY.matcher(plan).find()) {
+                    violations.add(stack + " " + shape + " (PK range without afterId)\n" + statement.sql + "\n" + plan);
+                }
+            }
+        }
+        assertThat(violations).as("full table scan").isEmpty();
+    }
+
+    private ConfigurableApplicationContext start(Stack stack) {
+        return new SpringApplicationBuilder(PlanTestApplication.class, stack.configClass)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:plan-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        // 테이블, 인덱스는 schema.sql 로 만든다.
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--logging.level.org.springframework.jdbc=warn",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=warn",
+                        "--logging.level.hello.itemservice.repository=warn");
+    }
+
+    /**
+     * 캡처한 SQL 을 같은 파라미터로 EXPLAIN (캡처하지 않는 원본 DataSource 사용)
+     */
+    private String explain(CapturingDataSource dataSource, CapturedSql statement) throws SQLException {
+        try (Connection connection = dataSource.getTargetDataSource().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("explain " + statement.sql)) {
+            for (Map.Entry<Integer, Object> param : statement.params.entrySet()) {
+                pstmt.setObject(param.getKey(), param.getValue());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+
+    /**
+     * 테스트용 스프링 부트 설정 (BenchmarkApplication 과 같은 방식)
+     * Stack 의 설정 클래스와 함께 실행한다.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @EnableAutoConfiguration
+    @AutoConfigurationPackage(basePackages = "hello.itemservice")
+    static class PlanTestApplication {
+
+        @Bean
+        static BeanPostProcessor capturingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource && !(bean instanceof CapturingDataSource)) {
+                        return new CapturingDataSource((DataSource) bean);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    static class CapturedSql {
+        final String sql;
+        final Map<Integer, Object> params;
+
+        CapturedSql(String sql, Map<Integer, Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    /**
+     * 실행된 select 문과 바인딩된 파라미터를 기록하는 DataSource
+     * JdbcTemplate, MyBatis, Hibernate 모두 Connection.prepareStatement() 를 사용하므로 구현체와 상관없이 캡처된다.
+     */
+    static class CapturingDataSource extends DelegatingDataSource {
+
+        final List<CapturedSql> captured = new CopyOnWriteArrayList<>();
+
+        CapturingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return proxy(Connection.class, super.getConnection(), this::connectionCall);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return proxy(Connection.class, super.getConnection(username, password), this::connectionCall);
+        }
+
+        private Object connectionCall(Object target, Method method, Object[] args) throws Throwable {
+            Object result = invoke(target, method, args);
+            if (method.getName().equals("prepareStatement")) {
+                String sql = (String) args[0];
+                if (sql.trim().toLowerCase().startsWith("select")) {
+                    return capturing(sql, (PreparedStatement) result);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * setXxx(index, value) 로 바인딩한 값을 모아두었다가, execute 시점에 SQL 과 함께 기록한다.
+         */
+        private PreparedStatement capturing(String sql, PreparedStatement target) {
+            Map<Integer, Object> params = new TreeMap<>();
+            return proxy(PreparedStatement.class, target, (t, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    params.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.startsWith("execute")) {
+                    captured.add(new CapturedSql(sql, new TreeMap<>(params)));
+                }
+                return invoke(t, method, args);
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, TargetHandler handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+        }
+
+        interface TargetHandler {
+            Object invoke(Object target, Method method, Object[] args) throws Throwable;
+        }
+    }
+}
+/* H2 실행 계획 */
+// explain 결과에서 테이블마다 사용한 인덱스가 주석으로 표시된다.
+// - /* PUBLIC.IDX_ITEM_PRICE: PRICE <= ?1 */ : 인덱스 범위 조회
+// - /* PUBLIC.PRIMARY_KEY_2: ID IN(SELECT ...) */ : trigram 후보 id 로 PK 조회
+// - /* PUBLIC.ITEM.tableScan */ : 전체 스캔
+// like '%검색어%' 만 있는 조건(SHORT_NAME) 과 조건이 없는 경우(NONE) 는 전체 스캔이 정상이므로 확인하지 않는다.
+
+// 참고 - 스프링 데이터 JPA 의 (:price is null or i.price <= :price) 조건
+// or 로 묶인 조건은 인덱스 조건으로 사용할 수 없다. 여기에 id > 0 (afterId 없음) 을 붙이면 PK 범위 조회로 표시되어 tableScan 확인을 통과하지만
+// 실제로는 모든 row 를 읽는다. 그래서 afterId 가 없을 때의 PK 범위 조회도 실패로 보고,
+// JpaItemRepositoryV2 는 afterId 가 없으면 trigram 후보, price 조건을 or 없이 쓰는 쿼리(...ByTrigrams, ...ByPrice) 를 사용한다.
@@ -0,0 +1,205 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.config.*;
+import hello.itemservice.domain.Item;
+import hello.itemservice.service.ItemService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 구현체(설정) 마다 같은 수정 규칙을 따르는지 확인 (version, 재고 예약 / 반환)
+ *
+ * ItemQueryPlanTest 와 같이 설정 클래스마다 스프링 컨텍스트를 띄우고 ItemService 로 호출한다.
+ * V2 는 ItemServiceV2 (ItemQueryRepositoryV2), 나머지는 각 ItemRepository.update() 를 사용한다.
+ * reserve / release 는 SQL 저장소에서 update ... where id = ? and quantity >= ? 한 번으로 실행된다. (ItemStockSql, ItemMapper.xml, JpaItemUpdates)
+ * 컨텍스트는 설정마다 한 번만 만들고, 테스트마다 새 item 을 저장해서 사용한다.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ItemStackTest {
+
+    private static final long MISSING_ID = Long.MAX_VALUE;
+
+    enum Stack {
+        MEMORY(MemoryConfig.class),
+        MEMORY_COLUMNAR(ColumnarMemoryConfig.class),
+        MEMORY_MAPPED(MappedFileConfig.class),
+        JDBC_TEMPLATE_V1(JdbcTemplateV1Config.class), // update ... version = coalesce(?, version)
+        JDBC_TEMPLATE_V2(JdbcTemplateV2Config.class), // update ... version = coalesce(:version, version)
+        JDBC_TEMPLATE_V3(JdbcTemplateV3Config.class),
+        MYBATIS(MyBatisConfig.class),
+        JPA_V1(JpaConfig.class),
+        JPA_V2(SpringDataJpaConfig.class),
+        JPA_V3(QuerydslConfig.class),
+        V2(V2Config.class); // ItemServiceV2 + ItemQueryRepositoryV2 (Querydsl)
+
+        private final Class<?> configClass;
+
+        Stack(Class<?> configClass) {
+            this.configClass = configClass;
+        }
+    }
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<Stack, ConfigurableApplicationContext> contexts = new EnumMap<>(Stack.class);
+
+    @AfterAll
+    void afterAll() {
+        contexts.values().forEach(ConfigurableApplicationContext::close);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Stack.class)
+    void updateChecksVersion(Stack stack) {
+        // given
+        ItemService itemService = itemService(stack);
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+        assertThat(itemService.findById(itemId).get().getVersion()).isEqualTo(0L);
+
+        // when : 조회한 version 으로 수정
+        itemService.update(itemId, new ItemUpdateDto("itemB", 20000, 20, 0L));
+
+        // then : 수정되고 version 이 1 증가한다.
+        Item findItem = itemService.findById(itemId).get();
+        assertThat(findItem.getItemName()).isEqualTo("itemB");
+        assertThat(findItem.getVersion()).isEqualTo(1L);
+
+        // 이전 version 으로 수정하면 실패하고, 값은 바뀌지 않는다.
+        assertThatThrownBy(() -> itemService.update(itemId, new ItemUpdateDto("itemC", 30000, 30, 0L)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        Item notUpdated = itemService.findById(itemId).get();
+        assertThat(notUpdated.getItemName()).isEqualTo("itemB");
+        assertThat(notUpdated.getPrice()).isEqualTo(20000);
+        assertThat(notUpdated.getVersion()).isEqualTo(1L);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Stack.class)
+    void updateWithoutVersion(Stack stack) {
+        // given
+        ItemService itemService = itemService(stack);
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+        itemService.update(itemId, new ItemUpdateDto("itemB", 20000, 20, 0L));
+
+        // when : version 없이 수정 (version = coalesce(null, version), 확인하지 않는다)
+        itemService.update(itemId, new ItemUpdateDto("itemC", 30000, 30));
+
+        // then : 수정되고 version 은 증가한다.
+        Item findItem = itemService.findById(itemId).get();
+        assertThat(findItem.getItemName()).isEqualTo("itemC");
+        assertThat(findItem.getPrice()).isEqualTo(30000);
+        assertThat(findItem.getQuantity()).isEqualTo(30);
+        assertThat(findItem.getVersion()).isEqualTo(2L);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Stack.class)
+    void updateMissingId(Stack stack) {
+        ItemService itemService = itemService(stack);
+
+        assertThatThrownBy(() -> itemService.update(MISSING_ID, new ItemUpdateDto("itemA", 10000, 10)))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(itemService.findById(MISSING_ID)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Stack.class)
+    void reserve(Stack stack) {
+        // given
+        ItemService itemService = itemService(stack);
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        // when, then : 재고가 충분하면 차감하고 version 이 증가한다.
+        assertThat(itemService.reserve(itemId, 3)).isTrue();
+        Item findItem = itemService.findById(itemId).get();
+        assertThat(findItem.getQuantity()).isEqualTo(7);
+        assertThat(findItem.getVersion()).isEqualTo(1L);
+
+        // 재고가 부족하면 false, 수량은 그대로 (음수가 되지 않는다)
+        assertThat(itemService.reserve(itemId, 8)).isFalse();
+        assertThat(itemService.findById(itemId).get().getQuantity()).isEqualTo(7);
+
+        // 남은 재고를 모두 예약할 수 있다.
+        assertThat(itemService.reserve(itemId, 7)).isTrue();
+        assertThat(itemService.findById(itemId).get().getQuantity()).isZero();
+
+        // 없는 id 도 false
+        assertThat(itemService.reserve(MISSING_ID, 1)).isFalse();
+        assertThatThrownBy(() -> itemService.reserve(itemId, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Stack.class)
+    void release(Stack stack) {
+        // given
+        ItemService itemService = itemService(stack);
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        // when
+        itemService.release(itemId, 5);
+
+        // then
+        Item findItem = itemService.findById(itemId).get();
+        assertThat(findItem.getQuantity()).isEqualTo(15);
+        assertThat(findItem.getVersion()).isEqualTo(1L);
+
+        // 반환은 없는 id 를 예외로 알린다.
+        assertThatThrownBy(() -> itemService.release(MISSING_ID, 1))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> itemService.release(itemId, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ItemService itemService(Stack stack) {
+        return contexts.computeIfAbsent(stack, this::start).getBean(ItemService.class);
+    }
+
+    private ConfigurableApplicationContext start(Stack stack) {
+        return new SpringApplicationBuilder(StackTestApplication.class, stack.configClass)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:stack-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--itemservice.mapped-file.path=" + tempDir.resolve("items-" + stack + ".dat"),
+                        // 테이블, 인덱스는 schema.sql 로 만든다.
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--logging.level.org.springframework.jdbc=warn",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=warn",
+                        "--logging.level.hello.itemservice.repository=warn");
+    }
+
+    /**
+     * 테스트용 스프링 부트 설정 (ItemQueryPlanTest.PlanTestApplication 과 같은 방식)
+     * Stack 의 설정 클래스와 함께 실행한다.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @EnableAutoConfiguration
+    @AutoConfigurationPackage(basePackages = "hello.itemservice")
+    static class StackTestApplication {
+    }
+}
@@ -0,0 +1,63 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * sql/migration_item_trigram.sql 테스트
+ * trigram 없이 저장된 item (색인 추가 전의 데이터) 이 스크립트 실행 후 이름으로 검색되는지 확인한다.
+ * H2 는 DDL (create table if not exists 포함) 실행 시 트랜잭션을 커밋하므로 @Transactional 롤백 대신 직접 삭제한다.
+ */
+@SpringBootTest
+class ItemTrigramMigrationTest {
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void afterEach() {
+        jdbcTemplate.update("delete from item_trigram where item_id in (select id from item where item_name in ('oldapple', 'ab'))");
+        jdbcTemplate.update("delete from item where item_name in ('oldapple', 'ab')");
+    }
+
+    @Test
+    void backfillMakesOldItemsSearchable() {
+        // given : 리포지토리를 거치지 않고 item 만 저장한다.
+        jdbcTemplate.update("insert into item (item_name, price, quantity) values ('oldapple', 1000, 1)");
+        jdbcTemplate.update("insert into item (item_name, price, quantity) values ('ab', 2000, 2)");
+        Long itemId = jdbcTemplate.queryForObject("select id from item where item_name = 'oldapple'", Long.class);
+        assertThat(itemRepository.findAll(new ItemSearchCondition("dapp", null))).isEmpty();
+
+        // when : 두 번 실행해도 같은 결과
+        migrate();
+        migrate();
+
+        // then
+        assertThat(itemRepository.findAll(new ItemSearchCondition("dapp", null)))
+                .extracting(Item::getId).containsExactly(itemId);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from item_trigram where item_id = ?", Integer.class, itemId))
+                .isEqualTo(ItemTrigrams.of("oldapple").size());
+        // 3 글자 미만 이름은 trigram 이 없고, like 로만 검색한다.
+        assertThat(itemRepository.findAll(new ItemSearchCondition("ab", null)))
+                .extracting(Item::getItemName).containsExactly("ab");
+    }
+
+    private void migrate() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource("sql/migration_item_trigram.sql"));
+            return null;
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package hello.itemservice.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ItemUpdateCounts 테스트
+ * H2 는 SUCCESS_NO_INFO 를 돌려주지 않으므로 update count 배열을 직접 만들어서 확인한다.
+ */
+class ItemUpdateCountsTest {
+
+    @Test
+    void successNoInfoIsCheckedWithQuery() {
+        // given : 1, 3 은 SUCCESS_NO_INFO, 그 중 3 만 있는 id
+        Map<Long, ItemUpdateDto> updateParams = new LinkedHashMap<>();
+        updateParams.put(1L, new ItemUpdateDto("a", 1, 1));
+        updateParams.put(2L, new ItemUpdateDto("b", 2, 2));
+        updateParams.put(3L, new ItemUpdateDto("c", 3, 3));
+        int[] updateCounts = {Statement.SUCCESS_NO_INFO, 1, Statement.SUCCESS_NO_INFO};
+
+        // when
+        Map<Long, Boolean> result = ItemUpdateCounts.updated(List.of(1L, 2L, 3L), updateCounts, updateParams,
+                ids -> {
+                    assertThat(ids).containsExactly(1L, 3L);
+                    return Set.of(3L);
+                });
+
+        // then : 추가한 순서 그대로
+        assertThat(result).containsExactly(Map.entry(1L, false), Map.entry(2L, true), Map.entry(3L, true));
+    }
+
+    @Test
+    void successNoInfoWithVersionFails() {
+        Map<Long, ItemUpdateDto> updateParams = Map.of(1L, new ItemUpdateDto("a", 1, 1, 0L));
+
+        assertThatThrownBy(() -> ItemUpdateCounts.updated(List.of(1L), new int[]{Statement.SUCCESS_NO_INFO},
+                updateParams, ids -> Set.of(1L)))
+                .isInstanceOf(IncorrectUpdateSemanticsDataAccessException.class);
+    }
+
+    @Test
+    void notUpdatedWithVersionIsConflict() {
+        Map<Long, ItemUpdateDto> updateParams = Map.of(1L, new ItemUpdateDto("a", 1, 1, 0L));
+
+        assertThatThrownBy(() -> ItemUpdateCounts.updated(List.of(1L), new int[]{0}, updateParams, ids -> Set.of()))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+}
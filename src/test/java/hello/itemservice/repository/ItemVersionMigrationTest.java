@@ -0,0 +1,52 @@
+package hello.itemservice.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * sql/migration_item_version.sql 테스트
+ * version 컬럼 추가 전의 item 테이블 (테스트 schema.sql 은 이미 version 이 있다) 을 별도 H2 DB 에 만들고 스크립트를 실행한다.
+ */
+class ItemVersionMigrationTest {
+
+    @Test
+    void addVersionToOldItems() {
+        // given : version 컬럼 없는 item 과 기존 데이터
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:version-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("create table item (id bigint generated by default as identity, item_name varchar(10), "
+                + "price integer, quantity integer, primary key (id))");
+        jdbcTemplate.update("insert into item (item_name, price, quantity) values ('oldItem', 1000, 1)");
+
+        // when : 두 번 실행해도 같은 결과
+        migrate(jdbcTemplate);
+        migrate(jdbcTemplate);
+
+        // then : 기존 데이터는 version 0, 이후 저장도 기본값 0
+        assertThat(jdbcTemplate.queryForObject("select version from item where item_name = 'oldItem'", Long.class))
+                .isEqualTo(0L);
+        jdbcTemplate.update("insert into item (item_name, price, quantity) values ('newItem', 2000, 2)");
+        assertThat(jdbcTemplate.queryForObject("select version from item where item_name = 'newItem'", Long.class))
+                .isEqualTo(0L);
+        // coalesce(?, version) 로 확인하는 컬럼이므로 null 은 허용하지 않는다.
+        assertThatThrownBy(() -> jdbcTemplate.update("update item set version = null"))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private void migrate(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource("sql/migration_item_version.sql"));
+            return null;
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAggregate;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ColumnarItemRepository 테스트
+ * null 비트맵, 이름 사전 정리, 배열 확장은 스프링 없이 직접 확인한다.
+ */
+class ColumnarItemRepositoryTest {
+
+    ColumnarItemRepository itemRepository = new ColumnarItemRepository();
+
+    @Test
+    void minValueIsNotNull() {
+        // given : 예전 null 표시값(Integer.MIN_VALUE) 과 null 을 함께 저장
+        Item minValue = itemRepository.save(new Item("min", Integer.MIN_VALUE, Integer.MIN_VALUE));
+        Item nullValue = itemRepository.save(new Item("null", null, null));
+
+        // then
+        Item findMinValue = itemRepository.findById(minValue.getId()).get();
+        assertThat(findMinValue.getPrice()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(findMinValue.getQuantity()).isEqualTo(Integer.MIN_VALUE);
+        Item findNullValue = itemRepository.findById(nullValue.getId()).get();
+        assertThat(findNullValue.getPrice()).isNull();
+        assertThat(findNullValue.getQuantity()).isNull();
+
+        // price 가 null 인 item 은 maxPrice 조건에 포함되지 않는다.
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, 0))).containsExactly(findMinValue);
+        ItemAggregate aggregate = itemRepository.aggregate(new ItemSearchCondition());
+        assertThat(aggregate.getItemCount()).isEqualTo(2);
+        assertThat(aggregate.getMinPrice()).isEqualTo(Integer.MIN_VALUE);
+    }
+
+    @Test
+    void updateToAndFromNull() {
+        // given
+        Long itemId = itemRepository.save(new Item("item", 1000, 10)).getId();
+
+        // when
+        itemRepository.update(itemId, new ItemUpdateDto("item", null, null));
+        Item nulls = itemRepository.findById(itemId).get();
+        itemRepository.update(itemId, new ItemUpdateDto("item", 2000, 20));
+        Item values = itemRepository.findById(itemId).get();
+
+        // then
+        assertThat(nulls.getPrice()).isNull();
+        assertThat(nulls.getQuantity()).isNull();
+        assertThat(itemRepository.reserve(itemId, 5)).isTrue();
+        assertThat(values.getPrice()).isEqualTo(2000);
+        assertThat(itemRepository.findById(itemId).get().getQuantity()).isEqualTo(15);
+    }
+
+    @Test
+    void renamedNamesAreRemovedFromDictionary() {
+        // given
+        Long itemId = itemRepository.save(new Item("shared", 1000, 10)).getId();
+        Long otherId = itemRepository.save(new Item("shared", 1000, 10)).getId();
+
+        // when : 한 item 의 이름을 계속 바꾼다.
+        for (int i = 0; i < 100; i++) {
+            itemRepository.update(itemId, new ItemUpdateDto("name" + i, 1000, 10));
+        }
+
+        // then : 사용 중인 이름(shared, name99) 만 남는다.
+        assertThat(itemRepository.dictionarySize()).isEqualTo(2);
+        assertThat(itemRepository.findAll(new ItemSearchCondition("name", null)))
+                .extracting(Item::getItemName).containsExactly("name99");
+        assertThat(itemRepository.findAll(new ItemSearchCondition("shared", null)))
+                .extracting(Item::getId).containsExactly(otherId);
+
+        // 마지막 사용 행이 바뀌면 그 이름도 제거되고, 반납된 코드는 새 이름이 다시 사용한다.
+        itemRepository.update(otherId, new ItemUpdateDto("other", 1000, 10));
+        assertThat(itemRepository.dictionarySize()).isEqualTo(2);
+        assertThat(itemRepository.findAll(new ItemSearchCondition("shared", null))).isEmpty();
+        assertThat(itemRepository.findAll(new ItemSearchCondition("other", null)))
+                .extracting(Item::getId).containsExactly(otherId);
+    }
+
+    @Test
+    void growBeyondInitialCapacity() {
+        // given : 초기 크기(1024) 보다 많이 저장, 64 행마다 null 을 넣어서 비트맵 확장도 확인
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            items.add(itemRepository.save(new Item("item" + (i % 10), i % 64 == 0 ? null : i, i)));
+        }
+
+        // then
+        assertThat(itemRepository.findById(items.get(2999).getId()).get()).isEqualTo(items.get(2999));
+        assertThat(itemRepository.findById(items.get(2048).getId()).get().getPrice()).isNull();
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, 2999))).hasSize(3000 - 47);
+    }
+}
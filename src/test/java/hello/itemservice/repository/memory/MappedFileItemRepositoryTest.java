@@ -0,0 +1,188 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MappedFileItemRepository 테스트
+ * 임시 디렉토리의 파일에 저장하고, 닫은 후 다시 열어서 확인한다.
+ */
+class MappedFileItemRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void saveAndUpdate() throws Exception {
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(tempDir.resolve("items.dat"))) {
+            // given
+            Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+            Item nulls = itemRepository.save(new Item(null, null, null));
+
+            // when : 더 짧은 이름으로 수정해도 이전 이름의 나머지 byte 는 읽지 않아야 한다.
+            itemRepository.update(itemA.getId(), new ItemUpdateDto("상품", 20000, 20));
+
+            // then
+            Item findItem = itemRepository.findById(itemA.getId()).get();
+            assertThat(findItem.getItemName()).isEqualTo("상품");
+            assertThat(findItem.getPrice()).isEqualTo(20000);
+            assertThat(findItem.getQuantity()).isEqualTo(20);
+            assertThat(findItem.getVersion()).isEqualTo(1L);
+            assertThat(itemRepository.findById(nulls.getId()).get()).isEqualTo(nulls);
+            assertThat(itemRepository.findById(nulls.getId() + 1)).isEmpty();
+
+            // price 가 null 인 item 은 maxPrice 조건에 포함되지 않는다.
+            assertThat(itemRepository.findAll(new ItemSearchCondition(null, 30000))).containsExactly(findItem);
+            assertThatThrownBy(() -> itemRepository.save(new Item("x".repeat(41), 0, 0)))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void reopen() throws Exception {
+        Path file = tempDir.resolve("items.dat");
+        Item itemA;
+        Item itemB;
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(file)) {
+            itemA = itemRepository.save(new Item("itemA", 10000, 10));
+            itemB = itemRepository.save(new Item("itemB", 20000, 20));
+            itemRepository.update(itemB.getId(), new ItemUpdateDto("itemB2", 21000, 21));
+        }
+
+        // when : 같은 파일을 다시 매핑한다.
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(file)) {
+            // then : 저장된 데이터와 version 을 그대로 읽고, 다음 id 부터 발급한다.
+            assertThat(itemRepository.findById(itemA.getId()).get()).isEqualTo(itemA);
+            Item findItemB = itemRepository.findById(itemB.getId()).get();
+            assertThat(findItemB.getItemName()).isEqualTo("itemB2");
+            assertThat(findItemB.getVersion()).isEqualTo(1L);
+            assertThat(itemRepository.save(new Item("itemC", 30000, 30)).getId()).isEqualTo(itemB.getId() + 1);
+        }
+    }
+
+    @Test
+    void growAndReopen() throws Exception {
+        Path file = tempDir.resolve("items.dat");
+        List<Item> items = new ArrayList<>();
+        // given : 초기 크기(1024) 보다 많이 저장하면 더 큰 크기로 다시 매핑한다.
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(file)) {
+            for (int i = 0; i < 3000; i++) {
+                items.add(itemRepository.save(new Item("item" + i, i, i)));
+            }
+        }
+        assertThat(Files.size(file)).isGreaterThanOrEqualTo(32L + 3000L * 72);
+
+        // then
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(file)) {
+            assertThat(itemRepository.findById(items.get(2999).getId()).get()).isEqualTo(items.get(2999));
+            assertThat(itemRepository.findAll(new ItemSearchCondition("item299", null)))
+                    .extracting(Item::getItemName).containsExactly("item299", "item2990", "item2991", "item2992",
+                            "item2993", "item2994", "item2995", "item2996", "item2997", "item2998", "item2999");
+            assertThat(itemRepository.findAll(new ItemSearchCondition(null, null, 2990L, 5)))
+                    .extracting(Item::getId).containsExactly(2991L, 2992L, 2993L, 2994L, 2995L);
+        }
+    }
+
+    @Test
+    void migrateFromV1() throws Exception {
+        // given : format 1 파일과, 이전 실행에서 변환 중에 중단되어 남은 임시 파일
+        Path file = tempDir.resolve("items.dat");
+        Path migrating = tempDir.resolve("items.dat.migrating");
+        writeV1File(file, new Item("itemA", 10000, 10), new Item("상품", null, 20));
+        Files.write(migrating, new byte[10]);
+
+        // when
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(file)) {
+            // then : 레코드를 그대로 읽고 version 은 0
+            Item itemA = itemRepository.findById(1L).get();
+            assertThat(itemA.getItemName()).isEqualTo("itemA");
+            assertThat(itemA.getPrice()).isEqualTo(10000);
+            assertThat(itemA.getQuantity()).isEqualTo(10);
+            assertThat(itemA.getVersion()).isEqualTo(0L);
+            Item item2 = itemRepository.findById(2L).get();
+            assertThat(item2.getItemName()).isEqualTo("상품");
+            assertThat(item2.getPrice()).isNull();
+            assertThat(item2.getVersion()).isEqualTo(0L);
+
+            itemRepository.update(1L, new ItemUpdateDto("itemA2", 10000, 9, 0L));
+            assertThat(itemRepository.save(new Item("itemC", 30000, 30)).getId()).isEqualTo(3L);
+        }
+
+        // 임시 파일은 원본 위치로 옮겨졌고, 다시 열 때는 변환하지 않는다.
+        assertThat(Files.exists(migrating)).isFalse();
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertThat(header.getInt(4)).isEqualTo(2);
+        assertThat(header.getInt(8)).isEqualTo(72);
+        try (MappedFileItemRepository itemRepository = new MappedFileItemRepository(file)) {
+            assertThat(itemRepository.findById(1L).get().getVersion()).isEqualTo(1L);
+            assertThat(itemRepository.findById(2L).get().getItemName()).isEqualTo("상품");
+            assertThat(itemRepository.findById(3L).get().getItemName()).isEqualTo("itemC");
+        }
+    }
+
+    @Test
+    void migrateFromV1KeepsOriginalOnFailure() throws Exception {
+        // given : header 의 건수보다 레코드가 적은 (잘린) format 1 파일
+        Path file = tempDir.resolve("items.dat");
+        writeV1File(file, new Item("itemA", 10000, 10));
+        byte[] original = Files.readAllBytes(file);
+        ByteBuffer.wrap(original).putLong(16, 5);
+        Files.write(file, original);
+
+        // when
+        assertThatThrownBy(() -> new MappedFileItemRepository(file))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then : 원본은 바뀌지 않고, 임시 파일도 남지 않는다.
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+        assertThat(Files.exists(tempDir.resolve("items.dat.migrating"))).isFalse();
+    }
+
+    @Test
+    void notAnItemFile() throws Exception {
+        Path file = tempDir.resolve("other.dat");
+        Files.write(file, new byte[64]);
+
+        assertThatThrownBy(() -> new MappedFileItemRepository(file))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * format 1 파일 (header 32 byte + 64 byte 레코드, version 없음)
+     */
+    private static void writeV1File(Path file, Item... items) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(32 + items.length * 64);
+        buffer.putInt(0, 0x4954454D).putInt(4, 1).putInt(8, 64).putLong(16, items.length);
+        for (int i = 0; i < items.length; i++) {
+            int position = 32 + i * 64;
+            Item item = items[i];
+            byte[] name = item.getItemName().getBytes(StandardCharsets.UTF_8);
+            byte flags = 0;
+            if (item.getPrice() == null) {
+                flags |= 1 << 1;
+            }
+            buffer.putLong(position, i + 1);
+            buffer.putInt(position + 8, item.getPrice() == null ? 0 : item.getPrice());
+            buffer.putInt(position + 12, item.getQuantity());
+            buffer.put(position + 16, flags);
+            buffer.put(position + 17, (byte) name.length);
+            for (int j = 0; j < name.length; j++) {
+                buffer.put(position + 18 + j, name[j]);
+            }
+        }
+        Files.write(file, buffer.array());
+    }
+}
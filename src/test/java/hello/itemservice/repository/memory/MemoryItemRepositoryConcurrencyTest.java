@@ -0,0 +1,182 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MemoryItemRepository 동시성 테스트
+ * 스프링 없이 여러 스레드에서 직접 호출한다.
+ * 조회 결과가 복사본인지도 여기서 확인한다. (다른 스레드와 저장된 객체를 공유하지 않는다)
+ */
+class MemoryItemRepositoryConcurrencyTest {
+
+    static final int THREADS = 8;
+    static final int ITEMS_PER_THREAD = 1000;
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void concurrentSave() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                ids.add(itemRepository.save(new Item("item", 1000, 1)).getId());
+            }
+        });
+
+        // ID 중복(유실) 없이 모두 저장되어야 한다.
+        assertThat(ids).hasSize(THREADS * ITEMS_PER_THREAD);
+        assertThat(itemRepository.findAll(new ItemSearchCondition())).hasSize(THREADS * ITEMS_PER_THREAD);
+    }
+
+    @Test
+    void concurrentUpdateIsAtomic() throws Exception {
+        Long itemId = itemRepository.save(new Item("item0", 0, 0)).getId();
+        List<String> torn = new CopyOnWriteArrayList<>();
+
+        // 쓰기 스레드는 itemName, price, quantity 를 항상 같은 숫자로 수정한다.
+        // 읽기 스레드는 세 필드가 서로 다른 값(일부만 수정된 상태)을 보면 안된다.
+        runConcurrently(() -> {
+            for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                int n = ThreadLocalRandom.current().nextInt(1000);
+                itemRepository.update(itemId, new ItemUpdateDto("item" + n, n, n));
+
+                Item item = itemRepository.findById(itemId).orElseThrow();
+                if (!item.getItemName().equals("item" + item.getPrice())
+                        || !item.getPrice().equals(item.getQuantity())) {
+                    torn.add(item.toString());
+                }
+            }
+        });
+
+        assertThat(torn).isEmpty();
+    }
+
+    @Test
+    void priceIndexSearchDuringUpdateHasNoDuplicates() throws Exception {
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            itemIds.add(itemRepository.save(new Item("item", 100, 1)).getId());
+        }
+        List<String> duplicated = new CopyOnWriteArrayList<>();
+
+        // 쓰기는 가격을 100 <-> 200 으로 바꾸고(둘 다 maxPrice 이하), 읽기는 price 인덱스로 검색한다.
+        // 순회 중 가격이 바뀌어도 같은 item 이 두 번 나오면 안된다.
+        runConcurrently(() -> {
+            for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                Long itemId = itemIds.get(ThreadLocalRandom.current().nextInt(itemIds.size()));
+                int price = ThreadLocalRandom.current().nextBoolean() ? 100 : 200;
+                itemRepository.update(itemId, new ItemUpdateDto("item", price, 1));
+
+                List<Item> result = itemRepository.findAll(new ItemSearchCondition(null, 1000));
+                long distinct = result.stream().map(Item::getId).distinct().count();
+                if (distinct != result.size()) {
+                    duplicated.add(result.toString());
+                }
+            }
+        });
+
+        assertThat(duplicated).isEmpty();
+    }
+
+    @Test
+    void concurrentReserveNeverOversells() throws Exception {
+        int stock = THREADS * ITEMS_PER_THREAD / 2;
+        Long itemId = itemRepository.save(new Item("item", 1000, stock)).getId();
+        AtomicInteger reserved = new AtomicInteger();
+
+        // 재고의 두 배를 동시에 예약한다. 정확히 재고만큼만 성공해야 한다.
+        runConcurrently(() -> {
+            for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                if (itemRepository.reserve(itemId, 1)) {
+                    reserved.incrementAndGet();
+                }
+            }
+        });
+
+        assertThat(reserved.get()).isEqualTo(stock);
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isZero();
+    }
+
+    @Test
+    void failedUpdateDuringReserveLeavesNoIndexEntry() {
+        Long itemId = itemRepository.save(new Item("item", 1000, 10)).getId();
+
+        // 첫 번째 version 확인이 끝난 직후(새 가격 항목 추가, 교체 전) 에 예약이 먼저 교체하도록 끼워 넣는다.
+        // update() 는 교체에 실패해서 다시 조회하고, 이번에는 version 이 달라서 실패한다.
+        ItemUpdateDto updateParam = new ItemUpdateDto("item", 2000, 10, 0L) {
+            private boolean reserved;
+
+            @Override
+            public void checkVersion(Long id, Long currentVersion) {
+                if (!reserved) {
+                    reserved = true;
+                    super.checkVersion(id, currentVersion);
+                    itemRepository.reserve(id, 1);
+                    return;
+                }
+                super.checkVersion(id, currentVersion);
+            }
+        };
+        assertThatThrownBy(() -> itemRepository.update(itemId, updateParam))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        // 실패한 update() 의 새 가격(2000) 항목은 남지 않고, 저장된 가격(1000) 항목만 있다.
+        assertThat(itemRepository.priceIndexSize()).isEqualTo(1);
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, 1000))).hasSize(1);
+    }
+
+    @Test
+    void findResultIsCopy() {
+        Long itemId = itemRepository.save(new Item("item", 1000, 1)).getId();
+
+        // 조회 결과를 수정해도 저장소와 price 인덱스는 바뀌지 않는다.
+        itemRepository.findById(itemId).orElseThrow().setPrice(5000);
+        itemRepository.findAll(new ItemSearchCondition()).get(0).setItemName("changed");
+
+        Item findItem = itemRepository.findById(itemId).orElseThrow();
+        assertThat(findItem.getItemName()).isEqualTo("item");
+        assertThat(findItem.getPrice()).isEqualTo(1000);
+        assertThat(itemRepository.findAll(new ItemSearchCondition(null, 1000))).containsExactly(findItem);
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
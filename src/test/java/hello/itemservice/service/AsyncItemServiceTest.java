@@ -0,0 +1,76 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AsyncItemService 테스트
+ * 스레드 1개, 대기열 1개인 executor 로 대기열이 가득 찼을 때 바로 거절되는지 확인한다.
+ */
+class AsyncItemServiceTest {
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+    ThreadPoolTaskExecutor executor = executor(1, 1);
+    AsyncItemService itemService = new AsyncItemService(new ItemServiceV1(itemRepository), executor);
+
+    @AfterEach
+    void afterEach() {
+        itemService.shutdown();
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void saveAndFind() {
+        Item savedItem = itemService.save(new Item("itemA", 10000, 10)).join();
+
+        assertThat(itemService.findById(savedItem.getId()).join()).contains(savedItem);
+    }
+
+    @Test
+    void rejectWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 유일한 스레드를 점유
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        started.await();
+
+        // 대기열 1개는 받아주고
+        CompletableFuture<Item> queued = itemService.save(new Item("itemA", 10000, 10));
+        // 그 다음은 호출 시점에 바로 거절
+        assertThatThrownBy(() -> itemService.save(new Item("itemB", 20000, 20)))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        assertThat(queued.join().getItemName()).isEqualTo("itemA");
+    }
+
+    private static ThreadPoolTaskExecutor executor(int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.initialize();
+        return executor;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
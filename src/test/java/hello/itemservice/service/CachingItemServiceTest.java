@@ -0,0 +1,112 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCondition;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CachingItemService 테스트
+ * 스프링 없이 MemoryItemRepository 를 사용하는 ItemServiceV1 을 직접 감싼다.
+ */
+class CachingItemServiceTest {
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+    CachingItemService itemService =
+            new CachingItemService(new ItemServiceV1(itemRepository), 1024 * 1024, Duration.ofMinutes(10));
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void findByIdHitsCache() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        itemService.findById(itemId);
+        itemService.findById(itemId);
+
+        assertThat(itemService.stats().missCount()).isEqualTo(1);
+        assertThat(itemService.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void updateInvalidates() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+        itemService.findById(itemId);
+
+        itemService.update(itemId, new ItemUpdateDto("itemB", 20000, 20));
+        assertThat(itemService.findById(itemId).orElseThrow().getItemName()).isEqualTo("itemB");
+
+        itemService.updateAll(Map.of(itemId, new ItemUpdateDto("itemC", 30000, 30)));
+        assertThat(itemService.findById(itemId).orElseThrow().getItemName()).isEqualTo("itemC");
+    }
+
+    @Test
+    void returnsCopy() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        // 반환된 객체를 수정해도 캐시된 값은 바뀌지 않는다.
+        itemService.findById(itemId).orElseThrow().setPrice(0);
+        assertThat(itemService.findById(itemId).orElseThrow().getPrice()).isEqualTo(10000);
+    }
+
+    @Test
+    void missingIdIsNotCached() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+        // 다음에 저장될 id 를 먼저 조회 (없음)
+        Long nextId = itemId + 1;
+        assertThat(itemService.findById(nextId)).isEmpty();
+
+        assertThat(itemService.save(new Item("itemB", 20000, 20)).getId()).isEqualTo(nextId);
+        assertThat(itemService.findById(nextId)).isPresent();
+    }
+
+    @Test
+    void searchResultCachedUntilWrite() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        // 빈 검색어와 null 은 같은 key
+        assertThat(itemService.findItemSummaries(new ItemSearchCondition("", null))).hasSize(1);
+        assertThat(itemService.findItemSummaries(new ItemSearchCondition(null, null))).hasSize(1);
+        assertThat(itemService.searchStats().hitCount()).isEqualTo(1);
+
+        // 저장, 수정 후에는 새 결과를 조회한다.
+        itemService.save(new Item("itemB", 20000, 20));
+        assertThat(itemService.findItemSummaries(new ItemSearchCondition(null, null))).hasSize(2);
+
+        itemService.update(itemId, new ItemUpdateDto("itemC", 10000, 10));
+        assertThat(itemService.findItems(new ItemSearchCondition("itemC", null))).hasSize(1);
+    }
+
+    @Test
+    void reserveInvalidatesOnlySearchesContainingItem() {
+        Long itemA = itemService.save(new Item("itemA", 10000, 10)).getId();
+        Long itemB = itemService.save(new Item("itemB", 20000, 20)).getId();
+        itemService.findItemSummaries(new ItemSearchCondition("itemA", null));
+        itemService.findItemSummaries(new ItemSearchCondition("itemB", null));
+
+        // itemA 예약 : itemA 를 포함하는 결과만 다시 조회한다.
+        assertThat(itemService.reserve(itemA, 3)).isTrue();
+        assertThat(itemService.findItemSummaries(new ItemSearchCondition("itemB", null)))
+                .extracting("quantity").containsExactly(20);
+        assertThat(itemService.searchStats().hitCount()).isEqualTo(1);
+        assertThat(itemService.findItemSummaries(new ItemSearchCondition("itemA", null)))
+                .extracting("quantity").containsExactly(7);
+        assertThat(itemService.searchStats().missCount()).isEqualTo(3);
+
+        // 반환도 같다.
+        itemService.release(itemB, 5);
+        assertThat(itemService.findItems(new ItemSearchCondition("item", null)))
+                .extracting("quantity").containsExactly(7, 25);
+        assertThat(itemService.findById(itemB).orElseThrow().getQuantity()).isEqualTo(25);
+    }
+}
@@ -0,0 +1,173 @@
+package hello.itemservice.service;
+
+import hello.itemservice.config.WriteBehindConfig;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * WriteBehindItemService 테스트
+ * 주기적인 flush 가 끼어들지 않도록 flushInterval 을 길게 두고 flush() 를 직접 호출한다.
+ */
+class WriteBehindItemServiceTest {
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+    AtomicInteger updateAllCount = new AtomicInteger();
+    // 저장(updateAll) 이 끝나면 열린다. (백그라운드 flush 를 기다릴 때 사용)
+    CountDownLatch updateAllDone = new CountDownLatch(1);
+    ItemService target = new ItemServiceV1(itemRepository) {
+        @Override
+        public Map<Long, Boolean> updateAll(Map<Long, ItemUpdateDto> updateParams) {
+            updateAllCount.incrementAndGet();
+            Map<Long, Boolean> result = super.updateAll(updateParams);
+            updateAllDone.countDown();
+            return result;
+        }
+    };
+    WriteBehindItemService itemService = new WriteBehindItemService(target, 100, Duration.ofHours(1));
+
+    @AfterEach
+    void afterEach() {
+        itemService.close();
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void coalesceUpdates() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        itemService.update(itemId, new ItemUpdateDto("itemA", 10000, 9));
+        itemService.update(itemId, new ItemUpdateDto("itemA", 10000, 8));
+        itemService.update(itemId, new ItemUpdateDto("itemA", 10000, 7));
+
+        // 아직 저장하지 않았지만 findById() 는 마지막 수정을 반영한다.
+        assertThat(itemRepository.findById(itemId).get().getQuantity()).isEqualTo(10);
+        assertThat(itemService.findById(itemId).get().getQuantity()).isEqualTo(7);
+        assertThat(itemService.pendingCount()).isEqualTo(1);
+
+        // 세 번의 수정이 한 번의 저장이 된다.
+        assertThat(itemService.flush()).isEqualTo(1);
+        assertThat(updateAllCount.get()).isEqualTo(1);
+        assertThat(itemRepository.findById(itemId).get().getQuantity()).isEqualTo(7);
+        assertThat(itemService.pendingCount()).isZero();
+    }
+
+    @Test
+    void editWithVersionReadAfterBufferedUpdate() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        // 수정 -> 조회 : 버퍼의 수정이 저장된 후의 version 을 읽는다.
+        itemService.update(itemId, new ItemUpdateDto("itemB", 20000, 20, 0L));
+        Item read = itemService.findById(itemId).orElseThrow();
+        assertThat(read.getVersion()).isEqualTo(1L);
+
+        // flush -> 조회한 version 으로 다시 수정 : 버려지지 않고 저장된다.
+        itemService.flush();
+        itemService.update(itemId, new ItemUpdateDto("itemC", 30000, 30, read.getVersion()));
+        itemService.flush();
+        Item stored = itemRepository.findById(itemId).orElseThrow();
+        assertThat(stored.getItemName()).isEqualTo("itemC");
+        assertThat(stored.getVersion()).isEqualTo(2L);
+
+        // 이전 version 의 수정은 접수할 때 바로 실패한다.
+        assertThatThrownBy(() -> itemService.update(itemId, new ItemUpdateDto("itemD", 40000, 40, 1L)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(itemService.pendingCount()).isZero();
+
+        // flush 전에 조회한 version 으로 다시 수정하면 버퍼에서 병합되고, 한 번 저장되어 version 은 1 증가한다.
+        itemService.update(itemId, new ItemUpdateDto("itemE", 50000, 50, 2L));
+        Long bufferedVersion = itemService.findById(itemId).orElseThrow().getVersion();
+        itemService.update(itemId, new ItemUpdateDto("itemF", 60000, 60, bufferedVersion));
+        assertThat(itemService.flush()).isEqualTo(1);
+        stored = itemRepository.findById(itemId).orElseThrow();
+        assertThat(stored.getItemName()).isEqualTo("itemF");
+        assertThat(stored.getVersion()).isEqualTo(bufferedVersion);
+    }
+
+    @Test
+    void flushWhenBatchIsFull() throws InterruptedException {
+        WriteBehindItemService smallBatch = new WriteBehindItemService(target, 2, Duration.ofHours(1));
+        Long itemA = smallBatch.save(new Item("itemA", 10000, 10)).getId();
+        Long itemB = smallBatch.save(new Item("itemB", 20000, 20)).getId();
+
+        smallBatch.update(itemA, new ItemUpdateDto("itemA2", 10000, 10));
+        smallBatch.update(itemB, new ItemUpdateDto("itemB2", 20000, 20));
+
+        // maxBatchSize 에 도달하면 백그라운드 스레드에서 저장한다. (close() 의 flush 전에 확인)
+        assertThat(updateAllDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(smallBatch.pendingCount()).isZero();
+        smallBatch.close();
+        assertThat(updateAllCount.get()).isEqualTo(1);
+        assertThat(itemRepository.findById(itemA).get().getItemName()).isEqualTo("itemA2");
+        assertThat(itemRepository.findById(itemB).get().getItemName()).isEqualTo("itemB2");
+    }
+
+    @Test
+    void reserveAfterBufferedUpdate() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+
+        // 버퍼의 수정(quantity 5) 을 먼저 저장하고 예약한다. (나중에 flush 되어 예약을 덮어쓰지 않는다)
+        itemService.update(itemId, new ItemUpdateDto("itemA", 10000, 5));
+        assertThat(itemService.reserve(itemId, 2)).isTrue();
+        assertThat(itemService.pendingCount()).isZero();
+        itemService.flush();
+        assertThat(itemRepository.findById(itemId).get().getQuantity()).isEqualTo(3);
+
+        // 반환도 같다.
+        itemService.update(itemId, new ItemUpdateDto("itemA", 10000, 8));
+        itemService.release(itemId, 1);
+        itemService.flush();
+        assertThat(itemService.findById(itemId).get().getQuantity()).isEqualTo(9);
+
+        // 재고 확인은 버퍼의 수정이 반영된 수량 기준
+        itemService.update(itemId, new ItemUpdateDto("itemA", 10000, 1));
+        assertThat(itemService.reserve(itemId, 2)).isFalse();
+        assertThat(itemRepository.findById(itemId).get().getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectNonPositiveSettings() {
+        assertThatThrownBy(() -> WriteBehindConfig.writeBehindItemServicePostProcessor(
+                environment("itemservice.write-behind.flush-interval", "0s")))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> WriteBehindConfig.writeBehindItemServicePostProcessor(
+                environment("itemservice.write-behind.flush-interval", "-1s")))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> WriteBehindConfig.writeBehindItemServicePostProcessor(
+                environment("itemservice.write-behind.max-batch-size", "0")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void flushOnClose() {
+        Long itemId = itemService.save(new Item("itemA", 10000, 10)).getId();
+        itemService.update(itemId, new ItemUpdateDto("itemA2", 20000, 20));
+
+        itemService.close();
+
+        assertThat(itemRepository.findById(itemId).get().getItemName()).isEqualTo("itemA2");
+    }
+
+    /**
+     * 스프링 부트와 같은 변환 ("1s" -> Duration)
+     */
+    private static MockEnvironment environment(String key, String value) {
+        MockEnvironment environment = new MockEnvironment().withProperty(key, value);
+        environment.setConversionService(new ApplicationConversionService());
+        return environment;
+    }
+}